@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>, Tolga Sezer <tolgasbox@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Provides primitive, boxing-free argsort implementations backing {@link DMatrixUtils#getOrder}.
+ *
+ * <p>
+ *
+ * Double values are sorted by an LSD radix sort on their IEEE-754 bit patterns which are
+ * transformed to preserve the ordering of {@link Double#compare(double, double)}, ie. {@code -0.0}
+ * comes before {@code 0.0} and {@code NaN}s come last. Integer values are sorted by a counting sort
+ * if their range is small, by an LSD radix sort otherwise. All sorts are stable, hence ties retain
+ * the order in which their indices are provided, both in ascending and descending order.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class ArgSort {
+    /**
+     * Defines the length up to which insertion sort is used.
+     */
+    private static final int INSERTION_THRESHOLD = 32;
+
+    /**
+     * Defines the length from which the parallel variants actually run in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Get the order of the specified elements in descending or ascending order.
+     *
+     * @param values A vector of double values.
+     * @param indices The indices which will be considered for ordering.
+     * @param descending Flag indicating if we go descending or not.
+     * @return A vector of indices sorted in the provided order.
+     */
+    public static int[] order(double[] values, int[] indices, boolean descending) {
+        return ArgSort.radix(ArgSort.keys(values, indices, descending), indices.clone(), 8, false);
+    }
+
+    /**
+     * Get the order of the specified elements in descending or ascending order using multiple threads for large inputs.
+     *
+     * @param values A vector of double values.
+     * @param indices The indices which will be considered for ordering.
+     * @param descending Flag indicating if we go descending or not.
+     * @return A vector of indices sorted in the provided order.
+     */
+    public static int[] parallelOrder(double[] values, int[] indices, boolean descending) {
+        return ArgSort.radix(ArgSort.keys(values, indices, descending), indices.clone(), 8, true);
+    }
+
+    /**
+     * Get the order of the specified elements in descending or ascending order.
+     *
+     * @param values A vector of integer values.
+     * @param indices The indices which will be considered for ordering.
+     * @param descending Flag indicating if we go descending or not.
+     * @return A vector of indices sorted in the provided order.
+     */
+    public static int[] order(int[] values, int[] indices, boolean descending) {
+        // Attempt the counting sort first:
+        final int[] retval = ArgSort.counting(values, indices, descending);
+
+        // Done if it was feasible, otherwise radix sort:
+        return retval != null ? retval : ArgSort.radix(ArgSort.keys(values, indices, descending), indices.clone(), 4, false);
+    }
+
+    /**
+     * Get the order of the specified elements in descending or ascending order using multiple threads for large inputs.
+     *
+     * @param values A vector of integer values.
+     * @param indices The indices which will be considered for ordering.
+     * @param descending Flag indicating if we go descending or not.
+     * @return A vector of indices sorted in the provided order.
+     */
+    public static int[] parallelOrder(int[] values, int[] indices, boolean descending) {
+        return ArgSort.radix(ArgSort.keys(values, indices, descending), indices.clone(), 4, true);
+    }
+
+    /**
+     * Computes the unsigned sort keys of double values for the given indices.
+     *
+     * @param values A vector of double values.
+     * @param indices The indices which will be considered for ordering.
+     * @param descending Flag indicating if we go descending or not.
+     * @return Sort keys.
+     */
+    private static long[] keys(double[] values, int[] indices, boolean descending) {
+        // Initialize keys:
+        final long[] keys = new long[indices.length];
+
+        // Flip all bits of negatives and the sign bit of positives, invert for descending order:
+        final long flip = descending ? -1L : 0L;
+        for (int i = 0; i < keys.length; i++) {
+            final long bits = Double.doubleToLongBits(values[indices[i]]);
+            keys[i] = bits ^ ((bits >> 63) | Long.MIN_VALUE) ^ flip;
+        }
+
+        // Done, return keys:
+        return keys;
+    }
+
+    /**
+     * Computes the unsigned sort keys of integer values for the given indices.
+     *
+     * @param values A vector of integer values.
+     * @param indices The indices which will be considered for ordering.
+     * @param descending Flag indicating if we go descending or not.
+     * @return Sort keys in the lower 32 bits.
+     */
+    private static long[] keys(int[] values, int[] indices, boolean descending) {
+        // Initialize keys:
+        final long[] keys = new long[indices.length];
+
+        // Flip the sign bit, invert for descending order:
+        final int flip = descending ? -1 : 0;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (values[indices[i]] ^ Integer.MIN_VALUE ^ flip) & 0xFFFFFFFFL;
+        }
+
+        // Done, return keys:
+        return keys;
+    }
+
+    /**
+     * Sorts indices by counting if the range of values is not larger than the number of values.
+     *
+     * @param values A vector of integer values.
+     * @param indices The indices which will be considered for ordering.
+     * @param descending Flag indicating if we go descending or not.
+     * @return A vector of indices sorted in the provided order, or {@code null} if the range is too wide.
+     */
+    private static int[] counting(int[] values, int[] indices, boolean descending) {
+        // Get the range:
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int index : indices) {
+            min = Math.min(min, values[index]);
+            max = Math.max(max, values[index]);
+        }
+
+        // Check if the range is feasible:
+        if (indices.length < INSERTION_THRESHOLD || (long) max - min >= indices.length) {
+            return null;
+        }
+
+        // Count values:
+        final int[] counts = new int[max - min + 1];
+        for (int index : indices) {
+            counts[descending ? max - values[index] : values[index] - min]++;
+        }
+
+        // Compute offsets:
+        for (int i = 0, sum = 0; i < counts.length; i++) {
+            final int count = counts[i];
+            counts[i] = sum;
+            sum += count;
+        }
+
+        // Place indices:
+        final int[] retval = new int[indices.length];
+        for (int index : indices) {
+            retval[counts[descending ? max - values[index] : values[index] - min]++] = index;
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Sorts indices by their unsigned keys using an LSD radix sort over the lower {@code bytes} bytes.
+     *
+     * <p>
+     *
+     * Note that both arrays are used as scratch space.
+     *
+     * @param keys Keys.
+     * @param indices Indices.
+     * @param bytes The number of lower bytes to be considered.
+     * @param parallel Flag indicating if we go parallel or not.
+     * @return Sorted indices.
+     */
+    private static int[] radix(long[] keys, int[] indices, int bytes, boolean parallel) {
+        // Get the length:
+        final int n = keys.length;
+
+        // Insertion sort small arrays:
+        if (n <= INSERTION_THRESHOLD) {
+            ArgSort.insertion(keys, indices);
+            return indices;
+        }
+
+        // Decide on the number of chunks:
+        final int chunks = parallel && n >= PARALLEL_THRESHOLD
+            ? Math.min(4 * ForkJoinPool.getCommonPoolParallelism(), n / (PARALLEL_THRESHOLD / 4))
+            : 1;
+
+        // Compute global histograms for all bytes to detect trivial passes:
+        final int[][] histograms = new int[bytes][256];
+        for (long key : keys) {
+            for (int b = 0; b < bytes; b++) {
+                histograms[b][(int) (key >>> (b << 3)) & 0xFF]++;
+            }
+        }
+
+        // Prepare buffers:
+        long[] srcKeys = keys;
+        int[] srcIndices = indices;
+        long[] dstKeys = new long[n];
+        int[] dstIndices = new int[n];
+
+        // Iterate over passes:
+        for (int b = 0; b < bytes; b++) {
+            // Skip the pass if all keys share the same byte:
+            final int shift = b << 3;
+            if (histograms[b][(int) (srcKeys[0] >>> shift) & 0xFF] == n) {
+                continue;
+            }
+
+            // Run the pass:
+            if (chunks == 1) {
+                ArgSort.pass(srcKeys, srcIndices, dstKeys, dstIndices, histograms[b], shift);
+            }
+            else {
+                ArgSort.parallelPass(srcKeys, srcIndices, dstKeys, dstIndices, shift, chunks);
+            }
+
+            // Swap buffers:
+            final long[] tempKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = tempKeys;
+            final int[] tempIndices = srcIndices;
+            srcIndices = dstIndices;
+            dstIndices = tempIndices;
+        }
+
+        // Done, return sorted indices:
+        return srcIndices;
+    }
+
+    /**
+     * Runs a single sequential radix pass.
+     *
+     * @param srcKeys Source keys.
+     * @param srcIndices Source indices.
+     * @param dstKeys Destination keys.
+     * @param dstIndices Destination indices.
+     * @param histogram The histogram of the byte (modified).
+     * @param shift The shift of the byte.
+     */
+    private static void pass(long[] srcKeys, int[] srcIndices, long[] dstKeys, int[] dstIndices, int[] histogram, int shift) {
+        // Compute offsets:
+        final int[] offsets = new int[256];
+        for (int i = 0, sum = 0; i < 256; i++) {
+            offsets[i] = sum;
+            sum += histogram[i];
+        }
+
+        // Scatter:
+        for (int i = 0; i < srcKeys.length; i++) {
+            final int position = offsets[(int) (srcKeys[i] >>> shift) & 0xFF]++;
+            dstKeys[position] = srcKeys[i];
+            dstIndices[position] = srcIndices[i];
+        }
+    }
+
+    /**
+     * Runs a single radix pass over consecutive chunks in parallel.
+     *
+     * @param srcKeys Source keys.
+     * @param srcIndices Source indices.
+     * @param dstKeys Destination keys.
+     * @param dstIndices Destination indices.
+     * @param shift The shift of the byte.
+     * @param chunks The number of chunks.
+     */
+    private static void parallelPass(long[] srcKeys, int[] srcIndices, long[] dstKeys, int[] dstIndices, int shift, int chunks) {
+        // Get the chunk size:
+        final int n = srcKeys.length;
+        final int size = Parallel.chunks(n, chunks);
+
+        // Compute chunk histograms:
+        final int[][] offsets = new int[chunks][256];
+        Parallel.forRange(0, chunks, 1, (from, to) -> {
+            for (int c = from; c < to; c++) {
+                final int[] histogram = offsets[c];
+                for (int i = c * size, end = Math.min(n, (c + 1) * size); i < end; i++) {
+                    histogram[(int) (srcKeys[i] >>> shift) & 0xFF]++;
+                }
+            }
+        });
+
+        // Compute offsets bucket by bucket, chunk by chunk to keep the sort stable:
+        for (int bucket = 0, sum = 0; bucket < 256; bucket++) {
+            for (int c = 0; c < chunks; c++) {
+                final int count = offsets[c][bucket];
+                offsets[c][bucket] = sum;
+                sum += count;
+            }
+        }
+
+        // Scatter chunks:
+        Parallel.forRange(0, chunks, 1, (from, to) -> {
+            for (int c = from; c < to; c++) {
+                final int[] offset = offsets[c];
+                for (int i = c * size, end = Math.min(n, (c + 1) * size); i < end; i++) {
+                    final int position = offset[(int) (srcKeys[i] >>> shift) & 0xFF]++;
+                    dstKeys[position] = srcKeys[i];
+                    dstIndices[position] = srcIndices[i];
+                }
+            }
+        });
+    }
+
+    /**
+     * Sorts indices by their unsigned keys using a stable insertion sort.
+     *
+     * @param keys Keys.
+     * @param indices Indices.
+     */
+    private static void insertion(long[] keys, int[] indices) {
+        for (int i = 1; i < keys.length; i++) {
+            final long key = keys[i];
+            final int index = indices[i];
+            int j = i - 1;
+            while (j >= 0 && Long.compareUnsigned(keys[j], key) > 0) {
+                keys[j + 1] = keys[j];
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            indices[j + 1] = index;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Provides single-pass summary statistics of columns of matrices, ie. count, sum, mean, variance,
+ * standard deviation, min and max of each column.
+ *
+ * <p>
+ *
+ * Rows are accumulated by {@link RowAccumulator}, so that a matrix is summarized in a single
+ * row-major sweep using O(columns) space. Statistics of disjoint sets of rows are merged with
+ * {@link #merge(RowAccumulator)}, which allows summarizing chunks of rows in parallel
+ * (see {@link #parallelOf(RealMatrix)}).
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class ColumnStats extends RowAccumulator {
+    /**
+     * Defines the number of entries from which {@link #parallelOf(RealMatrix)} actually runs in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Creates empty statistics for the given number of columns.
+     *
+     * @param columns The number of columns.
+     */
+    public ColumnStats(int columns) {
+        super(columns);
+    }
+
+    /**
+     * Returns the statistics of the columns of the matrix.
+     *
+     * @param matrix The matrix.
+     * @return The statistics of columns.
+     */
+    public static ColumnStats of(RealMatrix matrix) {
+        final ColumnStats retval = new ColumnStats(matrix.getColumnDimension());
+        retval.addRows(matrix, 0, matrix.getRowDimension());
+        return retval;
+    }
+
+    /**
+     * Returns the statistics of the columns of the matrix computed in parallel.
+     *
+     * <p>
+     *
+     * Rows are split into at most 64 chunks depending on the dimensions of the matrix only. Chunks
+     * are summarized in parallel and merged in order. Hence, the result is
+     * reproducible but may differ from {@link #of(RealMatrix)} in rounding.
+     *
+     * @param matrix The matrix.
+     * @return The statistics of columns.
+     */
+    public static ColumnStats parallelOf(RealMatrix matrix) {
+        // Summarize chunks in parallel and merge partials in order:
+        final int cols = matrix.getColumnDimension();
+        return Parallel.mapMerge(matrix.getRowDimension(), cols, PARALLEL_THRESHOLD, (from, to) -> {
+            final ColumnStats partial = new ColumnStats(cols);
+            partial.addRows(matrix, from, to);
+            return partial;
+        }, (merged, partial) -> {
+            merged.merge(partial);
+            return merged;
+        });
+    }
+
+    /**
+     * Adds the given rows of the matrix.
+     *
+     * @param matrix The matrix.
+     * @param from The index of the row to start with (inclusive).
+     * @param to The index of the row to end with (exclusive).
+     */
+    public void addRows(RealMatrix matrix, int from, int to) {
+        if (matrix instanceof Array2DRowRealMatrix) {
+            final double[][] data = ((Array2DRowRealMatrix) matrix).getDataRef();
+            for (int row = from; row < to; row++) {
+                this.add(data[row]);
+            }
+        }
+        else {
+            for (int row = from; row < to; row++) {
+                this.add(matrix.getRow(row));
+            }
+        }
+    }
+}
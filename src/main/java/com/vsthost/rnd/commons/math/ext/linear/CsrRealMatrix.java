@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.linear.AbstractRealMatrix;
+import org.apache.commons.math3.linear.DefaultRealMatrixPreservingVisitor;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.OpenMapRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealMatrixPreservingVisitor;
+import org.apache.commons.math3.linear.SparseRealMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Provides a sparse real matrix in the compressed sparse row (CSR) format.
+ *
+ * <p>
+ *
+ * Non-zero entries of row {@code i} are stored at positions {@code rowPointers[i]} (inclusive) to
+ * {@code rowPointers[i + 1]} (exclusive) of the column index and value arrays, in increasing order of
+ * columns. Hence, rows are traversed in O(non-zeros) without any hash lookups, which makes this format
+ * suitable for the row-wise reductions and broadcasts of {@link EMatrixUtils}.
+ *
+ * <p>
+ *
+ * Updating stored entries is O(log(non-zeros of the row)), but inserting a new non-zero entry copies
+ * all stored entries. Matrices should therefore be built by {@link #of(RealMatrix)} (eg. from an
+ * {@link OpenMapRealMatrix}) or from the CSR arrays directly.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class CsrRealMatrix extends AbstractRealMatrix implements SparseRealMatrix {
+    /**
+     * The number of rows.
+     */
+    private final int rows;
+
+    /**
+     * The number of columns.
+     */
+    private final int columns;
+
+    /**
+     * The positions of the first non-zero entries of rows, followed by the number of non-zero entries.
+     */
+    private int[] rowPointers;
+
+    /**
+     * The column indices of non-zero entries.
+     */
+    private int[] columnIndices;
+
+    /**
+     * The values of non-zero entries.
+     */
+    private double[] values;
+
+    /**
+     * Creates a matrix of zeros.
+     *
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     */
+    public CsrRealMatrix(int rows, int columns) {
+        this(rows, columns, new int[Math.max(rows, 0) + 1], new int[0], new double[0]);
+    }
+
+    /**
+     * Creates a matrix backed by the given CSR arrays without copying.
+     *
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     * @param rowPointers The positions of the first non-zero entries of rows, followed by the number of non-zero entries.
+     * @param columnIndices The column indices of non-zero entries, increasing within each row.
+     * @param values The values of non-zero entries.
+     */
+    public CsrRealMatrix(int rows, int columns, int[] rowPointers, int[] columnIndices, double[] values) {
+        // Check dimensions:
+        if (rows <= 0) {
+            throw new NotStrictlyPositiveException(rows);
+        }
+        else if (columns <= 0) {
+            throw new NotStrictlyPositiveException(columns);
+        }
+        else if (rowPointers.length != rows + 1) {
+            throw new DimensionMismatchException(rowPointers.length, rows + 1);
+        }
+        else if (columnIndices.length != values.length) {
+            throw new DimensionMismatchException(values.length, columnIndices.length);
+        }
+
+        // Check the structure:
+        if (rowPointers[0] != 0 || rowPointers[rows] != values.length) {
+            throw new IllegalArgumentException("Row pointers must start with zero and end with the number of non-zero entries.");
+        }
+        for (int row = 0; row < rows; row++) {
+            if (rowPointers[row] > rowPointers[row + 1]) {
+                throw new IllegalArgumentException("Row pointers must be non-decreasing.");
+            }
+            for (int i = rowPointers[row]; i < rowPointers[row + 1]; i++) {
+                if (columnIndices[i] < 0 || columnIndices[i] >= columns || (i > rowPointers[row] && columnIndices[i] <= columnIndices[i - 1])) {
+                    throw new IllegalArgumentException("Column indices must be valid and increasing within each row.");
+                }
+            }
+        }
+
+        // Save:
+        this.rows = rows;
+        this.columns = columns;
+        this.rowPointers = rowPointers;
+        this.columnIndices = columnIndices;
+        this.values = values;
+    }
+
+    /**
+     * Returns the matrix in the CSR format.
+     *
+     * <p>
+     *
+     * Entries are read once by {@link RealMatrix#walkInRowOrder(RealMatrixPreservingVisitor)}, ie.
+     * through the public API only, and zeros are skipped. Note that Commons Math does not expose the
+     * stored entries of {@link OpenMapRealMatrix}, hence they are looked up one by one.
+     *
+     * @param matrix The matrix.
+     * @return A new CSR matrix.
+     */
+    public static CsrRealMatrix of(RealMatrix matrix) {
+        // Copy CSR matrices:
+        if (matrix instanceof CsrRealMatrix) {
+            return ((CsrRealMatrix) matrix).copy();
+        }
+
+        // Collect non-zero entries row by row:
+        final EntryCollector collector = new EntryCollector(matrix.getRowDimension());
+        matrix.walkInRowOrder(collector);
+
+        // Done, return:
+        return new CsrRealMatrix(matrix.getRowDimension(), matrix.getColumnDimension(), collector.pointers,
+            Arrays.copyOf(collector.indices, collector.count), Arrays.copyOf(collector.values, collector.count));
+    }
+
+    /**
+     * Returns the matrix itself if it is in the CSR format, a CSR copy of the matrix if it is an
+     * {@link OpenMapRealMatrix}, or {@code null} otherwise.
+     *
+     * @param matrix The matrix.
+     * @return The CSR matrix or {@code null}.
+     */
+    static CsrRealMatrix sparse(RealMatrix matrix) {
+        if (matrix instanceof CsrRealMatrix) {
+            return (CsrRealMatrix) matrix;
+        }
+        else if (matrix instanceof OpenMapRealMatrix) {
+            return CsrRealMatrix.of(matrix);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the row pointers.
+     *
+     * @return The row pointers (not a copy).
+     */
+    public int[] getRowPointersRef() {
+        return this.rowPointers;
+    }
+
+    /**
+     * Returns the column indices of non-zero entries.
+     *
+     * @return The column indices (not a copy).
+     */
+    public int[] getColumnIndicesRef() {
+        return this.columnIndices;
+    }
+
+    /**
+     * Returns the values of non-zero entries.
+     *
+     * @return The values (not a copy).
+     */
+    public double[] getValuesRef() {
+        return this.values;
+    }
+
+    /**
+     * Returns the number of stored entries.
+     *
+     * @return The number of stored entries.
+     */
+    public int getEntryCount() {
+        return this.values.length;
+    }
+
+    @Override
+    public int getRowDimension() {
+        return this.rows;
+    }
+
+    @Override
+    public int getColumnDimension() {
+        return this.columns;
+    }
+
+    /**
+     * Creates an {@link OpenMapRealMatrix}, which supports random insertions, of the given dimensions.
+     *
+     * @param rowDimension The number of rows.
+     * @param columnDimension The number of columns.
+     * @return A new matrix of zeros.
+     */
+    @Override
+    public RealMatrix createMatrix(int rowDimension, int columnDimension) {
+        return new OpenMapRealMatrix(rowDimension, columnDimension);
+    }
+
+    @Override
+    public CsrRealMatrix copy() {
+        return new CsrRealMatrix(this.rows, this.columns, this.rowPointers.clone(), this.columnIndices.clone(), this.values.clone());
+    }
+
+    @Override
+    public double getEntry(int row, int column) {
+        MatrixUtils.checkMatrixIndex(this, row, column);
+        final int position = this.find(row, column);
+        return position < 0 ? 0.0 : this.values[position];
+    }
+
+    @Override
+    public void setEntry(int row, int column, double value) {
+        MatrixUtils.checkMatrixIndex(this, row, column);
+        final int position = this.find(row, column);
+        if (position >= 0) {
+            this.values[position] = value;
+        }
+        else if (value != 0.0) {
+            this.insert(-position - 1, row, column, value);
+        }
+    }
+
+    @Override
+    public void addToEntry(int row, int column, double increment) {
+        this.setEntry(row, column, this.getEntry(row, column) + increment);
+    }
+
+    @Override
+    public void multiplyEntry(int row, int column, double factor) {
+        MatrixUtils.checkMatrixIndex(this, row, column);
+        final int position = this.find(row, column);
+        if (position >= 0) {
+            this.values[position] *= factor;
+        }
+    }
+
+    @Override
+    public double[] getRow(int row) {
+        MatrixUtils.checkRowIndex(this, row);
+        final double[] retval = new double[this.columns];
+        for (int i = this.rowPointers[row]; i < this.rowPointers[row + 1]; i++) {
+            retval[this.columnIndices[i]] = this.values[i];
+        }
+        return retval;
+    }
+
+    @Override
+    public double[] operate(double[] vector) {
+        // Check dimensions:
+        if (vector.length != this.columns) {
+            throw new DimensionMismatchException(vector.length, this.columns);
+        }
+
+        // Multiply stored entries only:
+        final double[] retval = new double[this.rows];
+        for (int row = 0; row < this.rows; row++) {
+            double total = 0.0;
+            for (int i = this.rowPointers[row]; i < this.rowPointers[row + 1]; i++) {
+                total += this.values[i] * vector[this.columnIndices[i]];
+            }
+            retval[row] = total;
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Adds the entries of the given rows to the column totals.
+     *
+     * @param from The index of the row to start with (inclusive).
+     * @param to The index of the row to end with (exclusive).
+     * @param totals The column totals to be added to.
+     */
+    void addColumnSums(int from, int to, double[] totals) {
+        for (int i = this.rowPointers[from]; i < this.rowPointers[to]; i++) {
+            totals[this.columnIndices[i]] += this.values[i];
+        }
+    }
+
+    /**
+     * Adds the sums of the given rows to the row totals.
+     *
+     * @param from The index of the row to start with (inclusive).
+     * @param to The index of the row to end with (exclusive).
+     * @param totals The row totals to be added to, indexed by rows.
+     */
+    void addRowSums(int from, int to, double[] totals) {
+        for (int row = from; row < to; row++) {
+            double total = 0.0;
+            for (int i = this.rowPointers[row]; i < this.rowPointers[row + 1]; i++) {
+                total += this.values[i];
+            }
+            totals[row] += total;
+        }
+    }
+
+    /**
+     * Multiplies the stored entries of rows by the vector element-by-element into the destination
+     * which has the same structure, possibly this matrix itself.
+     *
+     * @param vector The vector indexed by columns.
+     * @param destination The destination values.
+     */
+    void multiplyRows(double[] vector, double[] destination) {
+        for (int i = 0; i < this.values.length; i++) {
+            destination[i] = this.values[i] * vector[this.columnIndices[i]];
+        }
+    }
+
+    /**
+     * Returns a new matrix of which row {@code i} is row {@code index[i]} of this matrix.
+     *
+     * @param index The indices of rows.
+     * @return The new matrix.
+     */
+    CsrRealMatrix selectRows(int[] index) {
+        // Compute row pointers:
+        final int[] pointers = new int[index.length + 1];
+        for (int row = 0; row < index.length; row++) {
+            pointers[row + 1] = pointers[row] + this.rowPointers[index[row] + 1] - this.rowPointers[index[row]];
+        }
+
+        // Copy rows:
+        final int[] indices = new int[pointers[index.length]];
+        final double[] values = new double[pointers[index.length]];
+        for (int row = 0; row < index.length; row++) {
+            final int start = this.rowPointers[index[row]];
+            final int length = pointers[row + 1] - pointers[row];
+            System.arraycopy(this.columnIndices, start, indices, pointers[row], length);
+            System.arraycopy(this.values, start, values, pointers[row], length);
+        }
+
+        // Done, return:
+        return new CsrRealMatrix(index.length, this.columns, pointers, indices, values);
+    }
+
+    /**
+     * Appends the rows of the given matrix to the rows of the first matrix into a new matrix.
+     *
+     * @param m1 The first matrix.
+     * @param m2 The second matrix of the same number of columns.
+     * @return The new matrix.
+     */
+    static CsrRealMatrix rbind(CsrRealMatrix m1, CsrRealMatrix m2) {
+        // Check dimensions:
+        if (m1.columns != m2.columns) {
+            throw new DimensionMismatchException(m2.columns, m1.columns);
+        }
+
+        // Concatenate row pointers, shifting those of the second matrix:
+        final int count = m1.values.length;
+        final int[] pointers = Arrays.copyOf(m1.rowPointers, m1.rows + m2.rows + 1);
+        for (int row = 1; row <= m2.rows; row++) {
+            pointers[m1.rows + row] = count + m2.rowPointers[row];
+        }
+
+        // Concatenate entries:
+        final int[] indices = Arrays.copyOf(m1.columnIndices, count + m2.values.length);
+        final double[] values = Arrays.copyOf(m1.values, count + m2.values.length);
+        System.arraycopy(m2.columnIndices, 0, indices, count, m2.values.length);
+        System.arraycopy(m2.values, 0, values, count, m2.values.length);
+
+        // Done, return:
+        return new CsrRealMatrix(m1.rows + m2.rows, m1.columns, pointers, indices, values);
+    }
+
+    /**
+     * Finds the position of the entry.
+     *
+     * @param row The row index.
+     * @param column The column index.
+     * @return The position of the stored entry, or {@code -(insertion position) - 1} if it is not stored.
+     */
+    private int find(int row, int column) {
+        return Arrays.binarySearch(this.columnIndices, this.rowPointers[row], this.rowPointers[row + 1], column);
+    }
+
+    /**
+     * Inserts a new entry at the given position.
+     *
+     * @param position The position to insert at.
+     * @param row The row index.
+     * @param column The column index.
+     * @param value The value.
+     */
+    private void insert(int position, int row, int column, double value) {
+        // Make room for the entry:
+        final int[] indices = new int[this.values.length + 1];
+        final double[] values = new double[this.values.length + 1];
+        System.arraycopy(this.columnIndices, 0, indices, 0, position);
+        System.arraycopy(this.values, 0, values, 0, position);
+        System.arraycopy(this.columnIndices, position, indices, position + 1, this.values.length - position);
+        System.arraycopy(this.values, position, values, position + 1, this.values.length - position);
+
+        // Set the entry:
+        indices[position] = column;
+        values[position] = value;
+
+        // Shift pointers of following rows and save:
+        for (int next = row + 1; next <= this.rows; next++) {
+            this.rowPointers[next]++;
+        }
+        this.columnIndices = indices;
+        this.values = values;
+    }
+
+    /**
+     * Provides a visitor which collects non-zero entries visited in row order into CSR arrays.
+     */
+    private static class EntryCollector extends DefaultRealMatrixPreservingVisitor {
+        /**
+         * The row pointers.
+         */
+        private final int[] pointers;
+
+        /**
+         * The column indices of collected entries (with spare capacity).
+         */
+        private int[] indices = new int[16];
+
+        /**
+         * The values of collected entries (with spare capacity).
+         */
+        private double[] values = new double[16];
+
+        /**
+         * The number of collected entries.
+         */
+        private int count;
+
+        /**
+         * Creates a collector.
+         *
+         * @param rows The number of rows.
+         */
+        EntryCollector(int rows) {
+            this.pointers = new int[rows + 1];
+        }
+
+        @Override
+        public void visit(int row, int column, double value) {
+            // Collect non-zero entries, growing the arrays if necessary:
+            if (value != 0.0) {
+                if (this.count == this.values.length) {
+                    this.indices = Arrays.copyOf(this.indices, 2 * this.count);
+                    this.values = Arrays.copyOf(this.values, 2 * this.count);
+                }
+                this.indices[this.count] = column;
+                this.values[this.count++] = value;
+            }
+
+            // Close the row so far:
+            this.pointers[row + 1] = this.count;
+        }
+    }
+}
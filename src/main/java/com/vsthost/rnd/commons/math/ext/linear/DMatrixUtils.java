@@ -16,16 +16,13 @@
 
 package com.vsthost.rnd.commons.math.ext.linear;
 
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.math3.distribution.UniformRealDistribution;
-import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.random.RandomGenerator;
-import org.apache.commons.math3.stat.StatUtils;
 import org.apache.commons.math3.util.MathArrays;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.function.DoublePredicate;
 import java.util.stream.IntStream;
 
 /**
@@ -42,16 +39,7 @@ public class DMatrixUtils {
      * @return The sum of the vector
      */
     public static double sum (double[] vector) {
-        // Declare and initialize the accumulator:
-        double total = 0.0;
-
-        // Iterate over the vector:
-        for (int i = 0; i < vector.length; i++) {
-            total += vector[i];
-        }
-
-        // Done, return:
-        return total;
+        return VectorKernelsProvider.INSTANCE.sum(vector, 0, vector.length);
     }
 
     /**
@@ -61,16 +49,7 @@ public class DMatrixUtils {
      * @return The sum of the absolute values in the vector
      */
     public static double sumOfAbsolutes (double[] vector) {
-        // Declare and initialize the accumulator:
-        double total = 0.0;
-
-        // Iterate over the vector:
-        for (int i = 0; i < vector.length; i++) {
-            total += Math.abs(vector[i]);
-        }
-
-        // Done, return:
-        return total;
+        return VectorKernelsProvider.INSTANCE.sumOfAbsolutes(vector, 0, vector.length);
     }
 
     /**
@@ -86,16 +65,52 @@ public class DMatrixUtils {
     /**
      * Returns the median of the vector.
      *
+     * <p>
+     *
+     * The median is found by selection in linear time on a copy of the vector.
+     *
      * @param vector The input vector as a double array
      * @return The median of the vector
      */
     public static double median (double[] vector) {
-        final double[] sorted = vector.clone();
-        Arrays.sort(sorted);
-        if (vector.length % 2 == 1) {
-            return sorted[vector.length / 2];
-        }
-        return (sorted[vector.length / 2 - 1] + sorted[vector.length / 2]) / 2;
+        return Selection.median(vector);
+    }
+
+    /**
+     * Returns the median of the vector without copying it, hence rearranging its elements.
+     *
+     * @param vector The input vector as a double array
+     * @return The median of the vector
+     */
+    public static double medianInPlace (double[] vector) {
+        return Selection.medianInPlace(vector);
+    }
+
+    /**
+     * Returns the quantiles of the vector for the given probabilities.
+     *
+     * <p>
+     *
+     * Quantiles are computed in a single selection pass by linear interpolation between
+     * closest ranks (type 7 in R). See {@link Selection#quantilesInPlace(double[], double...)}.
+     *
+     * @param vector The input vector as a double array
+     * @param probabilities Probabilities in the range of {@code [0, 1]}
+     * @return Quantiles in the order of probabilities
+     */
+    public static double[] quantiles (double[] vector, double... probabilities) {
+        return Selection.quantiles(vector, probabilities);
+    }
+
+    /**
+     * Returns the quantiles of the vector for the given probabilities without copying it, hence rearranging its elements.
+     *
+     * @param vector The input vector as a double array
+     * @param probabilities Probabilities in the range of {@code [0, 1]}
+     * @return Quantiles in the order of probabilities
+     */
+    public static double[] quantilesInPlace (double[] vector, double... probabilities) {
+        return Selection.quantilesInPlace(vector, probabilities);
     }
 
     /**
@@ -107,19 +122,33 @@ public class DMatrixUtils {
      * @return A sequence of length {@code length} starting with {@code start} and ending with {@code end}.
      */
     public static double[] sequence (double start, double end, int length) {
-        // Declare and initialize the return value:
-        double[] retval = new double[length];
+        return DMatrixUtils.sequence(start, end, new double[length], 0, length);
+    }
+
+    /**
+     * Fills the given range of the destination with a sequence from specified start to specified end.
+     *
+     * @param start The number to start with.
+     * @param end The number to end with.
+     * @param destination The destination array.
+     * @param offset The index of the destination to start with.
+     * @param length The length of the desired sequence.
+     * @return The destination array.
+     */
+    public static double[] sequence (double start, double end, double[] destination, int offset, int length) {
+        // Check the range:
+        DMatrixUtils.checkRange(destination, offset, length);
 
         // Calculate step:
-        double step = (end - start) / (length == 1 ? 1 : length - 1);
+        final double step = (end - start) / (length == 1 ? 1 : length - 1);
 
         // Iterate and fill:
         for (int i = 0; i < length; i++) {
-            retval[i] = start + (i * step);
+            destination[offset + i] = start + (i * step);
         }
 
         // Done, return;
-        return retval;
+        return destination;
     }
 
     /**
@@ -140,6 +169,26 @@ public class DMatrixUtils {
         return retval;
     }
 
+    /**
+     * Sets all values in the given range of the destination to {@code value}.
+     *
+     * @param value The value to be filled.
+     * @param destination The destination array.
+     * @param offset The index of the destination to start with.
+     * @param length The length of the range.
+     * @return The destination array.
+     */
+    public static double[] repeat (double value, double[] destination, int offset, int length) {
+        // Check the range:
+        DMatrixUtils.checkRange(destination, offset, length);
+
+        // Fill the range:
+        Arrays.fill(destination, offset, offset + length, value);
+
+        // Done, return the filled array:
+        return destination;
+    }
+
     /**
      * Clones the given matrix.
      *
@@ -147,7 +196,14 @@ public class DMatrixUtils {
      * @return The cloned matrix.
      */
     public static double[][] cloneMatrix (double[][] matrix) {
-        return MatrixUtils.createRealMatrix(matrix).getData();
+        // Copy rows once:
+        final double[][] retval = new double[matrix.length][];
+        for (int row = 0; row < matrix.length; row++) {
+            retval[row] = matrix[row].clone();
+        }
+
+        // Done, return:
+        return retval;
     }
 
     /**
@@ -180,18 +236,26 @@ public class DMatrixUtils {
      * @return The new array with selected items.
      */
     public static double[] selectByPredicate (double[] values, boolean[] predicate) {
-        // Define the filtered list:
-        List<Double> filtered = new ArrayList<>();
+        // Count selected elements:
+        int count = 0;
+        for (int i = 0; i < predicate.length; i++) {
+            if (predicate[i]) {
+                count++;
+            }
+        }
+
+        // Initialize the return value:
+        final double[] retval = new double[count];
 
         // Iterate and populate:
-        for (int i = 0; i < predicate.length; i++) {
+        for (int i = 0, j = 0; j < count; i++) {
             if (predicate[i]) {
-                filtered.add(values[i]);
+                retval[j++] = values[i];
             }
         }
 
-        // Save the value:
-        return ArrayUtils.toPrimitive(filtered.toArray(new Double[filtered.size()]));
+        // Done, return:
+        return retval;
     }
 
     /**
@@ -202,7 +266,154 @@ public class DMatrixUtils {
      * @return The new array with selected items.
      */
     public static double[] selectByPredicate (double[] values, Boolean[] predicate) {
-        return DMatrixUtils.selectByPredicate(values, ArrayUtils.toPrimitive(predicate));
+        // Count selected elements:
+        int count = 0;
+        for (int i = 0; i < predicate.length; i++) {
+            if (predicate[i]) {
+                count++;
+            }
+        }
+
+        // Initialize the return value:
+        final double[] retval = new double[count];
+
+        // Iterate and populate:
+        for (int i = 0, j = 0; j < count; i++) {
+            if (predicate[i]) {
+                retval[j++] = values[i];
+            }
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Creates a new array by selecting those elements of which bits are set in the bitmask.
+     *
+     * <p>
+     *
+     * The bit of the element {@code i} is the bit {@code i % 64} of {@code mask[i / 64]}
+     * as in {@link BitSet#toLongArray()}. Bits beyond the length of {@code values} are ignored.
+     *
+     * @param values The array where the elements are going to be selected from.
+     * @param mask The selection bitmask.
+     * @return The new array with selected items.
+     */
+    public static double[] selectByPredicate (double[] values, long[] mask) {
+        // Get the number of words to be considered and the mask of the last word:
+        final int words = Math.min(mask.length, (values.length + 63) >>> 6);
+        final long last = values.length % 64 == 0 ? -1L : (1L << values.length) - 1;
+
+        // Count selected elements:
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(w == (values.length - 1) >>> 6 ? mask[w] & last : mask[w]);
+        }
+
+        // Initialize the return value:
+        final double[] retval = new double[count];
+
+        // Iterate over set bits and populate:
+        for (int w = 0, j = 0; j < count; w++) {
+            long word = mask[w];
+            while (word != 0 && j < count) {
+                retval[j++] = values[(w << 6) + Long.numberOfTrailingZeros(word)];
+                word &= word - 1;
+            }
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Creates a new array by selecting those elements of which bits are set in the bit set.
+     *
+     * <p>
+     *
+     * Bits beyond the length of {@code values} are ignored.
+     *
+     * @param values The array where the elements are going to be selected from.
+     * @param predicate The selection bit set.
+     * @return The new array with selected items.
+     */
+    public static double[] selectByPredicate (double[] values, BitSet predicate) {
+        // Count selected elements:
+        int count = 0;
+        for (int i = predicate.nextSetBit(0); i >= 0 && i < values.length; i = predicate.nextSetBit(i + 1)) {
+            count++;
+        }
+
+        // Initialize the return value:
+        final double[] retval = new double[count];
+
+        // Iterate over set bits and populate:
+        for (int i = predicate.nextSetBit(0), j = 0; j < count; i = predicate.nextSetBit(i + 1)) {
+            retval[j++] = values[i];
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Creates a new array by selecting those elements satisfying the predicate.
+     *
+     * <p>
+     *
+     * The predicate is evaluated exactly once per element while building a bitmask
+     * which is then used for selection.
+     *
+     * @param values The array where the elements are going to be selected from.
+     * @param predicate The predicate.
+     * @return The new array with selected items.
+     */
+    public static double[] selectByPredicate (double[] values, DoublePredicate predicate) {
+        return DMatrixUtils.selectByPredicate(values, DMatrixUtils.bitmask(values, predicate));
+    }
+
+    /**
+     * Creates a bitmask of the elements satisfying the predicate.
+     *
+     * @param values The array of which the elements are going to be tested.
+     * @param predicate The predicate.
+     * @return A bitmask where the bit {@code i % 64} of the word {@code i / 64} is set if the element {@code i} satisfies the predicate.
+     */
+    public static long[] bitmask (double[] values, DoublePredicate predicate) {
+        // Initialize the return value:
+        final long[] retval = new long[(values.length + 63) >>> 6];
+
+        // Iterate and set bits:
+        for (int i = 0; i < values.length; i++) {
+            if (predicate.test(values[i])) {
+                retval[i >>> 6] |= 1L << i;
+            }
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Creates a bitmask from the predicate array.
+     *
+     * @param predicate The predicate array.
+     * @return A bitmask where the bit {@code i % 64} of the word {@code i / 64} is set if {@code predicate[i]} is true.
+     */
+    public static long[] bitmask (boolean[] predicate) {
+        // Initialize the return value:
+        final long[] retval = new long[(predicate.length + 63) >>> 6];
+
+        // Iterate and set bits:
+        for (int i = 0; i < predicate.length; i++) {
+            if (predicate[i]) {
+                retval[i >>> 6] |= 1L << i;
+            }
+        }
+
+        // Done, return:
+        return retval;
     }
 
     /**
@@ -214,22 +425,7 @@ public class DMatrixUtils {
      * @return A vector of indices sorted in the provided order.
      */
     public static int[] getOrder(double[] values, int[] indices, boolean descending) {
-        // Create an index series:
-        Integer[] opIndices = ArrayUtils.toObject(indices);
-
-        // Sort indices:
-        Arrays.sort(opIndices, new Comparator<Integer>() {
-            @Override
-            public int compare(Integer o1, Integer o2) {
-                if (descending) {
-                    return Double.compare(values[o2], values[o1]);
-                } else {
-                    return Double.compare(values[o1], values[o2]);
-                }
-            }
-        });
-
-        return ArrayUtils.toPrimitive(opIndices);
+        return ArgSort.order(values, indices, descending);
     }
 
     /**
@@ -262,22 +458,7 @@ public class DMatrixUtils {
      * @return A vector of indices sorted in the provided order.
      */
     public static int[] getOrder(int[] values, int[] indices, boolean descending) {
-        // Create an index series:
-        Integer[] opIndices = ArrayUtils.toObject(indices);
-
-        // Sort indices:
-        Arrays.sort(opIndices, new Comparator<Integer>() {
-            @Override
-            public int compare(Integer o1, Integer o2) {
-                if (descending) {
-                    return Double.compare(values[o2], values[o1]);
-                } else {
-                    return Double.compare(values[o1], values[o2]);
-                }
-            }
-        });
-
-        return ArrayUtils.toPrimitive(opIndices);
+        return ArgSort.order(values, indices, descending);
     }
 
     /**
@@ -301,6 +482,35 @@ public class DMatrixUtils {
         return DMatrixUtils.getOrder(values, false);
     }
 
+    /**
+     * Get the indices of the {@code k} smallest or largest elements in the respective order.
+     *
+     * <p>
+     *
+     * The result is the same as the first {@code k} elements of {@link DMatrixUtils#getOrder(double[], boolean)}
+     * but computed in O(n log k) time without sorting the entire vector.
+     *
+     * @param values A vector of double values.
+     * @param k The number of indices to be returned (capped at the length of the vector).
+     * @param descending Flag indicating if we go for largest values or not.
+     * @return A vector of indices sorted in the provided order.
+     */
+    public static int[] getTopK(double[] values, int k, boolean descending) {
+        return TopK.select(values, k, descending);
+    }
+
+    /**
+     * Get the indices of the {@code k} smallest or largest elements in the respective order.
+     *
+     * @param values A vector of integer values.
+     * @param k The number of indices to be returned (capped at the length of the vector).
+     * @param descending Flag indicating if we go for largest values or not.
+     * @return A vector of indices sorted in the provided order.
+     */
+    public static int[] getTopK(int[] values, int k, boolean descending) {
+        return TopK.select(values, k, descending);
+    }
+
     /**
      * Returns the DOWN rounded value of the given value for the given steps.
      *
@@ -354,6 +564,87 @@ public class DMatrixUtils {
         return up;
     }
 
+    /**
+     * Returns the DOWN rounded values of the given values for the given steps.
+     *
+     * <p>
+     *
+     * The result is exactly the double values of {@link DMatrixUtils#roundDownTo(double, double)} for
+     * each value, computed without {@link BigDecimal} allocations as per {@link DecimalRounding}.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @return A new array of rounded values.
+     */
+    public static double[] roundDownTo(double[] values, double steps) {
+        return DecimalRounding.roundDownTo(values, steps);
+    }
+
+    /**
+     * Same functionality as {@link DMatrixUtils#roundDownTo(double[], double)} but computed in parallel.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @return A new array of rounded values.
+     */
+    public static double[] parallelRoundDownTo(double[] values, double steps) {
+        return DecimalRounding.parallelRoundDownTo(values, steps);
+    }
+
+    /**
+     * Returns the UP rounded values of the given values for the given steps.
+     *
+     * <p>
+     *
+     * The result is exactly the double values of {@link DMatrixUtils#roundUpTo(double, double)} for
+     * each value, computed without {@link BigDecimal} allocations as per {@link DecimalRounding}.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @return A new array of rounded values.
+     */
+    public static double[] roundUpTo(double[] values, double steps) {
+        return DecimalRounding.roundUpTo(values, steps);
+    }
+
+    /**
+     * Same functionality as {@link DMatrixUtils#roundUpTo(double[], double)} but computed in parallel.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @return A new array of rounded values.
+     */
+    public static double[] parallelRoundUpTo(double[] values, double steps) {
+        return DecimalRounding.parallelRoundUpTo(values, steps);
+    }
+
+    /**
+     * Returns the closest rounded values of the given values for the given steps.
+     *
+     * <p>
+     *
+     * The result is exactly the double values of {@link DMatrixUtils#roundToClosest(double, double)} for
+     * each value, computed without {@link BigDecimal} allocations as per {@link DecimalRounding}.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @return A new array of rounded values.
+     */
+    public static double[] roundToClosest(double[] values, double steps) {
+        return DecimalRounding.roundToClosest(values, steps);
+    }
+
+    /**
+     * Same functionality as {@link DMatrixUtils#roundToClosest(double[], double)} but computed in parallel.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @return A new array of rounded values.
+     */
+    public static double[] parallelRoundToClosest(double[] values, double steps) {
+        return DecimalRounding.parallelRoundToClosest(values, steps);
+    }
+
     /**
      * Same functionality as {@link DMatrixUtils#roundToClosest(double, double)} but operating on double values.
      *
@@ -391,31 +682,18 @@ public class DMatrixUtils {
     /**
      * Creates a matrix from the provided range for columns with the given number of rows.
      *
+     * <p>
+     *
+     * Use {@link ParameterGrid#range(double[], double[], int)} to compute entries on demand instead.
+     * The number of columns is the length of {@code lower}, ie. extra upper bounds are ignored.
+     *
      * @param lower The lower bound (inclusive) for the range.
-     * @param upper The upper bound (exclusive) for the range.
+     * @param upper The upper bound (exclusive) for the range, at least of the length of {@code lower}.
      * @param rows The number of rows.
      * @return A new matrix.
      */
     public static double[][] matrixFromRange (double[] lower, double[] upper, int rows) {
-        // Get the number of columns:
-        final int cols = lower.length;
-
-        // Initialize the return value:
-        final double[][] matrix = new double[rows][cols];
-
-        // Iterate over columns and fill the array:
-        for (int col = 0; col < cols; col++) {
-            // Get the sequence:
-            final double[] sequence = DMatrixUtils.sequence(lower[col], upper[col], rows);
-
-            // Assign to each row in the column:
-            for (int row = 0; row < sequence.length; row++) {
-                matrix[row][col] = sequence[row];
-            }
-        }
-
-        // Done, return the populated matrix:
-        return matrix;
+        return ParameterGrid.range(lower, upper.length > lower.length ? Arrays.copyOf(upper, lower.length) : upper, rows).toArray();
     }
 
     /**
@@ -425,97 +703,91 @@ public class DMatrixUtils {
      * @return Cumulative sums of the vector.
      */
     public static double[] cumsum (double[] vector) {
-        // Initialize the return value:
-        final double[] retval = new double[vector.length];
-
-        // Iterate and cumulate:
-        retval[0] = vector[0];
-        for (int i = 1; i < retval.length; i++) {
-            retval[i] = vector[i] + retval[i - 1];
-        }
-
-        // Done, return:
-        return retval;
+        return DMatrixUtils.cumsum(vector, 0, new double[vector.length], 0, vector.length);
     }
 
     /**
-     * Provides a workhorse function for {@link DMatrixUtils#zmbd} by shuffling indices for operation.
+     * Computes the cumulative sums of a given vector into the destination array.
      *
-     * @param lower Lower distances.
-     * @param upper Upper distances.
-     * @param targetMean The target mean (ie. not zero-mean, but target-mean bounded...).
-     * @param randomGenerator Random number generator.
-     * @return The zero-mean bounded uniform distribution.
+     * <p>
+     *
+     * The destination may be the vector itself in which case the cumulative sums are computed in-place.
+     *
+     * @param vector Vector which the cumulative sums to be computed of.
+     * @param destination The destination array of at least the length of the vector.
+     * @return The destination array.
      */
-    private static double[] _zmbdInner(double[] lower, double[] upper, double targetMean, RandomGenerator randomGenerator) {
-        // Define the dimension of the problem:
-        final int dimension = lower.length;
-
-        // Define the return value:
-        final double[] values = new double[dimension];
+    public static double[] cumsum (double[] vector, double[] destination) {
+        return DMatrixUtils.cumsum(vector, 0, destination, 0, vector.length);
+    }
 
-        // Get the sum of lowers and uppers:
-        final double lowerSum = StatUtils.sum(lower);
-        final double upperSum = StatUtils.sum(upper);
+    /**
+     * Computes the cumulative sums of a given range into the given range of the destination array.
+     *
+     * <p>
+     *
+     * The destination may be the vector itself with the same offset in which case the cumulative
+     * sums are computed in-place. Other overlapping ranges are rejected.
+     *
+     * @param vector Vector which the cumulative sums to be computed of.
+     * @param offset The index of the vector to start with.
+     * @param destination The destination array.
+     * @param destinationOffset The index of the destination to start with.
+     * @param length The length of the ranges.
+     * @return The destination array.
+     */
+    public static double[] cumsum (double[] vector, int offset, double[] destination, int destinationOffset, int length) {
+        return Scans.scan(vector, offset, destination, destinationOffset, length, Scans.Operation.SUM);
+    }
 
-        // Initialize the contingencies to cumulative sums:
-        final double[] contingencyLower = DMatrixUtils.cumsum(lower);
-        final double[] contingencyUpper = DMatrixUtils.cumsum(upper);
+    /**
+     * Computes the cumulative sums of a given vector in-place.
+     *
+     * @param vector Vector which the cumulative sums to be computed of and stored into.
+     * @return The vector itself.
+     */
+    public static double[] cumsumInPlace (double[] vector) {
+        return DMatrixUtils.cumsum(vector, 0, vector, 0, vector.length);
+    }
 
-        // Iterate over contingencies and update:
-        for (int i = 0; i < dimension; i++) {
-            contingencyLower[i] = lowerSum - contingencyLower[i];
-            contingencyUpper[i] = upperSum - contingencyUpper[i];
-        }
+    /**
+     * Computes the cumulative sums of a given vector in parallel. See {@link Scans} for details.
+     *
+     * @param vector Vector which the cumulative sums to be computed of.
+     * @return Cumulative sums of the vector.
+     */
+    public static double[] parallelCumsum (double[] vector) {
+        return Scans.parallelScan(vector, Scans.Operation.SUM);
+    }
 
-        // Define the mean value to be updated:
-        double mean = 0.0;
-
-        // Iterate over the dimension in a random order and update permissible draws and mean value:
-        double minValue, maxValue;
-        for (int index = 0; index < dimension; index++) {
-            // Define the min/max value:
-            minValue = lower[index];
-            maxValue = upper[index];
-
-            // Simulate or get antithetical for the element:
-            if (mean == targetMean) {
-                // Get correct contingency U/L bounds by sign:
-                final double contingencyU = contingencyUpper[index] > 0 ? contingencyUpper[index] : -contingencyUpper[index];
-                final double contingencyL = contingencyLower[index] < 0 ? contingencyLower[index] : -contingencyLower[index];
-
-                // Update the effective range:
-                minValue = minValue < 0 ? Math.max(minValue, -contingencyU) : Math.min(minValue, -contingencyL);
-                maxValue = maxValue > 0 ? Math.min(maxValue, -contingencyL) : Math.max(maxValue, -contingencyU);
-
-                // Get the value:
-                if (minValue == maxValue) {
-                    values[index] = minValue;
-
-                    if (values[index] < lower[index]) {
-                        values[index] = lower[index];
-                    }
-                    else if(values[index] > upper[index]){
-                        values[index] = upper[index];
-                    }
-                }
-                else {
-                    values[index] = new UniformRealDistribution(randomGenerator, Math.min(minValue, maxValue), Math.max(minValue, maxValue)).sample();
-                }
-            }
-            else if (mean > 0.0) {
-                values[index] = maxValue > -mean ? Math.max(-mean, minValue) : Math.min(-mean, maxValue);
-            }
-            else {
-                values[index] = minValue < -mean ? Math.min(-mean, maxValue) : Math.max(-mean, minValue);
-            }
+    /**
+     * Computes the cumulative products of a given vector.
+     *
+     * @param vector Vector which the cumulative products to be computed of.
+     * @return Cumulative products of the vector.
+     */
+    public static double[] cumprod (double[] vector) {
+        return Scans.scan(vector, Scans.Operation.PRODUCT);
+    }
 
-            // Update the mean:
-            mean += values[index];
-        }
+    /**
+     * Computes the cumulative mins of a given vector.
+     *
+     * @param vector Vector which the cumulative mins to be computed of.
+     * @return Cumulative mins of the vector.
+     */
+    public static double[] cummin (double[] vector) {
+        return Scans.scan(vector, Scans.Operation.MIN);
+    }
 
-        // Done, return with pride!
-        return values;
+    /**
+     * Computes the cumulative maxs of a given vector.
+     *
+     * @param vector Vector which the cumulative maxs to be computed of.
+     * @return Cumulative maxs of the vector.
+     */
+    public static double[] cummax (double[] vector) {
+        return Scans.scan(vector, Scans.Operation.MAX);
     }
 
     /**
@@ -525,6 +797,10 @@ public class DMatrixUtils {
      *
      * Note that if {@code targetMean} is not zero, then the logic is not zero-mean but target-mean bounded.
      *
+     * <p>
+     *
+     * Use {@link ZmbdSampler} directly to draw many samples for the same bounds.
+     *
      * @param lower Lower distances.
      * @param upper Upper distances.
      * @param targetMean The target mean (ie. not zero-mean, but target-mean bounded...).
@@ -532,30 +808,7 @@ public class DMatrixUtils {
      * @return The zero-mean bounded uniform distribution.
      */
     public static double[] zmbd(double[] lower, double[] upper, double targetMean, RandomGenerator randomGenerator) {
-        // Check dimension match:
-        if (lower.length != upper.length) {
-            throw new IllegalArgumentException("Lower and upper bounds must be of same length.");
-        }
-
-        // Check for that lower bounds must be equal to or less than upper bounds.
-        for (int i = 0; i < lower.length; i++) {
-            if (lower[i] > upper[i]) {
-                throw new IllegalArgumentException("Lower bounds must be equal to or less than upper bounds.");
-            }
-        }
-
-        // Get indices and shuffle:
-        final int[] indices = DMatrixUtils.shuffleIndices(lower.length, randomGenerator);
-
-        // Call auxiliary function:
-        final double[] zmbdValues = DMatrixUtils._zmbdInner(
-                DMatrixUtils.applyIndices(lower, indices),
-                DMatrixUtils.applyIndices(upper, indices),
-                targetMean,
-                randomGenerator);
-
-        // Reapply original indices and return:
-        return DMatrixUtils.applyIndices(zmbdValues, DMatrixUtils.getOrder(indices));
+        return new ZmbdSampler(lower, upper, targetMean).sample(randomGenerator);
     }
 
     /**
@@ -570,64 +823,13 @@ public class DMatrixUtils {
         return DMatrixUtils.zmbd(lower, upper, 0.0, randomGenerator);
     }
 
-    /**
-     * Returns a target-total bounded distribution sample.
-     *
-     * @param target The target total value.
-     * @param lower Lower limits.
-     * @param upper Upper limits.
-     * @param randomGenerator The random generator.
-     * @return A vector of target-total bounded sample.
-     */
-    private static double[] _ttbdInner (double target, double[] lower, double[] upper, RandomGenerator randomGenerator) {
-        // Initialize the return value:
-        final double[] retval = new double[lower.length];
-
-        // Iterate over the retval and simulate:
-        for (int i = 0; i < retval.length; i++) {
-            if (lower[i] == upper[i]) {
-                retval[i] = lower[i];
-            }
-            else {
-                retval[i] = new UniformRealDistribution(randomGenerator, lower[i], upper[i]).sample();
-            }
-        }
-
-        // Compute the gap of simulated total and target total:
-        double gap = target - DMatrixUtils.sum(retval);
-
-        // Iterate over the return values and adjust as per gap:
-        for (int i = 0; i < retval.length; i++) {
-            // If there is no gap, return the retval:
-            if (gap == 0.0) {
-                return retval;
-            }
-
-            // Calculate the distances to limits:
-            final double distanceToLower = lower[i] - retval[i];
-            final double distanceToUpper = upper[i] - retval[i];
-
-            // Compute the permissible shift:
-            final double shift = gap > 0 ? Math.min(distanceToUpper, gap) : Math.max(distanceToLower, gap);
-
-            // Apply the shift:
-            retval[i] += shift;
-
-            // Update gap:
-            gap -= shift;
-        }
-
-        // Done, return:
-        return retval;
-    }
-
     /**
      * Returns a target-total bounded distribution sample.
      *
      * <p>
      *
-     * Note that this method is not the actual workhorse. This very method first
-     * shuffles indices, calls the workhorse, and readjust as per original indices.
+     * Note that this method is not the actual workhorse. It delegates to a one-off
+     * {@link TtbdSampler} which should be used directly to draw many samples for the same limits.
      *
      * @param target The target total value.
      * @param lower Lower limits.
@@ -636,23 +838,7 @@ public class DMatrixUtils {
      * @return A vector of target-total bounded sample.
      */
     public static double[] ttbd(double target, double[] lower, double[] upper, RandomGenerator randomGenerator) {
-        // Check dimension match:
-        if (lower.length != upper.length) {
-            throw new IllegalArgumentException("Lower and upper bounds must be of same length.");
-        }
-
-        // Get indices and shuffle:
-        final int[] indices = DMatrixUtils.shuffleIndices(lower.length, randomGenerator);
-
-        // Call auxiliary function:
-        final double[] ttbdValues = DMatrixUtils._ttbdInner(
-                target,
-                DMatrixUtils.applyIndices(lower, indices),
-                DMatrixUtils.applyIndices(upper, indices),
-                randomGenerator);
-
-        // Reapply original indices and return:
-        return DMatrixUtils.applyIndices(ttbdValues, DMatrixUtils.getOrder(indices));
+        return new TtbdSampler(target, lower, upper).sample(randomGenerator);
     }
 
     /**
@@ -664,15 +850,41 @@ public class DMatrixUtils {
      */
     public static int[] shuffleIndices (int length, RandomGenerator randomGenerator) {
         // Initialize indices:
-        final int[] indices = IntStream.range(0, length).toArray();
+        final int[] indices = new int[length];
 
         // Shuffle the array:
-        MathArrays.shuffle(indices, randomGenerator);
+        DMatrixUtils.shuffleIndices(indices, randomGenerator);
 
         // Done return shuffled indices:
         return indices;
     }
 
+    /**
+     * Populates the provided array with shuffled indices of its own length.
+     *
+     * <p>
+     *
+     * This is the allocation-free counterpart of {@link DMatrixUtils#shuffleIndices(int, RandomGenerator)}
+     * and consumes the random number generator exactly the same way as {@link MathArrays#shuffle(int[], RandomGenerator)}.
+     *
+     * @param indices The array to be populated with shuffled indices.
+     * @param randomGenerator Random number generator.
+     */
+    public static void shuffleIndices (int[] indices, RandomGenerator randomGenerator) {
+        // Initialize indices:
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+
+        // Shuffle the array (Fisher-Yates from the tail):
+        for (int i = indices.length - 1; i > 0; i--) {
+            final int target = randomGenerator.nextInt(i + 1);
+            final int temp = indices[target];
+            indices[target] = indices[i];
+            indices[i] = temp;
+        }
+    }
+
     /**
      * Consumes an array and desired respective indices in an array and return a new array with values from the desired indices.
      *
@@ -684,15 +896,61 @@ public class DMatrixUtils {
         // Initialize the return array:
         final double[] retval = new double[indices.length];
 
-        // Iterate over indices and populate:
-        for (int i = 0; i < retval.length; i++) {
-            retval[i] = vector[indices[i]];
-        }
+        // Gather values at indices:
+        VectorKernelsProvider.INSTANCE.applyIndices(vector, indices, 0, retval, 0, retval.length);
 
         // Done, return the return value:
         return retval;
     }
 
+    /**
+     * Consumes an array and desired respective indices in an array and populates the destination
+     * array with values from the desired indices.
+     *
+     * @param vector Values.
+     * @param indices Desired indices for order.
+     * @param destination The destination array of at least the length of the indices.
+     * @return The destination array.
+     */
+    public static double[] applyIndices (double[] vector, int[] indices, double[] destination) {
+        return DMatrixUtils.applyIndices(vector, indices, 0, destination, 0, indices.length);
+    }
+
+    /**
+     * Consumes an array and a range of desired respective indices and populates the given range
+     * of the destination array with values from the desired indices.
+     *
+     * <p>
+     *
+     * The destination may not be the vector itself as gathering is not safe in-place.
+     *
+     * @param vector Values.
+     * @param indices Desired indices for order.
+     * @param indicesOffset The index of the indices to start with.
+     * @param destination The destination array.
+     * @param destinationOffset The index of the destination to start with.
+     * @param length The length of the ranges.
+     * @return The destination array.
+     */
+    public static double[] applyIndices (double[] vector, int[] indices, int indicesOffset, double[] destination, int destinationOffset, int length) {
+        // Check ranges:
+        if (indicesOffset < 0 || length < 0 || indicesOffset > indices.length - length) {
+            throw new IllegalArgumentException("The range is out of the bounds of the indices.");
+        }
+        DMatrixUtils.checkRange(destination, destinationOffset, length);
+
+        // Gathering is not safe in-place:
+        if (vector == destination) {
+            throw new IllegalArgumentException("The destination can not be the vector itself.");
+        }
+
+        // Gather values at indices:
+        VectorKernelsProvider.INSTANCE.applyIndices(vector, indices, indicesOffset, destination, destinationOffset, length);
+
+        // Done, return:
+        return destination;
+    }
+
     /**
      * Ensures that the vector is limited to {@code limit} (inclusive) as {@code limit} is
      * acting as either lower boundary ({@code min == true}) or upper boundary ({@code min == false}).
@@ -706,30 +964,72 @@ public class DMatrixUtils {
         // Initialize the return value:
         final double[] retval = new double[vector.length];
 
-        // Iterate:
-        for (int i = 0; i < retval.length; i++) {
-            if (min) {
-                if (vector[i] < limit) {
-                    retval[i] = limit;
-                }
-                else {
-                    retval[i] = vector[i];
-                }
-            }
-            else {
-                if (vector[i] > limit) {
-                    retval[i] = limit;
-                }
-                else {
-                    retval[i] = vector[i];
-                }
-            }
-        }
+        // Limit values:
+        VectorKernelsProvider.INSTANCE.ensureLimit(vector, 0, limit, min, retval, 0, retval.length);
 
         // Done, return:
         return  retval;
     }
 
+    /**
+     * Limits the vector to {@code limit} into the destination array. See {@link #ensureLimit(double[], double, boolean)}.
+     *
+     * <p>
+     *
+     * The destination may be the vector itself.
+     *
+     * @param vector The vector to be limited.
+     * @param limit The limit.
+     * @param min The flag if we should min the limit ({@code true}) or max it ({@code false}).
+     * @param destination The destination array of at least the length of the vector.
+     * @return The destination array.
+     */
+    public static double[] ensureLimit (double[] vector, double limit, boolean min, double[] destination) {
+        return DMatrixUtils.ensureLimit(vector, 0, limit, min, destination, 0, vector.length);
+    }
+
+    /**
+     * Limits the given range of the vector to {@code limit} into the given range of the destination array.
+     * See {@link #ensureLimit(double[], double, boolean)}.
+     *
+     * <p>
+     *
+     * The destination may be the vector itself with the same offset. Other overlapping ranges are rejected.
+     *
+     * @param vector The vector to be limited.
+     * @param offset The index of the vector to start with.
+     * @param limit The limit.
+     * @param min The flag if we should min the limit ({@code true}) or max it ({@code false}).
+     * @param destination The destination array.
+     * @param destinationOffset The index of the destination to start with.
+     * @param length The length of the ranges.
+     * @return The destination array.
+     */
+    public static double[] ensureLimit (double[] vector, int offset, double limit, boolean min, double[] destination, int destinationOffset, int length) {
+        // Check ranges:
+        DMatrixUtils.checkRange(vector, offset, length);
+        DMatrixUtils.checkRange(destination, destinationOffset, length);
+        DMatrixUtils.checkOverlap(vector, offset, destination, destinationOffset, length);
+
+        // Limit values:
+        VectorKernelsProvider.INSTANCE.ensureLimit(vector, offset, limit, min, destination, destinationOffset, length);
+
+        // Done, return:
+        return destination;
+    }
+
+    /**
+     * Limits the vector to {@code limit} in-place. See {@link #ensureLimit(double[], double, boolean)}.
+     *
+     * @param vector The vector to be limited.
+     * @param limit The limit.
+     * @param min The flag if we should min the limit ({@code true}) or max it ({@code false}).
+     * @return The vector itself.
+     */
+    public static double[] ensureLimitInPlace (double[] vector, double limit, boolean min) {
+        return DMatrixUtils.ensureLimit(vector, 0, limit, min, vector, 0, vector.length);
+    }
+
     /**
      * Computes a vector as the min of respective pairs from two arrays.
      *
@@ -741,15 +1041,60 @@ public class DMatrixUtils {
         // Initialize the return value:
         final double[] retval = new double[vector1.length];
 
-        // Iterate over values and get mins:
-        for (int i = 0; i < retval.length; i++) {
-            retval[i] = Math.min(vector1[i], vector2[i]);
-        }
+        // Get mins of pairs:
+        VectorKernelsProvider.INSTANCE.pairwiseMin(vector1, 0, vector2, 0, retval, 0, retval.length);
 
         // Done, return:
         return retval;
     }
 
+    /**
+     * Computes the min of respective pairs from two arrays into the destination array.
+     *
+     * <p>
+     *
+     * The destination may be either of the vectors itself.
+     *
+     * @param vector1 The first vector.
+     * @param vector2 The second vector.
+     * @param destination The destination array of at least the length of the first vector.
+     * @return The destination array.
+     */
+    public static double[] pairwiseMin (double[] vector1, double[] vector2, double[] destination) {
+        return DMatrixUtils.pairwiseMin(vector1, 0, vector2, 0, destination, 0, vector1.length);
+    }
+
+    /**
+     * Computes the min of respective pairs from two ranges into the given range of the destination array.
+     *
+     * <p>
+     *
+     * The destination may be either of the vectors itself with the same offset. Other overlapping ranges are rejected.
+     *
+     * @param vector1 The first vector.
+     * @param offset1 The index of the first vector to start with.
+     * @param vector2 The second vector.
+     * @param offset2 The index of the second vector to start with.
+     * @param destination The destination array.
+     * @param destinationOffset The index of the destination to start with.
+     * @param length The length of the ranges.
+     * @return The destination array.
+     */
+    public static double[] pairwiseMin (double[] vector1, int offset1, double[] vector2, int offset2, double[] destination, int destinationOffset, int length) {
+        // Check ranges:
+        DMatrixUtils.checkRange(vector1, offset1, length);
+        DMatrixUtils.checkRange(vector2, offset2, length);
+        DMatrixUtils.checkRange(destination, destinationOffset, length);
+        DMatrixUtils.checkOverlap(vector1, offset1, destination, destinationOffset, length);
+        DMatrixUtils.checkOverlap(vector2, offset2, destination, destinationOffset, length);
+
+        // Get mins of pairs:
+        VectorKernelsProvider.INSTANCE.pairwiseMin(vector1, offset1, vector2, offset2, destination, destinationOffset, length);
+
+        // Done, return:
+        return destination;
+    }
+
     /**
      * Computes a vector as the max of respective pairs from two arrays.
      *
@@ -761,12 +1106,85 @@ public class DMatrixUtils {
         // Initialize the return value:
         final double[] retval = new double[vector1.length];
 
-        // Iterate over values and get maxs:
-        for (int i = 0; i < retval.length; i++) {
-            retval[i] = Math.max(vector1[i], vector2[i]);
-        }
+        // Get maxs of pairs:
+        VectorKernelsProvider.INSTANCE.pairwiseMax(vector1, 0, vector2, 0, retval, 0, retval.length);
 
         // Done, return:
         return retval;
     }
+
+    /**
+     * Computes the max of respective pairs from two arrays into the destination array.
+     *
+     * <p>
+     *
+     * The destination may be either of the vectors itself.
+     *
+     * @param vector1 The first vector.
+     * @param vector2 The second vector.
+     * @param destination The destination array of at least the length of the first vector.
+     * @return The destination array.
+     */
+    public static double[] pairwiseMax (double[] vector1, double[] vector2, double[] destination) {
+        return DMatrixUtils.pairwiseMax(vector1, 0, vector2, 0, destination, 0, vector1.length);
+    }
+
+    /**
+     * Computes the max of respective pairs from two ranges into the given range of the destination array.
+     *
+     * <p>
+     *
+     * The destination may be either of the vectors itself with the same offset. Other overlapping ranges are rejected.
+     *
+     * @param vector1 The first vector.
+     * @param offset1 The index of the first vector to start with.
+     * @param vector2 The second vector.
+     * @param offset2 The index of the second vector to start with.
+     * @param destination The destination array.
+     * @param destinationOffset The index of the destination to start with.
+     * @param length The length of the ranges.
+     * @return The destination array.
+     */
+    public static double[] pairwiseMax (double[] vector1, int offset1, double[] vector2, int offset2, double[] destination, int destinationOffset, int length) {
+        // Check ranges:
+        DMatrixUtils.checkRange(vector1, offset1, length);
+        DMatrixUtils.checkRange(vector2, offset2, length);
+        DMatrixUtils.checkRange(destination, destinationOffset, length);
+        DMatrixUtils.checkOverlap(vector1, offset1, destination, destinationOffset, length);
+        DMatrixUtils.checkOverlap(vector2, offset2, destination, destinationOffset, length);
+
+        // Get maxs of pairs:
+        VectorKernelsProvider.INSTANCE.pairwiseMax(vector1, offset1, vector2, offset2, destination, destinationOffset, length);
+
+        // Done, return:
+        return destination;
+    }
+
+    /**
+     * Checks if the given range is within the bounds of the array.
+     *
+     * @param array The array.
+     * @param offset The index to start with.
+     * @param length The length of the range.
+     */
+    static void checkRange (double[] array, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > array.length - length) {
+            throw new IllegalArgumentException("The range is out of the bounds of the array.");
+        }
+    }
+
+    /**
+     * Checks that the source and destination ranges are either exactly the same or do not overlap.
+     *
+     * @param source The source array.
+     * @param sourceOffset The index of the source to start with.
+     * @param destination The destination array.
+     * @param destinationOffset The index of the destination to start with.
+     * @param length The length of the ranges.
+     */
+    static void checkOverlap (double[] source, int sourceOffset, double[] destination, int destinationOffset, int length) {
+        if (source == destination && sourceOffset != destinationOffset && Math.abs(sourceOffset - destinationOffset) < length) {
+            throw new IllegalArgumentException("The destination range overlaps with the source range.");
+        }
+    }
 }
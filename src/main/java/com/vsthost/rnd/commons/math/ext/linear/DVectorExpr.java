@@ -0,0 +1,667 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Provides lazy, fused element-wise expressions over double vectors.
+ *
+ * <p>
+ *
+ * An expression is built from a source vector and a chain of element-wise operations, such as
+ * {@code DVectorExpr.of(a).min(b).clampLow(0).sum()}, which is equivalent to
+ * {@code DMatrixUtils.sum(DMatrixUtils.ensureLimit(DMatrixUtils.pairwiseMin(a, b), 0, true))}.
+ * Nothing is computed until a terminal operation ({@link #sum()}, {@link #toArray()},
+ * {@link #into(double[], int)} or their parallel variants) is called.
+ *
+ * <p>
+ *
+ * Terminal operations evaluate the whole expression tree in a single pass over chunks of
+ * {@value #CHUNK} elements. Intermediate values only live in small scratch buffers which stay in
+ * cache, so no intermediate arrays are materialized. Element-wise results are exactly the same
+ * as the respective {@link DMatrixUtils} calls. Sums are accumulated per block of {@value #BLOCK}
+ * elements and then across blocks, hence they may differ from {@link DMatrixUtils#sum(double[])}
+ * in rounding, but the sequential and parallel variants always agree.
+ *
+ * <p>
+ *
+ * Expressions are immutable and can be shared and evaluated by many threads. Source vectors are
+ * not copied, hence changes to them are visible to subsequent evaluations.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public final class DVectorExpr {
+    /**
+     * Defines the number of elements evaluated at once.
+     */
+    static final int CHUNK = 1024;
+
+    /**
+     * Defines the number of elements per unit of parallel work (and per partial sum).
+     */
+    static final int BLOCK = 16 * CHUNK;
+
+    /**
+     * Defines the length from which the parallel variants actually run in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * The root node of the expression tree.
+     */
+    private final Node node;
+
+    /**
+     * The length of the expression.
+     */
+    private final int length;
+
+    /**
+     * Creates an expression.
+     *
+     * @param node The root node of the expression tree.
+     * @param length The length of the expression.
+     */
+    private DVectorExpr(Node node, int length) {
+        this.node = node;
+        this.length = length;
+    }
+
+    /**
+     * Creates an expression over the given vector.
+     *
+     * @param vector The source vector.
+     * @return An expression evaluating to the vector itself.
+     */
+    public static DVectorExpr of(double[] vector) {
+        return new DVectorExpr(new Source(vector), vector.length);
+    }
+
+    /**
+     * Returns the length of the expression.
+     *
+     * @return The length of the expression.
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Returns the expression of the mins of respective pairs. See {@link DMatrixUtils#pairwiseMin(double[], double[])}.
+     *
+     * @param vector The other vector.
+     * @return A new expression.
+     */
+    public DVectorExpr min(double[] vector) {
+        return this.min(DVectorExpr.of(vector));
+    }
+
+    /**
+     * Returns the expression of the mins of respective pairs. See {@link DMatrixUtils#pairwiseMin(double[], double[])}.
+     *
+     * @param other The other expression.
+     * @return A new expression.
+     */
+    public DVectorExpr min(DVectorExpr other) {
+        return this.binary(other, VectorKernelsProvider.INSTANCE::pairwiseMin);
+    }
+
+    /**
+     * Returns the expression of the maxs of respective pairs. See {@link DMatrixUtils#pairwiseMax(double[], double[])}.
+     *
+     * @param vector The other vector.
+     * @return A new expression.
+     */
+    public DVectorExpr max(double[] vector) {
+        return this.max(DVectorExpr.of(vector));
+    }
+
+    /**
+     * Returns the expression of the maxs of respective pairs. See {@link DMatrixUtils#pairwiseMax(double[], double[])}.
+     *
+     * @param other The other expression.
+     * @return A new expression.
+     */
+    public DVectorExpr max(DVectorExpr other) {
+        return this.binary(other, VectorKernelsProvider.INSTANCE::pairwiseMax);
+    }
+
+    /**
+     * Returns the expression limited to {@code limit} as a lower boundary. See {@link DMatrixUtils#ensureLimit(double[], double, boolean)}.
+     *
+     * @param limit The lower limit.
+     * @return A new expression.
+     */
+    public DVectorExpr clampLow(double limit) {
+        return this.unary((source, offset, destination, destinationOffset, length) ->
+            VectorKernelsProvider.INSTANCE.ensureLimit(source, offset, limit, true, destination, destinationOffset, length));
+    }
+
+    /**
+     * Returns the expression limited to {@code limit} as an upper boundary. See {@link DMatrixUtils#ensureLimit(double[], double, boolean)}.
+     *
+     * @param limit The upper limit.
+     * @return A new expression.
+     */
+    public DVectorExpr clampHigh(double limit) {
+        return this.unary((source, offset, destination, destinationOffset, length) ->
+            VectorKernelsProvider.INSTANCE.ensureLimit(source, offset, limit, false, destination, destinationOffset, length));
+    }
+
+    /**
+     * Returns the expression of the sums of respective pairs.
+     *
+     * @param vector The other vector.
+     * @return A new expression.
+     */
+    public DVectorExpr add(double[] vector) {
+        return this.add(DVectorExpr.of(vector));
+    }
+
+    /**
+     * Returns the expression of the sums of respective pairs.
+     *
+     * @param other The other expression.
+     * @return A new expression.
+     */
+    public DVectorExpr add(DVectorExpr other) {
+        return this.binary(other, (vector1, offset1, vector2, offset2, destination, destinationOffset, length) -> {
+            for (int i = 0; i < length; i++) {
+                destination[destinationOffset + i] = vector1[offset1 + i] + vector2[offset2 + i];
+            }
+        });
+    }
+
+    /**
+     * Returns the expression with {@code value} added to each element.
+     *
+     * @param value The value to be added.
+     * @return A new expression.
+     */
+    public DVectorExpr add(double value) {
+        return this.unary((source, offset, destination, destinationOffset, length) -> {
+            for (int i = 0; i < length; i++) {
+                destination[destinationOffset + i] = source[offset + i] + value;
+            }
+        });
+    }
+
+    /**
+     * Returns the expression of the differences of respective pairs.
+     *
+     * @param vector The other vector.
+     * @return A new expression.
+     */
+    public DVectorExpr subtract(double[] vector) {
+        return this.subtract(DVectorExpr.of(vector));
+    }
+
+    /**
+     * Returns the expression of the differences of respective pairs.
+     *
+     * @param other The other expression.
+     * @return A new expression.
+     */
+    public DVectorExpr subtract(DVectorExpr other) {
+        return this.binary(other, (vector1, offset1, vector2, offset2, destination, destinationOffset, length) -> {
+            for (int i = 0; i < length; i++) {
+                destination[destinationOffset + i] = vector1[offset1 + i] - vector2[offset2 + i];
+            }
+        });
+    }
+
+    /**
+     * Returns the expression of the products of respective pairs.
+     *
+     * @param vector The other vector.
+     * @return A new expression.
+     */
+    public DVectorExpr multiply(double[] vector) {
+        return this.multiply(DVectorExpr.of(vector));
+    }
+
+    /**
+     * Returns the expression of the products of respective pairs.
+     *
+     * @param other The other expression.
+     * @return A new expression.
+     */
+    public DVectorExpr multiply(DVectorExpr other) {
+        return this.binary(other, (vector1, offset1, vector2, offset2, destination, destinationOffset, length) -> {
+            for (int i = 0; i < length; i++) {
+                destination[destinationOffset + i] = vector1[offset1 + i] * vector2[offset2 + i];
+            }
+        });
+    }
+
+    /**
+     * Returns the expression with each element multiplied by {@code value}.
+     *
+     * @param value The value to be multiplied with.
+     * @return A new expression.
+     */
+    public DVectorExpr multiply(double value) {
+        return this.unary((source, offset, destination, destinationOffset, length) -> {
+            for (int i = 0; i < length; i++) {
+                destination[destinationOffset + i] = source[offset + i] * value;
+            }
+        });
+    }
+
+    /**
+     * Returns the expression of absolute values.
+     *
+     * @return A new expression.
+     */
+    public DVectorExpr abs() {
+        return this.unary((source, offset, destination, destinationOffset, length) -> {
+            for (int i = 0; i < length; i++) {
+                destination[destinationOffset + i] = Math.abs(source[offset + i]);
+            }
+        });
+    }
+
+    /**
+     * Returns the expression with the operator applied to each element.
+     *
+     * @param operator The operator to be applied.
+     * @return A new expression.
+     */
+    public DVectorExpr map(DoubleUnaryOperator operator) {
+        return this.unary((source, offset, destination, destinationOffset, length) -> {
+            for (int i = 0; i < length; i++) {
+                destination[destinationOffset + i] = operator.applyAsDouble(source[offset + i]);
+            }
+        });
+    }
+
+    /**
+     * Evaluates the expression and returns the sum of its elements.
+     *
+     * @return The sum of the elements.
+     */
+    public double sum() {
+        return this.sum(false, false);
+    }
+
+    /**
+     * Evaluates the expression in parallel and returns the sum of its elements. The result is exactly the same as {@link #sum()}.
+     *
+     * @return The sum of the elements.
+     */
+    public double parallelSum() {
+        return this.sum(false, true);
+    }
+
+    /**
+     * Evaluates the expression and returns the sum of the absolute values of its elements.
+     *
+     * @return The sum of the absolute values of the elements.
+     */
+    public double sumOfAbsolutes() {
+        return this.sum(true, false);
+    }
+
+    /**
+     * Evaluates the expression in parallel and returns the sum of the absolute values of its elements.
+     * The result is exactly the same as {@link #sumOfAbsolutes()}.
+     *
+     * @return The sum of the absolute values of the elements.
+     */
+    public double parallelSumOfAbsolutes() {
+        return this.sum(true, true);
+    }
+
+    /**
+     * Evaluates the expression into a new array.
+     *
+     * @return A new array.
+     */
+    public double[] toArray() {
+        return this.into(new double[this.length], 0);
+    }
+
+    /**
+     * Evaluates the expression in parallel into a new array.
+     *
+     * @return A new array.
+     */
+    public double[] parallelToArray() {
+        return this.parallelInto(new double[this.length], 0);
+    }
+
+    /**
+     * Evaluates the expression into the destination array.
+     *
+     * <p>
+     *
+     * The destination may be any of the source vectors of the expression, but only at offset {@code 0}.
+     *
+     * @param destination The destination array.
+     * @param offset The index of the destination to start with.
+     * @return The destination array.
+     */
+    public double[] into(double[] destination, int offset) {
+        return this.into(destination, offset, false);
+    }
+
+    /**
+     * Evaluates the expression in parallel into the destination array.
+     *
+     * <p>
+     *
+     * The destination may be any of the source vectors of the expression, but only at offset {@code 0}.
+     *
+     * @param destination The destination array.
+     * @param offset The index of the destination to start with.
+     * @return The destination array.
+     */
+    public double[] parallelInto(double[] destination, int offset) {
+        return this.into(destination, offset, true);
+    }
+
+    /**
+     * Creates the expression of a unary operation on this expression.
+     *
+     * @param kernel The kernel of the operation.
+     * @return A new expression.
+     */
+    private DVectorExpr unary(UnaryKernel kernel) {
+        return new DVectorExpr(new Unary(this.node, kernel), this.length);
+    }
+
+    /**
+     * Creates the expression of a binary operation on this and the other expression.
+     *
+     * @param other The other expression.
+     * @param kernel The kernel of the operation.
+     * @return A new expression.
+     */
+    private DVectorExpr binary(DVectorExpr other, BinaryKernel kernel) {
+        // Check lengths:
+        if (other.length != this.length) {
+            throw new IllegalArgumentException("Expressions must be of the same length.");
+        }
+
+        // Create and return:
+        return new DVectorExpr(new Binary(this.node, other.node, kernel), this.length);
+    }
+
+    /**
+     * Evaluates the expression and returns the sum of its elements or their absolute values.
+     *
+     * @param absolutes Indicates if absolute values are to be summed.
+     * @param parallel Indicates if the evaluation runs in parallel.
+     * @return The sum.
+     */
+    private double sum(boolean absolutes, boolean parallel) {
+        // Get the number of blocks:
+        final int blocks = Parallel.chunks(this.length, BLOCK);
+
+        // Compute sums of blocks:
+        final double[] partials = new double[blocks];
+        final Parallel.RangeTask task = (from, to) -> {
+            final Scratch scratch = new Scratch();
+            final double[] buffer = new double[CHUNK];
+            for (int block = from; block < to; block++) {
+                double total = 0.0;
+                final int end = (int) Math.min(this.length, (long) (block + 1) * BLOCK);
+                for (int start = block * BLOCK; start < end; start += CHUNK) {
+                    final int size = Math.min(CHUNK, end - start);
+                    this.node.evaluate(start, buffer, 0, size, scratch);
+                    total += absolutes
+                        ? VectorKernelsProvider.INSTANCE.sumOfAbsolutes(buffer, 0, size)
+                        : VectorKernelsProvider.INSTANCE.sum(buffer, 0, size);
+                }
+                partials[block] = total;
+            }
+        };
+        if (parallel && this.length >= PARALLEL_THRESHOLD) {
+            Parallel.forRange(0, blocks, 1, task);
+        }
+        else {
+            task.run(0, blocks);
+        }
+
+        // Sum partials in order:
+        double total = 0.0;
+        for (double partial : partials) {
+            total += partial;
+        }
+
+        // Done, return:
+        return total;
+    }
+
+    /**
+     * Evaluates the expression into the destination array.
+     *
+     * @param destination The destination array.
+     * @param offset The index of the destination to start with.
+     * @param parallel Indicates if the evaluation runs in parallel.
+     * @return The destination array.
+     */
+    private double[] into(double[] destination, int offset, boolean parallel) {
+        // Check the range:
+        if (offset < 0 || offset > destination.length - this.length) {
+            throw new IllegalArgumentException("The destination is too short for the expression.");
+        }
+
+        // Evaluate chunks via a buffer, so that the destination may alias sources:
+        final Parallel.RangeTask task = (from, to) -> {
+            final Scratch scratch = new Scratch();
+            final double[] buffer = new double[CHUNK];
+            final int end = (int) Math.min(this.length, (long) to * BLOCK);
+            for (int start = from * BLOCK; start < end; start += CHUNK) {
+                final int size = Math.min(CHUNK, end - start);
+                this.node.evaluate(start, buffer, 0, size, scratch);
+                System.arraycopy(buffer, 0, destination, offset + start, size);
+            }
+        };
+        final int blocks = Parallel.chunks(this.length, BLOCK);
+        if (parallel && this.length >= PARALLEL_THRESHOLD) {
+            Parallel.forRange(0, blocks, 1, task);
+        }
+        else {
+            task.run(0, blocks);
+        }
+
+        // Done, return:
+        return destination;
+    }
+
+    /**
+     * Defines an element-wise unary kernel over ranges.
+     */
+    private interface UnaryKernel {
+        /**
+         * Applies the operation.
+         *
+         * @param source The source array.
+         * @param offset The index of the source to start with.
+         * @param destination The destination array (may be the source at the same offset).
+         * @param destinationOffset The index of the destination to start with.
+         * @param length The length of the ranges.
+         */
+        void apply(double[] source, int offset, double[] destination, int destinationOffset, int length);
+    }
+
+    /**
+     * Defines an element-wise binary kernel over ranges.
+     */
+    private interface BinaryKernel {
+        /**
+         * Applies the operation.
+         *
+         * @param vector1 The first array.
+         * @param offset1 The index of the first array to start with.
+         * @param vector2 The second array.
+         * @param offset2 The index of the second array to start with.
+         * @param destination The destination array (may be either of the arrays at the same offset).
+         * @param destinationOffset The index of the destination to start with.
+         * @param length The length of the ranges.
+         */
+        void apply(double[] vector1, int offset1, double[] vector2, int offset2, double[] destination, int destinationOffset, int length);
+    }
+
+    /**
+     * Provides chunk-sized scratch buffers for evaluating operands, reused as a stack.
+     */
+    private static final class Scratch {
+        private double[][] buffers = new double[0][];
+        private int top;
+
+        /**
+         * Acquires a buffer.
+         *
+         * @return A buffer of length {@link #CHUNK}.
+         */
+        double[] acquire() {
+            if (this.top == this.buffers.length) {
+                this.buffers = Arrays.copyOf(this.buffers, this.top + 1);
+                this.buffers[this.top] = new double[CHUNK];
+            }
+            return this.buffers[this.top++];
+        }
+
+        /**
+         * Releases the most recently acquired buffer.
+         */
+        void release() {
+            this.top--;
+        }
+    }
+
+    /**
+     * Defines a node of the expression tree.
+     */
+    private abstract static class Node {
+        /**
+         * Evaluates the given range of the node into the destination.
+         *
+         * @param offset The index of the range to start with.
+         * @param destination The destination array.
+         * @param destinationOffset The index of the destination to start with.
+         * @param length The length of the range, at most {@link #CHUNK}.
+         * @param scratch The scratch buffers.
+         */
+        abstract void evaluate(int offset, double[] destination, int destinationOffset, int length, Scratch scratch);
+
+        /**
+         * Returns the array backing the node, if any, so that it can be read without copying.
+         *
+         * @return The backing array or {@code null}.
+         */
+        double[] array() {
+            return null;
+        }
+    }
+
+    /**
+     * Provides the source vector node.
+     */
+    private static final class Source extends Node {
+        private final double[] vector;
+
+        Source(double[] vector) {
+            this.vector = vector;
+        }
+
+        @Override
+        void evaluate(int offset, double[] destination, int destinationOffset, int length, Scratch scratch) {
+            System.arraycopy(this.vector, offset, destination, destinationOffset, length);
+        }
+
+        @Override
+        double[] array() {
+            return this.vector;
+        }
+    }
+
+    /**
+     * Provides the unary operation node.
+     */
+    private static final class Unary extends Node {
+        private final Node operand;
+        private final UnaryKernel kernel;
+
+        Unary(Node operand, UnaryKernel kernel) {
+            this.operand = operand;
+            this.kernel = kernel;
+        }
+
+        @Override
+        void evaluate(int offset, double[] destination, int destinationOffset, int length, Scratch scratch) {
+            // Read sources directly, evaluate others into the destination first:
+            final double[] array = this.operand.array();
+            if (array != null) {
+                this.kernel.apply(array, offset, destination, destinationOffset, length);
+            }
+            else {
+                this.operand.evaluate(offset, destination, destinationOffset, length, scratch);
+                this.kernel.apply(destination, destinationOffset, destination, destinationOffset, length);
+            }
+        }
+    }
+
+    /**
+     * Provides the binary operation node.
+     */
+    private static final class Binary extends Node {
+        private final Node left;
+        private final Node right;
+        private final BinaryKernel kernel;
+
+        Binary(Node left, Node right, BinaryKernel kernel) {
+            this.left = left;
+            this.right = right;
+            this.kernel = kernel;
+        }
+
+        @Override
+        void evaluate(int offset, double[] destination, int destinationOffset, int length, Scratch scratch) {
+            // Get the right operand, evaluating it into a scratch buffer if required:
+            double[] rightArray = this.right.array();
+            int rightOffset = offset;
+            final boolean scratched = rightArray == null;
+            if (scratched) {
+                rightArray = scratch.acquire();
+                rightOffset = 0;
+                this.right.evaluate(offset, rightArray, 0, length, scratch);
+            }
+
+            // Get the left operand, evaluating it into the destination if required:
+            double[] leftArray = this.left.array();
+            int leftOffset = offset;
+            if (leftArray == null) {
+                this.left.evaluate(offset, destination, destinationOffset, length, scratch);
+                leftArray = destination;
+                leftOffset = destinationOffset;
+            }
+
+            // Apply the kernel:
+            this.kernel.apply(leftArray, leftOffset, rightArray, rightOffset, destination, destinationOffset, length);
+
+            // Release the scratch buffer, if any:
+            if (scratched) {
+                scratch.release();
+            }
+        }
+    }
+}
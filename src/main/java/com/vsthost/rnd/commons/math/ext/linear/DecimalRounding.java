@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import java.math.BigDecimal;
+
+/**
+ * Provides batch rounding of vectors to decimal grids, backing the array variants of
+ * {@link DMatrixUtils#roundDownTo}, {@link DMatrixUtils#roundUpTo} and {@link DMatrixUtils#roundToClosest}.
+ *
+ * <p>
+ *
+ * Results are exactly the {@code double} values of the respective {@link BigDecimal} results of
+ * the scalar methods, ie. values are taken as their {@link Double#toString(double)} decimals and
+ * rounded to multiples of the decimal {@code steps}. Instead of allocating {@link BigDecimal}s per
+ * value, steps are decomposed once into a scaled long {@code unit / 10^scale}, grid points are
+ * computed as correctly rounded {@code (k * unit) / 10^scale} doubles and values are compared to
+ * grid points and midpoints in double arithmetic, which is exact unless a grid point or midpoint
+ * rounds to the value itself. Only then, the decimal of the value is consulted.
+ *
+ * <p>
+ *
+ * Values and steps outside of the range of exact long arithmetic (including zero, negative and
+ * non-finite steps and non-finite values) fall back to the scalar methods.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class DecimalRounding {
+    /**
+     * Defines the length from which the parallel variants actually run in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /**
+     * Defines the magnitude up to which scaled grid values are handled in long arithmetic.
+     */
+    private static final double MAX_SCALED = 0x1p52;
+
+    /**
+     * Defines the exact powers of ten as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    /**
+     * Indicates if {@link Double#toString(double)} is guaranteed to return the shortest decimal (Java 19+).
+     */
+    private static final boolean SHORTEST_DECIMALS = DecimalRounding.javaVersion() >= 19;
+
+    /**
+     * Defines the rounding modes.
+     */
+    private enum Mode {
+        DOWN, UP, CLOSEST
+    }
+
+    /**
+     * Returns the DOWN rounded values of the given values for the given steps.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @return A new array of rounded values.
+     */
+    public static double[] roundDownTo(double[] values, double steps) {
+        return DecimalRounding.round(values, steps, Mode.DOWN, false);
+    }
+
+    /**
+     * Returns the UP rounded values of the given values for the given steps.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @return A new array of rounded values.
+     */
+    public static double[] roundUpTo(double[] values, double steps) {
+        return DecimalRounding.round(values, steps, Mode.UP, false);
+    }
+
+    /**
+     * Returns the closest rounded values of the given values for the given steps.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @return A new array of rounded values.
+     */
+    public static double[] roundToClosest(double[] values, double steps) {
+        return DecimalRounding.round(values, steps, Mode.CLOSEST, false);
+    }
+
+    /**
+     * Returns the DOWN rounded values of the given values for the given steps, computed in parallel.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @return A new array of rounded values.
+     */
+    public static double[] parallelRoundDownTo(double[] values, double steps) {
+        return DecimalRounding.round(values, steps, Mode.DOWN, true);
+    }
+
+    /**
+     * Returns the UP rounded values of the given values for the given steps, computed in parallel.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @return A new array of rounded values.
+     */
+    public static double[] parallelRoundUpTo(double[] values, double steps) {
+        return DecimalRounding.round(values, steps, Mode.UP, true);
+    }
+
+    /**
+     * Returns the closest rounded values of the given values for the given steps, computed in parallel.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @return A new array of rounded values.
+     */
+    public static double[] parallelRoundToClosest(double[] values, double steps) {
+        return DecimalRounding.round(values, steps, Mode.CLOSEST, true);
+    }
+
+    /**
+     * Rounds the values.
+     *
+     * @param values The original values to be rounded.
+     * @param steps The steps.
+     * @param mode The rounding mode.
+     * @param parallel Indicates if the rounding runs in parallel.
+     * @return A new array of rounded values.
+     */
+    private static double[] round(double[] values, double steps, Mode mode, boolean parallel) {
+        // Initialize the return value:
+        final double[] retval = new double[values.length];
+
+        // Decompose the steps once:
+        final Grid grid = Grid.of(steps);
+
+        // Define the task and run:
+        final Parallel.RangeTask task = (from, to) -> {
+            for (int i = from; i < to; i++) {
+                retval[i] = grid == null ? DecimalRounding.slow(values[i], steps, mode) : grid.round(values[i], mode);
+            }
+        };
+        if (parallel && values.length >= PARALLEL_THRESHOLD) {
+            Parallel.forRange(0, values.length, PARALLEL_THRESHOLD / 4, task);
+        }
+        else {
+            task.run(0, values.length);
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Rounds the value by the scalar {@link BigDecimal} methods.
+     *
+     * @param value The value to be rounded.
+     * @param steps The steps.
+     * @param mode The rounding mode.
+     * @return The rounded value.
+     */
+    private static double slow(double value, double steps, Mode mode) {
+        switch (mode) {
+            case DOWN:
+                return DMatrixUtils.roundDownTo(value, steps).doubleValue();
+            case UP:
+                return DMatrixUtils.roundUpTo(value, steps).doubleValue();
+            default:
+                return DMatrixUtils.roundToClosest(value, steps).doubleValue();
+        }
+    }
+
+    /**
+     * Returns the major Java version of the runtime.
+     *
+     * @return The major Java version, or {@code 0} if it can not be determined.
+     */
+    private static int javaVersion() {
+        final String version = System.getProperty("java.specification.version", "0");
+        try {
+            return version.startsWith("1.") ? Integer.parseInt(version.substring(2)) : Integer.parseInt(version.split("\\.")[0]);
+        }
+        catch (NumberFormatException exception) {
+            return 0;
+        }
+    }
+
+    /**
+     * Provides the decimal grid of positive steps as {@code unit / 10^scale}.
+     */
+    private static final class Grid {
+        private final double steps;
+        private final long unit;
+        private final int scale;
+
+        private Grid(double steps, long unit, int scale) {
+            this.steps = steps;
+            this.unit = unit;
+            this.scale = scale;
+        }
+
+        /**
+         * Creates the grid for the steps.
+         *
+         * @param steps The steps.
+         * @return The grid, or {@code null} if steps are not supported.
+         */
+        static Grid of(double steps) {
+            // Zero, negative and non-finite steps are not supported:
+            if (!(steps > 0) || Double.isInfinite(steps)) {
+                return null;
+            }
+
+            // Get the decimal of steps with the smallest non-negative scale:
+            BigDecimal decimal = BigDecimal.valueOf(steps).stripTrailingZeros();
+            if (decimal.scale() < 0) {
+                decimal = decimal.setScale(0);
+            }
+
+            // Check limits (the midpoint needs one more digit of scale):
+            if (decimal.scale() + 1 >= POWERS_OF_TEN.length || decimal.unscaledValue().bitLength() > 52) {
+                return null;
+            }
+
+            // Create and return:
+            return new Grid(steps, decimal.unscaledValue().longValue(), decimal.scale());
+        }
+
+        /**
+         * Rounds the value.
+         *
+         * @param value The value to be rounded.
+         * @param mode The rounding mode.
+         * @return The rounded value.
+         */
+        double round(double value, Mode mode) {
+            // Estimate the index of the grid point below the value, ensuring exact long arithmetic around it:
+            final double estimate = Math.floor(value / this.steps);
+            if (!(Math.abs(estimate) + 4 < MAX_SCALED / (10 * this.unit))) {
+                return DecimalRounding.slow(value, this.steps, mode);
+            }
+            long k = (long) estimate;
+
+            // Correct the estimate so that the k-th point is at or below and the next one is above the value:
+            int lower = this.compare(value, k);
+            for (int i = 0; lower < 0; i++) {
+                if (i == 2) {
+                    return DecimalRounding.slow(value, this.steps, mode);
+                }
+                lower = this.compare(value, --k);
+            }
+            for (int i = 0; this.compare(value, k + 1) >= 0; i++) {
+                if (i == 2) {
+                    return DecimalRounding.slow(value, this.steps, mode);
+                }
+                lower = this.compare(value, ++k);
+            }
+
+            // Values on the grid are not rounded at all:
+            if (lower == 0) {
+                return this.point(k);
+            }
+
+            // Pick the grid point as per mode:
+            switch (mode) {
+                case DOWN:
+                    return this.point(k);
+                case UP:
+                    return this.point(k + 1);
+                default:
+                    return this.point(this.compareMidpoint(value, k) < 0 ? k : k + 1);
+            }
+        }
+
+        /**
+         * Returns the k-th grid point as a correctly rounded double.
+         *
+         * @param k The index of the grid point.
+         * @return The grid point.
+         */
+        private double point(long k) {
+            return (k * this.unit) / POWERS_OF_TEN[this.scale];
+        }
+
+        /**
+         * Compares the decimal of the value with the k-th grid point.
+         *
+         * @param value The value.
+         * @param k The index of the grid point.
+         * @return The sign of the difference between the decimal of the value and the grid point.
+         */
+        private int compare(double value, long k) {
+            // Compare in doubles, which is exact unless the grid point rounds to the value:
+            final long scaled = k * this.unit;
+            final double point = scaled / POWERS_OF_TEN[this.scale];
+            if (point < value) {
+                return 1;
+            }
+            else if (point > value) {
+                return -1;
+            }
+
+            // The grid point rounds to the value. Zero is exact, and shortest decimals of at most
+            // 15 digits are unique, hence the decimal of the value is the grid point itself:
+            if (scaled == 0 || (SHORTEST_DECIMALS && Math.abs(scaled) < 1000000000000000L)) {
+                return 0;
+            }
+
+            // Otherwise, consult the decimal:
+            return BigDecimal.valueOf(value).compareTo(BigDecimal.valueOf(scaled, this.scale));
+        }
+
+        /**
+         * Compares the decimal of the value with the midpoint between the k-th and the next grid point.
+         *
+         * @param value The value.
+         * @param k The index of the grid point.
+         * @return The sign of the difference between the decimal of the value and the midpoint.
+         */
+        private int compareMidpoint(double value, long k) {
+            // Compare in doubles, which is exact unless the midpoint rounds to the value:
+            final long scaled = (2 * k + 1) * this.unit * 5;
+            final double midpoint = scaled / POWERS_OF_TEN[this.scale + 1];
+            if (midpoint < value) {
+                return 1;
+            }
+            else if (midpoint > value) {
+                return -1;
+            }
+
+            // Otherwise, consult the decimal:
+            return BigDecimal.valueOf(value).compareTo(BigDecimal.valueOf(scaled, this.scale + 1));
+        }
+    }
+}
@@ -17,47 +17,85 @@
 package com.vsthost.rnd.commons.math.ext.linear;
 
 import com.google.gson.Gson;
-import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.DefaultRealMatrixPreservingVisitor;
 import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.OpenMapRealMatrix;
 import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealMatrixPreservingVisitor;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.random.MersenneTwister;
 import org.apache.commons.math3.random.RandomGenerator;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
-import org.apache.commons.math3.util.MathArrays;
+import org.apache.commons.math3.stat.descriptive.moment.Variance;
+
+import java.util.Arrays;
 
 /**
  * Provides extended functionality for real matrices and vectors from common maths.
  */
 public class EMatrixUtils {
+    /**
+     * Defines the number of entries from which the parallel variants actually run in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Defines the random number generators local to threads for the overloads without one.
+     */
+    private static final ThreadLocal<RandomGenerator> RANDOM_GENERATOR = ThreadLocal.withInitial(MersenneTwister::new);
 
     /**
-     * Returns the column range from the matrix as a new matrix.
+     * Returns the column range from the matrix as a new matrix, or as a view if the matrix is a {@link FlatRealMatrix}.
+     *
+     * <p>
+     *
+     * The view of a {@link FlatRealMatrix} shares the data of the matrix, ie. changes to either are visible in the other.
      *
      * @param matrix The input matrix
      * @param start The index of the column to start with (inclusive)
      * @param end The index of the column to end with (inclusive)
-     * @return A new matrix with columns specified
+     * @return A new matrix with columns specified, or a view of them for {@link FlatRealMatrix}
      */
     public static RealMatrix getColumRange (RealMatrix matrix, int start, int end) {
+        if (matrix instanceof FlatRealMatrix) {
+            return ((FlatRealMatrix) matrix).subMatrixView(0, matrix.getRowDimension() - 1, start, end);
+        }
         return matrix.getSubMatrix(0, matrix.getRowDimension() - 1, start, end);
     }
 
     /**
-     * Returns the row range from the matrix as a new matrix.
+     * Returns the row range from the matrix as a new matrix, or as a view if the matrix is a {@link FlatRealMatrix}.
+     *
+     * <p>
+     *
+     * The view of a {@link FlatRealMatrix} shares the data of the matrix, ie. changes to either are visible in the other.
      *
      * @param matrix The input matrix
      * @param start The index of the row to start with (inclusive)
      * @param end The index of the row to end with (inclusive)
-     * @return A new matrix with rows specified
+     * @return A new matrix with rows specified, or a view of them for {@link FlatRealMatrix}
      */
     public static RealMatrix getRowRange (RealMatrix matrix, int start, int end) {
+        if (matrix instanceof FlatRealMatrix) {
+            return ((FlatRealMatrix) matrix).subMatrixView(start, end, 0, matrix.getColumnDimension() - 1);
+        }
         return matrix.getSubMatrix(start, end, 0, matrix.getColumnDimension() - 1);
     }
 
     /**
      * Returns the sums of columns.
      *
+     * <p>
+     *
+     * The matrix is traversed in its storage order, ie. through the backing arrays of
+     * {@link Array2DRowRealMatrix}, {@link FlatRealMatrix}, {@link MappedRealMatrix} and
+     * {@link RowIndexedRealMatrix} views of {@link Array2DRowRealMatrix}, and through
+     * {@link RealMatrix#walkInOptimizedOrder(RealMatrixPreservingVisitor)} otherwise. Each column is
+     * still summed from top to bottom. Only stored entries of sparse matrices ({@link CsrRealMatrix}
+     * and {@link OpenMapRealMatrix}, which is converted once by {@link CsrRealMatrix#of(RealMatrix)})
+     * are summed.
+     *
      * @param matrix The matrix of which the sums of columns to be computed
      * @return A double array of column sums
      */
@@ -65,38 +103,116 @@ public class EMatrixUtils {
         // Declare and initialize the return value:
         double[] retval = new double[matrix.getColumnDimension()];
 
-        // Iterate over columns and compute totals:
-        for (int col = 0; col < matrix.getColumnDimension(); col++) {
-            for (int row = 0; row < matrix.getRowDimension(); row++) {
-                retval[col] += matrix.getEntry(row, col);
-            }
-        }
+        // Add all rows, summing stored entries of sparse matrices only:
+        final CsrRealMatrix sparse = CsrRealMatrix.sparse(matrix);
+        EMatrixUtils.addColSums(sparse == null ? matrix : sparse, 0, matrix.getRowDimension(), retval);
 
         // Done, return col sums:
         return retval;
     }
 
+    /**
+     * Returns the sums of columns computed in parallel.
+     *
+     * <p>
+     *
+     * Rows are split into at most 64 chunks depending on the dimensions of the matrix only. Chunks
+     * are summed in parallel and chunk totals are added in order. Hence, the
+     * result is reproducible but may differ from {@link #colSums(RealMatrix)} in rounding. Sparse
+     * matrices ({@link CsrRealMatrix} and {@link OpenMapRealMatrix}) are summed sequentially by
+     * {@link #colSums(RealMatrix)} over their stored entries.
+     *
+     * @param matrix The matrix of which the sums of columns to be computed
+     * @return A double array of column sums
+     */
+    public static double[] parallelColSums (RealMatrix matrix) {
+        // Compute sparse matrices sequentially:
+        if (matrix instanceof CsrRealMatrix || matrix instanceof OpenMapRealMatrix) {
+            return EMatrixUtils.colSums(matrix);
+        }
+
+        // Sum chunks in parallel and add chunk totals in order:
+        final int cols = matrix.getColumnDimension();
+        return Parallel.mapMerge(matrix.getRowDimension(), cols, PARALLEL_THRESHOLD, (from, to) -> {
+            final double[] totals = new double[cols];
+            EMatrixUtils.addColSums(matrix, from, to, totals);
+            return totals;
+        }, EMatrixUtils::addInPlace);
+    }
+
     /**
      * Returns the sums of rows.
      *
+     * <p>
+     *
+     * The matrix is traversed in its storage order as in {@link #colSums(RealMatrix)}. Each row is
+     * still summed from left to right, ie. results do not depend on the storage type or the runtime.
+     * Only stored entries of sparse matrices are summed as in {@link #colSums(RealMatrix)}.
+     *
      * @param matrix The matrix of which the sums of rows to be computed
      * @return A double array of row sums.
      */
     public static double[] rowSums (RealMatrix matrix) {
         // Declare and initialize the return value:
-        double[] retval = new double[matrix.getColumnDimension()];
+        double[] retval = new double[matrix.getRowDimension()];
 
-        // Iterate over columns and compute totals:
-        for (int row = 0; row < matrix.getRowDimension(); row++) {
-            for (int col = 0; col < matrix.getColumnDimension(); col++) {
-                retval[row] += matrix.getEntry(row, col);
-            }
+        // Add all rows, summing stored entries of sparse matrices only:
+        final CsrRealMatrix sparse = CsrRealMatrix.sparse(matrix);
+        EMatrixUtils.addRowSums(sparse == null ? matrix : sparse, 0, matrix.getRowDimension(), retval);
+
+        // Done, return row sums:
+        return retval;
+    }
+
+    /**
+     * Returns the sums of rows computed in parallel.
+     *
+     * <p>
+     *
+     * Rows are summed independently, hence the result is the same as {@link #rowSums(RealMatrix)}.
+     * Sparse matrices ({@link CsrRealMatrix} and {@link OpenMapRealMatrix}) are summed sequentially
+     * over their stored entries.
+     *
+     * @param matrix The matrix of which the sums of rows to be computed
+     * @return A double array of row sums.
+     */
+    public static double[] parallelRowSums (RealMatrix matrix) {
+        // Compute sparse matrices sequentially:
+        if (matrix instanceof CsrRealMatrix || matrix instanceof OpenMapRealMatrix) {
+            return EMatrixUtils.rowSums(matrix);
         }
 
-        // Done, return col sums:
+        // Declare and initialize the return value:
+        final double[] retval = new double[matrix.getRowDimension()];
+
+        // Sum ranges of rows in parallel:
+        final int grain = Parallel.chunks(PARALLEL_THRESHOLD, matrix.getColumnDimension());
+        Parallel.forRange(0, retval.length, grain, (from, to) -> EMatrixUtils.addRowSums(matrix, from, to, retval));
+
+        // Done, return row sums:
         return retval;
     }
 
+    /**
+     * Returns the cumulative sums of columns, ie. each column is cumulated from top to bottom.
+     *
+     * @param matrix The matrix of which the cumulative sums of columns to be computed
+     * @return A new matrix of column cumulative sums
+     */
+    public static RealMatrix colCumsums (RealMatrix matrix) {
+        return Scans.scanColumns(matrix, Scans.Operation.SUM);
+    }
+
+    /**
+     * Returns the cumulative sums of rows, ie. each row is cumulated from left to right.
+     *
+     * @param matrix The matrix of which the cumulative sums of rows to be computed
+     * @return A new matrix of row cumulative sums
+     */
+    public static RealMatrix rowCumsums (RealMatrix matrix) {
+        return Scans.scanRows(matrix, Scans.Operation.SUM);
+    }
+
     /**
      * Returns the means of columns.
      *
@@ -139,118 +255,242 @@ public class EMatrixUtils {
      * Returns a new matrix by subtracting elements column by column.
      *
      * @param matrix The input matrix
-     * @param vector The vector to be subtracted from columns
+     * @param vector The vector to be subtracted from columns (of the length of the number of rows)
      * @return A new matrix of which the vector is subtracted column by column
      */
     public static RealMatrix colSubtract (RealMatrix matrix, double[] vector) {
-        // Declare and initialize the new matrix:
-        double[][] retval = new double[matrix.getRowDimension()][matrix.getColumnDimension()];
-
-        // Iterate over rows:
-        for (int col = 0; col < retval.length; col++) {
-            // Iterate over columns:
-            for (int row = 0; row < retval[0].length; row++) {
-                retval[row][col] = matrix.getEntry(row, col) - vector[row];
-            }
-        }
+        return EMatrixUtils.colSubtract(matrix, vector, MatrixUtils.createRealMatrix(matrix.getRowDimension(), matrix.getColumnDimension()));
+    }
 
-        // Done, return a new matrix:
-        return MatrixUtils.createRealMatrix(retval);
+    /**
+     * Populates the destination matrix by subtracting elements column by column.
+     *
+     * <p>
+     *
+     * The destination may be the input matrix itself in which case the operation is in-place.
+     *
+     * @param matrix The input matrix
+     * @param vector The vector to be subtracted from columns (of the length of the number of rows)
+     * @param destination The destination matrix of the same dimensions
+     * @return The destination matrix
+     */
+    public static RealMatrix colSubtract (RealMatrix matrix, double[] vector, RealMatrix destination) {
+        return EMatrixUtils.broadcast(matrix, destination, Broadcast.SUBTRACT, vector, null, false, false);
     }
 
     /**
      * Returns a new matrix by subtracting elements row by row.
      *
      * @param matrix The input matrix
-     * @param vector The vector to be subtracted from rows
+     * @param vector The vector to be subtracted from rows (of the length of the number of columns)
      * @return A new matrix of which the vector is subtracted row by row
      */
     public static RealMatrix rowSubtract (RealMatrix matrix, double[] vector) {
-        // Declare and initialize the new matrix:
-        double[][] retval = new double[matrix.getRowDimension()][matrix.getColumnDimension()];
-
-        // Iterate over rows:
-        for (int row = 0; row < retval.length; row++) {
-            // Iterate over columns:
-            for (int col = 0; col < retval[0].length; col++) {
-                retval[row][col] = matrix.getEntry(row, col) - vector[col];
-            }
-        }
+        return EMatrixUtils.rowSubtract(matrix, vector, MatrixUtils.createRealMatrix(matrix.getRowDimension(), matrix.getColumnDimension()));
+    }
 
-        // Done, return a new matrix:
-        return MatrixUtils.createRealMatrix(retval);
+    /**
+     * Populates the destination matrix by subtracting elements row by row.
+     *
+     * <p>
+     *
+     * The destination may be the input matrix itself in which case the operation is in-place.
+     *
+     * @param matrix The input matrix
+     * @param vector The vector to be subtracted from rows (of the length of the number of columns)
+     * @param destination The destination matrix of the same dimensions
+     * @return The destination matrix
+     */
+    public static RealMatrix rowSubtract (RealMatrix matrix, double[] vector, RealMatrix destination) {
+        return EMatrixUtils.broadcast(matrix, destination, Broadcast.SUBTRACT, vector, null, true, false);
     }
 
     /**
-     * Returns a new matrix by adding elements row by row.
+     * Returns a new matrix by adding elements column by column.
      *
      * @param matrix The input matrix
-     * @param vector The vector to be added to rows
-     * @return A new matrix of which the vector is added row by row
+     * @param vector The vector to be added to columns (of the length of the number of rows)
+     * @return A new matrix of which the vector is added column by column
      */
     public static RealMatrix columnAdd (RealMatrix matrix, double[] vector) {
-        // Declare and initialize the new matrix:
-        double[][] retval = new double[matrix.getRowDimension()][matrix.getColumnDimension()];
-
-        // Iterate over rows:
-        for (int col = 0; col < retval.length; col++) {
-            // Iterate over columns:
-            for (int row = 0; row < retval[0].length; row++) {
-                retval[row][col] = matrix.getEntry(row, col) + vector[row];
-            }
-        }
+        return EMatrixUtils.columnAdd(matrix, vector, MatrixUtils.createRealMatrix(matrix.getRowDimension(), matrix.getColumnDimension()));
+    }
 
-        // Done, return a new matrix:
-        return MatrixUtils.createRealMatrix(retval);
+    /**
+     * Populates the destination matrix by adding elements column by column.
+     *
+     * <p>
+     *
+     * The destination may be the input matrix itself in which case the operation is in-place.
+     *
+     * @param matrix The input matrix
+     * @param vector The vector to be added to columns (of the length of the number of rows)
+     * @param destination The destination matrix of the same dimensions
+     * @return The destination matrix
+     */
+    public static RealMatrix columnAdd (RealMatrix matrix, double[] vector, RealMatrix destination) {
+        return EMatrixUtils.broadcast(matrix, destination, Broadcast.ADD, vector, null, false, false);
     }
 
     /**
      * Returns a new matrix by adding elements row by row.
      *
      * @param matrix The input matrix
-     * @param vector The vector to be added to rows
+     * @param vector The vector to be added to rows (of the length of the number of columns)
      * @return A new matrix of which the vector is added row by row
      */
     public static RealMatrix rowAdd (RealMatrix matrix, double[] vector) {
-        // Declare and initialize the new matrix:
-        double[][] retval = new double[matrix.getRowDimension()][matrix.getColumnDimension()];
-
-        // Iterate over rows:
-        for (int row = 0; row < retval.length; row++) {
-            // Iterate over columns:
-            for (int col = 0; col < retval[0].length; col++) {
-                retval[row][col] = matrix.getEntry(row, col) + vector[col];
-            }
-        }
+        return EMatrixUtils.rowAdd(matrix, vector, MatrixUtils.createRealMatrix(matrix.getRowDimension(), matrix.getColumnDimension()));
+    }
+
+    /**
+     * Populates the destination matrix by adding elements row by row.
+     *
+     * <p>
+     *
+     * The destination may be the input matrix itself in which case the operation is in-place.
+     *
+     * @param matrix The input matrix
+     * @param vector The vector to be added to rows (of the length of the number of columns)
+     * @param destination The destination matrix of the same dimensions
+     * @return The destination matrix
+     */
+    public static RealMatrix rowAdd (RealMatrix matrix, double[] vector, RealMatrix destination) {
+        return EMatrixUtils.broadcast(matrix, destination, Broadcast.ADD, vector, null, true, false);
+    }
+
+    /**
+     * Returns a new matrix of which columns are standardized, ie. {@code (x - means[col]) / sds[col]}.
+     *
+     * @param matrix The input matrix
+     * @param means The means of columns
+     * @param sds The standard deviations of columns
+     * @return A new standardized matrix
+     */
+    public static RealMatrix standardize (RealMatrix matrix, double[] means, double[] sds) {
+        return EMatrixUtils.standardize(matrix, means, sds, MatrixUtils.createRealMatrix(matrix.getRowDimension(), matrix.getColumnDimension()));
+    }
+
+    /**
+     * Populates the destination matrix with the matrix of which columns are standardized in a
+     * single pass. See {@link #standardize(RealMatrix, double[], double[])}.
+     *
+     * <p>
+     *
+     * The destination may be the input matrix itself in which case the operation is in-place.
+     *
+     * @param matrix The input matrix
+     * @param means The means of columns
+     * @param sds The standard deviations of columns
+     * @param destination The destination matrix of the same dimensions
+     * @return The destination matrix
+     */
+    public static RealMatrix standardize (RealMatrix matrix, double[] means, double[] sds, RealMatrix destination) {
+        return EMatrixUtils.broadcast(matrix, destination, Broadcast.STANDARDIZE, means, sds, true, false);
+    }
 
-        // Done, return a new matrix:
-        return MatrixUtils.createRealMatrix(retval);
+    /**
+     * Populates the destination matrix with the matrix of which columns are standardized in parallel.
+     * See {@link #standardize(RealMatrix, double[], double[], RealMatrix)}.
+     *
+     * @param matrix The input matrix
+     * @param means The means of columns
+     * @param sds The standard deviations of columns
+     * @param destination The destination matrix of the same dimensions
+     * @return The destination matrix
+     */
+    public static RealMatrix parallelStandardize (RealMatrix matrix, double[] means, double[] sds, RealMatrix destination) {
+        return EMatrixUtils.broadcast(matrix, destination, Broadcast.STANDARDIZE, means, sds, true, true);
+    }
+
+    /**
+     * Returns a new matrix of which columns are transformed affinely, ie. {@code x * scale[col] + shift[col]}.
+     *
+     * @param matrix The input matrix
+     * @param scale The factors of columns
+     * @param shift The terms of columns
+     * @return A new transformed matrix
+     */
+    public static RealMatrix affineByColumn (RealMatrix matrix, double[] scale, double[] shift) {
+        return EMatrixUtils.affineByColumn(matrix, scale, shift, MatrixUtils.createRealMatrix(matrix.getRowDimension(), matrix.getColumnDimension()));
+    }
+
+    /**
+     * Populates the destination matrix with the matrix of which columns are transformed affinely
+     * in a single pass. See {@link #affineByColumn(RealMatrix, double[], double[])}.
+     *
+     * <p>
+     *
+     * The destination may be the input matrix itself in which case the operation is in-place.
+     *
+     * @param matrix The input matrix
+     * @param scale The factors of columns
+     * @param shift The terms of columns
+     * @param destination The destination matrix of the same dimensions
+     * @return The destination matrix
+     */
+    public static RealMatrix affineByColumn (RealMatrix matrix, double[] scale, double[] shift, RealMatrix destination) {
+        return EMatrixUtils.broadcast(matrix, destination, Broadcast.AFFINE, scale, shift, true, false);
+    }
+
+    /**
+     * Populates the destination matrix with the matrix of which columns are transformed affinely in parallel.
+     * See {@link #affineByColumn(RealMatrix, double[], double[], RealMatrix)}.
+     *
+     * @param matrix The input matrix
+     * @param scale The factors of columns
+     * @param shift The terms of columns
+     * @param destination The destination matrix of the same dimensions
+     * @return The destination matrix
+     */
+    public static RealMatrix parallelAffineByColumn (RealMatrix matrix, double[] scale, double[] shift, RealMatrix destination) {
+        return EMatrixUtils.broadcast(matrix, destination, Broadcast.AFFINE, scale, shift, true, true);
     }
 
     /**
      * Returns the standard deviations of columns.
      *
+     * <p>
+     *
+     * This is computed in a single pass over rows by {@link ColumnStats}. As with
+     * {@link org.apache.commons.math3.stat.descriptive.DescriptiveStatistics}, standard deviations are
+     * {@code NaN} if the matrix has a single row.
+     *
      * @param matrix The matrix of which the standard deviations of columns to be computed
      * @return A double array of column standard deviations.
      */
     public static double[] columnStdDevs(RealMatrix matrix) {
-        double[] retval = new double[matrix.getColumnDimension()];
-        for (int i = 0; i < retval.length; i++) {
-            retval[i] = new DescriptiveStatistics(matrix.getColumn(i)).getStandardDeviation();
-        }
-        return retval;
+        return ColumnStats.of(matrix).getStandardDeviations();
+    }
+
+    /**
+     * Returns the standard deviations of columns computed in parallel. See {@link ColumnStats#parallelOf(RealMatrix)}.
+     *
+     * @param matrix The matrix of which the standard deviations of columns to be computed
+     * @return A double array of column standard deviations.
+     */
+    public static double[] parallelColumnStdDevs(RealMatrix matrix) {
+        return ColumnStats.parallelOf(matrix).getStandardDeviations();
     }
 
     /**
      * Returns the standard deviations of rows.
      *
+     * <p>
+     *
+     * As with {@link org.apache.commons.math3.stat.descriptive.DescriptiveStatistics}, standard
+     * deviations are {@code NaN} if the matrix has a single column.
+     *
      * @param matrix The matrix of which the standard deviations of rows to be computed
      * @return A double array of row standard deviations.
      */
     public static double[] rowStdDevs(RealMatrix matrix) {
+        // Rows are evaluated as they are, without copying into descriptive statistics:
+        final Variance variance = new Variance();
         double[] retval = new double[matrix.getRowDimension()];
         for (int i = 0; i < retval.length; i++) {
-            retval[i] = new DescriptiveStatistics(matrix.getRow(i)).getStandardDeviation();
+            final double[] row = matrix.getRow(i);
+            retval[i] = row.length < 2 ? Double.NaN : Math.sqrt(variance.evaluate(row));
         }
         return retval;
     }
@@ -258,68 +498,1108 @@ public class EMatrixUtils {
     /**
      * Multiplies the matrix' rows using the vector element-by-element.
      *
+     * <p>
+     *
+     * The result of a sparse matrix ({@link CsrRealMatrix} or {@link OpenMapRealMatrix}) is a new
+     * {@link CsrRealMatrix} of the same structure, ie. only stored entries are multiplied and zeros
+     * stay zero. If the vector has non-finite elements, the matrix is multiplied densely instead, so
+     * that {@code 0 * Inf} and {@code 0 * NaN} yield {@code NaN} as for any other matrix.
+     *
      * @param matrix The input matrix.
      * @param vector The vector which will be used to multiply rows of the matrix element-by-element.
      * @return The new matrix of which rows are multiplied with the vector element-by-element.
      */
     public static RealMatrix rbrMultiply(RealMatrix matrix, RealVector vector) {
-        // Define the return value:
-        RealMatrix retval = MatrixUtils.createRealMatrix(matrix.getRowDimension(), matrix.getColumnDimension());
+        // Multiply stored entries of sparse matrices only if zeros stay zero:
+        final CsrRealMatrix sparse = vector.isNaN() || vector.isInfinite() ? null : CsrRealMatrix.sparse(matrix);
+        if (sparse != null) {
+            final CsrRealMatrix retval = sparse == matrix ? sparse.copy() : sparse;
+            return EMatrixUtils.rbrMultiply(retval, vector.toArray(), retval);
+        }
+
+        // Multiply dense matrices:
+        return EMatrixUtils.rbrMultiply(matrix, vector.toArray(), MatrixUtils.createRealMatrix(matrix.getRowDimension(), matrix.getColumnDimension()));
+    }
+
+    /**
+     * Multiplies the matrix' rows using the vector element-by-element into the destination matrix.
+     *
+     * <p>
+     *
+     * The destination may be the input matrix itself in which case the operation is in-place. Only
+     * stored entries of sparse matrices ({@link CsrRealMatrix} and {@link OpenMapRealMatrix}) are
+     * visited when multiplied in-place, unless the vector has non-finite elements, in which case the
+     * resulting {@code NaN}s are stored, too.
+     *
+     * @param matrix The input matrix.
+     * @param vector The vector which will be used to multiply rows of the matrix element-by-element.
+     * @param destination The destination matrix of the same dimensions.
+     * @return The destination matrix.
+     */
+    public static RealMatrix rbrMultiply(RealMatrix matrix, double[] vector, RealMatrix destination) {
+        // Multiply stored entries of sparse matrices in-place if zeros stay zero:
+        final CsrRealMatrix sparse = destination == matrix && EMatrixUtils.isFinite(vector) ? CsrRealMatrix.sparse(matrix) : null;
+        if (sparse != null) {
+            // Check dimensions:
+            if (vector.length != matrix.getColumnDimension()) {
+                throw new DimensionMismatchException(vector.length, matrix.getColumnDimension());
+            }
+
+            // Multiply the values of CSR matrices directly:
+            if (sparse == matrix) {
+                sparse.multiplyRows(vector, sparse.getValuesRef());
+                return destination;
+            }
 
-        // Iterate over rows:
-        for (int i = 0; i < retval.getRowDimension(); i++) {
-            retval.setRowVector(i, matrix.getRowVector(i).ebeMultiply(vector));
+            // Write stored entries back otherwise:
+            final int[] pointers = sparse.getRowPointersRef();
+            final int[] columns = sparse.getColumnIndicesRef();
+            final double[] values = sparse.getValuesRef();
+            for (int row = 0; row < matrix.getRowDimension(); row++) {
+                for (int i = pointers[row]; i < pointers[row + 1]; i++) {
+                    destination.setEntry(row, columns[i], values[i] * vector[columns[i]]);
+                }
+            }
+            return destination;
+        }
+
+        // Multiply dense matrices:
+        return EMatrixUtils.broadcast(matrix, destination, Broadcast.MULTIPLY, vector, null, true, false);
+    }
+
+    /**
+     * Multiplies the matrices using a cache-blocked, packed kernel.
+     *
+     * <p>
+     *
+     * Operands are read through the backing arrays of {@link Array2DRowRealMatrix} and
+     * {@link FlatRealMatrix} (including transposed views), and copied once by
+     * {@link RealMatrix#getData()} otherwise. The result may differ from
+     * {@link RealMatrix#multiply(RealMatrix)} in rounding.
+     *
+     * @param m1 The left matrix.
+     * @param m2 The right matrix.
+     * @return The new product matrix.
+     */
+    public static RealMatrix multiply (RealMatrix m1, RealMatrix m2) {
+        return Gemm.multiply(m1, false, m2, false, false);
+    }
+
+    /**
+     * Multiplies the matrices in parallel. See {@link #multiply(RealMatrix, RealMatrix)}.
+     *
+     * <p>
+     *
+     * The result is the same as the sequential product regardless of the number of threads.
+     *
+     * @param m1 The left matrix.
+     * @param m2 The right matrix.
+     * @return The new product matrix.
+     */
+    public static RealMatrix parallelMultiply (RealMatrix m1, RealMatrix m2) {
+        return Gemm.multiply(m1, false, m2, false, true);
+    }
+
+    /**
+     * Multiplies the transpose of the left matrix with the right matrix without transposing.
+     *
+     * @param m1 The left matrix to be transposed.
+     * @param m2 The right matrix.
+     * @return The new product matrix.
+     */
+    public static RealMatrix transposeMultiply (RealMatrix m1, RealMatrix m2) {
+        return Gemm.multiply(m1, true, m2, false, false);
+    }
+
+    /**
+     * Multiplies the transpose of the left matrix with the right matrix in parallel.
+     *
+     * @param m1 The left matrix to be transposed.
+     * @param m2 The right matrix.
+     * @return The new product matrix.
+     */
+    public static RealMatrix parallelTransposeMultiply (RealMatrix m1, RealMatrix m2) {
+        return Gemm.multiply(m1, true, m2, false, true);
+    }
+
+    /**
+     * Multiplies the left matrix with the transpose of the right matrix without transposing.
+     *
+     * @param m1 The left matrix.
+     * @param m2 The right matrix to be transposed.
+     * @return The new product matrix.
+     */
+    public static RealMatrix multiplyTransposed (RealMatrix m1, RealMatrix m2) {
+        return Gemm.multiply(m1, false, m2, true, false);
+    }
+
+    /**
+     * Multiplies the left matrix with the transpose of the right matrix in parallel.
+     *
+     * @param m1 The left matrix.
+     * @param m2 The right matrix to be transposed.
+     * @return The new product matrix.
+     */
+    public static RealMatrix parallelMultiplyTransposed (RealMatrix m1, RealMatrix m2) {
+        return Gemm.multiply(m1, false, m2, true, true);
+    }
+
+    /**
+     * Multiplies the matrix with the column vector.
+     *
+     * @param matrix The matrix.
+     * @param vector The vector of the length of the number of columns.
+     * @return The new product vector of the length of the number of rows.
+     */
+    public static double[] operate (RealMatrix matrix, double[] vector) {
+        return EMatrixUtils.operate(matrix, vector, false);
+    }
+
+    /**
+     * Multiplies the matrix with the column vector in parallel over rows.
+     *
+     * @param matrix The matrix.
+     * @param vector The vector of the length of the number of columns.
+     * @return The new product vector of the length of the number of rows.
+     */
+    public static double[] parallelOperate (RealMatrix matrix, double[] vector) {
+        return EMatrixUtils.operate(matrix, vector, true);
+    }
+
+    /**
+     * Multiplies the row vector with the matrix.
+     *
+     * @param vector The vector of the length of the number of rows.
+     * @param matrix The matrix.
+     * @return The new product vector of the length of the number of columns.
+     */
+    public static double[] preMultiply (double[] vector, RealMatrix matrix) {
+        return EMatrixUtils.preMultiply(vector, matrix, false);
+    }
+
+    /**
+     * Multiplies the row vector with the matrix in parallel over columns.
+     *
+     * @param vector The vector of the length of the number of rows.
+     * @param matrix The matrix.
+     * @return The new product vector of the length of the number of columns.
+     */
+    public static double[] parallelPreMultiply (double[] vector, RealMatrix matrix) {
+        return EMatrixUtils.preMultiply(vector, matrix, true);
+    }
+
+    /**
+     * Returns the bias-corrected covariance matrix of columns.
+     *
+     * <p>
+     *
+     * Columns are centered by their means implicitly, ie. the centered matrix is not materialized,
+     * and only the upper triangle of the symmetric cross-product is computed by the blocked
+     * kernel of {@link #multiply(RealMatrix, RealMatrix)}. Centering before multiplying (rather
+     * than subtracting the product of means afterwards) keeps the result numerically stable.
+     *
+     * @param matrix The matrix of at least two rows.
+     * @return The new covariance matrix.
+     */
+    public static RealMatrix covariance (RealMatrix matrix) {
+        return EMatrixUtils.covariance(matrix, false);
+    }
+
+    /**
+     * Returns the bias-corrected covariance matrix of columns computed in parallel.
+     * See {@link #covariance(RealMatrix)}.
+     *
+     * @param matrix The matrix of at least two rows.
+     * @return The new covariance matrix.
+     */
+    public static RealMatrix parallelCovariance (RealMatrix matrix) {
+        return EMatrixUtils.covariance(matrix, true);
+    }
+
+    /**
+     * Returns the bias-corrected covariance matrix of columns computed chunk by chunk of rows.
+     *
+     * <p>
+     *
+     * Each chunk is centered by its own means and the co-moments of chunks are merged pairwise
+     * (Chan et al.), so that only a single chunk of rows is held (or paged in, for
+     * {@link MappedRealMatrix}) at a time and the data is swept once. This is also more robust
+     * against drifting means over long histories.
+     *
+     * @param matrix The matrix of at least two rows.
+     * @param chunkRows The number of rows per chunk.
+     * @return The new covariance matrix.
+     */
+    public static RealMatrix streamingCovariance (RealMatrix matrix, int chunkRows) {
+        // Check arguments:
+        final int rows = matrix.getRowDimension();
+        final int cols = matrix.getColumnDimension();
+        if (rows < 2) {
+            throw new IllegalArgumentException("Covariance requires at least two rows.");
+        }
+        else if (chunkRows <= 0) {
+            throw new IllegalArgumentException("Number of rows per chunk must be positive.");
+        }
+
+        // Iterate over chunks and merge co-moments:
+        double[][] comoments = null;
+        double[] means = null;
+        long count = 0;
+        for (int from = 0; from < rows; from += chunkRows) {
+            // Get the chunk, its means and co-moments:
+            final int size = Math.min(chunkRows, rows - from);
+            final RealMatrix chunk = EMatrixUtils.rowChunk(matrix, from, from + size);
+            final double[] chunkMeans = EMatrixUtils.centeringMeans(chunk, false);
+            final double[][] chunkComoments = Gemm.gram(chunk, chunkMeans, false);
+
+            // Keep the first chunk as is:
+            if (comoments == null) {
+                comoments = chunkComoments;
+                means = chunkMeans;
+                count = size;
+                continue;
+            }
+
+            // Merge by Chan's formula:
+            final double total = count + size;
+            final double factor = count * (double) size / total;
+            final double[] delta = new double[cols];
+            for (int col = 0; col < cols; col++) {
+                delta[col] = chunkMeans[col] - means[col];
+                means[col] += delta[col] * (size / total);
+            }
+            for (int i = 0; i < cols; i++) {
+                for (int j = i; j < cols; j++) {
+                    comoments[i][j] += chunkComoments[i][j] + delta[i] * delta[j] * factor;
+                    comoments[j][i] = comoments[i][j];
+                }
+            }
+            count += size;
+        }
+
+        // Scale and return:
+        return EMatrixUtils.scaleComoments(comoments, rows);
+    }
+
+    /**
+     * Returns the correlation matrix of columns. See {@link #covariance(RealMatrix)}.
+     *
+     * @param matrix The matrix of at least two rows.
+     * @return The new correlation matrix.
+     */
+    public static RealMatrix correlation (RealMatrix matrix) {
+        return EMatrixUtils.covarianceToCorrelation(EMatrixUtils.covariance(matrix, false));
+    }
+
+    /**
+     * Returns the correlation matrix of columns computed in parallel. See {@link #covariance(RealMatrix)}.
+     *
+     * @param matrix The matrix of at least two rows.
+     * @return The new correlation matrix.
+     */
+    public static RealMatrix parallelCorrelation (RealMatrix matrix) {
+        return EMatrixUtils.covarianceToCorrelation(EMatrixUtils.covariance(matrix, true));
+    }
+
+    /**
+     * Converts the covariance matrix into a new correlation matrix.
+     *
+     * <p>
+     *
+     * Diagonal entries are exactly {@code 1}, and entries of columns without variance (eg. constant
+     * columns, of which {@link #covariance(RealMatrix)} is exactly zero) are {@code NaN}.
+     *
+     * @param covariance The covariance matrix.
+     * @return The new correlation matrix.
+     */
+    public static RealMatrix covarianceToCorrelation (RealMatrix covariance) {
+        // Get the standard deviations:
+        final int size = covariance.getRowDimension();
+        final double[] sds = new double[size];
+        for (int i = 0; i < size; i++) {
+            sds[i] = Math.sqrt(covariance.getEntry(i, i));
+        }
+
+        // Scale the covariances:
+        final double[][] retval = covariance.getData();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                retval[i][j] = i == j && sds[i] > 0 ? 1.0 : retval[i][j] / (sds[i] * sds[j]);
+            }
         }
 
         // Done, return:
-        return retval;
+        return new Array2DRowRealMatrix(retval, false);
     }
 
     /**
      * Appends to matrices by rows.
      *
+     * <p>
+     *
+     * Each row is copied once. Use {@link RowBuffer} to append many matrices or rows repeatedly. If
+     * both matrices are sparse ({@link CsrRealMatrix} or {@link OpenMapRealMatrix}), only stored
+     * entries are copied into a new {@link CsrRealMatrix}.
+     *
      * @param m1 The first matrix
      * @param m2 The second matrix.
      * @return Returns the new row-bound matrix.
      */
     public static RealMatrix rbind (RealMatrix m1, RealMatrix m2) {
-        return MatrixUtils.createRealMatrix(ArrayUtils.addAll(m1.getData(), m2.getData()));
+        // Check dimensions:
+        if (m1.getColumnDimension() != m2.getColumnDimension()) {
+            throw new DimensionMismatchException(m2.getColumnDimension(), m1.getColumnDimension());
+        }
+
+        // Concatenate stored entries of sparse matrices:
+        final CsrRealMatrix sparse1 = CsrRealMatrix.sparse(m1);
+        final CsrRealMatrix sparse2 = sparse1 == null ? null : CsrRealMatrix.sparse(m2);
+        if (sparse2 != null) {
+            return CsrRealMatrix.rbind(sparse1, sparse2);
+        }
+
+        // Copy rows once:
+        final double[][] retval = new double[m1.getRowDimension() + m2.getRowDimension()][];
+        for (int row = 0; row < m1.getRowDimension(); row++) {
+            retval[row] = m1.getRow(row);
+        }
+        for (int row = 0; row < m2.getRowDimension(); row++) {
+            retval[m1.getRowDimension() + row] = m2.getRow(row);
+        }
+
+        // Done, return without copying again:
+        return new Array2DRowRealMatrix(retval, false);
     }
 
     /**
      * Shuffles rows of a matrix.
      *
+     * <p>
+     *
+     * This uses a random number generator local to the current thread.
+     *
      * @param matrix The matrix of which the rows will be shuffled.
      * @return The new shuffled matrix.
      */
     public static RealMatrix shuffleRows (RealMatrix matrix) {
-        return EMatrixUtils.shuffleRows(matrix, new MersenneTwister());
+        return EMatrixUtils.shuffleRows(matrix, RANDOM_GENERATOR.get());
     }
 
     /**
      * Shuffles rows of a matrix using the provided random number generator.
      *
+     * <p>
+     *
+     * The result of a sparse matrix ({@link CsrRealMatrix} or {@link OpenMapRealMatrix}) is a new
+     * {@link CsrRealMatrix} to which only stored entries are copied.
+     *
      * @param matrix The matrix of which the rows will be shuffled.
      * @param randomGenerator The random number generator to be used.
      * @return The new shuffled matrix.
      */
     public static RealMatrix shuffleRows (RealMatrix matrix, RandomGenerator randomGenerator) {
         // Create an index vector to be shuffled:
-        int[] index = MathArrays.sequence(matrix.getRowDimension(), 0, 1);
-        MathArrays.shuffle(index, randomGenerator);
+        int[] index = DMatrixUtils.shuffleIndices(matrix.getRowDimension(), randomGenerator);
+
+        // Copy stored entries of sparse matrices only:
+        final CsrRealMatrix sparse = CsrRealMatrix.sparse(matrix);
+        if (sparse != null) {
+            return sparse.selectRows(index);
+        }
 
         // Create a new matrix:
         RealMatrix retval = MatrixUtils.createRealMatrix(matrix.getRowDimension(), matrix.getColumnDimension());
 
         // Populate:
         for (int row = 0; row < index.length; row++) {
-            retval.setRowVector(row, matrix.getRowVector(index[row]));
+            retval.setRow(row, matrix.getRow(index[row]));
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Shuffles rows of a matrix into a new matrix, copying rows in parallel.
+     *
+     * <p>
+     *
+     * The result is the same as {@link #shuffleRows(RealMatrix, RandomGenerator)} for the same
+     * state of the random number generator. Rows of the underlying matrix are read concurrently.
+     * Sparse matrices are shuffled sequentially over their stored entries.
+     *
+     * @param matrix The matrix of which the rows will be shuffled.
+     * @param randomGenerator The random number generator to be used.
+     * @return The new shuffled matrix.
+     */
+    public static RealMatrix parallelShuffleRows (RealMatrix matrix, RandomGenerator randomGenerator) {
+        // Create an index vector to be shuffled:
+        final int[] index = DMatrixUtils.shuffleIndices(matrix.getRowDimension(), randomGenerator);
+
+        // Copy stored entries of sparse matrices sequentially:
+        final CsrRealMatrix sparse = CsrRealMatrix.sparse(matrix);
+        if (sparse != null) {
+            return sparse.selectRows(index);
+        }
+
+        // Copy rows in parallel:
+        final double[][] retval = new double[index.length][];
+        Parallel.forRange(0, index.length, Math.max(1, PARALLEL_THRESHOLD / Math.max(1, matrix.getColumnDimension())), (from, to) -> {
+            for (int row = from; row < to; row++) {
+                retval[row] = matrix.getRow(index[row]);
+            }
+        });
+
+        // Done, return:
+        return new Array2DRowRealMatrix(retval, false);
+    }
+
+    /**
+     * Shuffles rows of a matrix in-place.
+     *
+     * <p>
+     *
+     * This uses a random number generator local to the current thread.
+     *
+     * @param matrix The matrix of which the rows will be shuffled.
+     * @return The matrix itself.
+     */
+    public static RealMatrix shuffleRowsInPlace (RealMatrix matrix) {
+        return EMatrixUtils.shuffleRowsInPlace(matrix, RANDOM_GENERATOR.get());
+    }
+
+    /**
+     * Shuffles rows of a matrix in-place using the provided random number generator.
+     *
+     * <p>
+     *
+     * The result is the same as {@link #shuffleRows(RealMatrix, RandomGenerator)} for the same
+     * state of the random number generator. See {@link #permuteRows(RealMatrix, int[])}.
+     *
+     * @param matrix The matrix of which the rows will be shuffled.
+     * @param randomGenerator The random number generator to be used.
+     * @return The matrix itself.
+     */
+    public static RealMatrix shuffleRowsInPlace (RealMatrix matrix, RandomGenerator randomGenerator) {
+        return EMatrixUtils.permuteRows(matrix, DMatrixUtils.shuffleIndices(matrix.getRowDimension(), randomGenerator));
+    }
+
+    /**
+     * Returns a lazy view of the matrix with shuffled rows. No data is copied.
+     *
+     * @param matrix The matrix of which the rows will be shuffled.
+     * @param randomGenerator The random number generator to be used.
+     * @return A view of the matrix with shuffled rows.
+     */
+    public static RowIndexedRealMatrix shuffledRowsView (RealMatrix matrix, RandomGenerator randomGenerator) {
+        return new RowIndexedRealMatrix(matrix, DMatrixUtils.shuffleIndices(matrix.getRowDimension(), randomGenerator));
+    }
+
+    /**
+     * Permutes rows of a matrix in-place, ie. row {@code i} becomes the former row {@code index[i]}.
+     *
+     * <p>
+     *
+     * Rows of {@link Array2DRowRealMatrix} are permuted by swapping row references. Rows of other
+     * matrices are moved along the cycles of the permutation, so that each row is read and written
+     * exactly once using a single temporary row.
+     *
+     * @param matrix The matrix of which the rows will be permuted.
+     * @param index The permutation of row indices.
+     * @return The matrix itself.
+     */
+    public static RealMatrix permuteRows (RealMatrix matrix, int[] index) {
+        // Check the permutation:
+        final int rows = matrix.getRowDimension();
+        if (index.length != rows) {
+            throw new IllegalArgumentException("Permutation must be of the length of the number of rows.");
+        }
+        final boolean[] visited = new boolean[rows];
+        for (int row : index) {
+            if (row < 0 || row >= rows || visited[row]) {
+                throw new IllegalArgumentException("Index is not a permutation of row indices.");
+            }
+            visited[row] = true;
+        }
+
+        // Swap row references if possible:
+        if (matrix instanceof Array2DRowRealMatrix) {
+            final double[][] data = ((Array2DRowRealMatrix) matrix).getDataRef();
+            final double[][] original = data.clone();
+            for (int row = 0; row < rows; row++) {
+                data[row] = original[index[row]];
+            }
+            return matrix;
+        }
+
+        // Move rows along cycles otherwise:
+        Arrays.fill(visited, false);
+        for (int start = 0; start < rows; start++) {
+            // Skip visited rows and fixed points:
+            if (visited[start] || index[start] == start) {
+                continue;
+            }
+
+            // Follow the cycle starting with the row:
+            final double[] first = matrix.getRow(start);
+            int current = start;
+            while (index[current] != start) {
+                visited[current] = true;
+                matrix.setRow(current, matrix.getRow(index[current]));
+                current = index[current];
+            }
+            visited[current] = true;
+            matrix.setRow(current, first);
+        }
+
+        // Done, return:
+        return matrix;
+    }
+
+    /**
+     * Adds the entries of the given rows to the column totals in the storage order of the matrix.
+     *
+     * @param matrix The matrix.
+     * @param from The index of the row to start with (inclusive).
+     * @param to The index of the row to end with (exclusive).
+     * @param totals The column totals to be added to.
+     */
+    private static void addColSums (RealMatrix matrix, int from, int to, final double[] totals) {
+        // Nothing to do for empty ranges:
+        if (from >= to) {
+            return;
+        }
+
+        // Add rows of arrays:
+        if (matrix instanceof Array2DRowRealMatrix) {
+            final double[][] data = ((Array2DRowRealMatrix) matrix).getDataRef();
+            for (int row = from; row < to; row++) {
+                final double[] values = data[row];
+                for (int col = 0; col < totals.length; col++) {
+                    totals[col] += values[col];
+                }
+            }
+        }
+        // Add strided entries of flat matrices, columns first if they are contiguous:
+        else if (matrix instanceof FlatRealMatrix) {
+            final FlatRealMatrix flat = (FlatRealMatrix) matrix;
+            final double[] data = flat.getDataRef();
+            final int rowStride = flat.getRowStride();
+            final int colStride = flat.getColumnStride();
+            if (Math.abs(rowStride) < Math.abs(colStride)) {
+                for (int col = 0; col < totals.length; col++) {
+                    double total = totals[col];
+                    for (int row = from, index = flat.index(from, col); row < to; row++, index += rowStride) {
+                        total += data[index];
+                    }
+                    totals[col] = total;
+                }
+            }
+            else {
+                for (int row = from; row < to; row++) {
+                    for (int col = 0, index = flat.index(row, 0); col < totals.length; col++, index += colStride) {
+                        totals[col] += data[index];
+                    }
+                }
+            }
+        }
+        // Stream through off-heap matrices:
+        else if (matrix instanceof MappedRealMatrix) {
+            ((MappedRealMatrix) matrix).addColumnSums(from, to, totals);
+        }
+        // Add stored entries of sparse matrices:
+        else if (matrix instanceof CsrRealMatrix) {
+            ((CsrRealMatrix) matrix).addColumnSums(from, to, totals);
+        }
+        // Add indexed rows of arrays (eg. resamples) without copying rows:
+        else if (matrix instanceof RowIndexedRealMatrix && ((RowIndexedRealMatrix) matrix).getMatrix() instanceof Array2DRowRealMatrix) {
+            final double[][] data = ((Array2DRowRealMatrix) ((RowIndexedRealMatrix) matrix).getMatrix()).getDataRef();
+            final int[] index = ((RowIndexedRealMatrix) matrix).getIndexRef();
+            for (int row = from; row < to; row++) {
+                final double[] values = data[index[row]];
+                for (int col = 0; col < totals.length; col++) {
+                    totals[col] += values[col];
+                }
+            }
+        }
+        // Walk in the optimized order otherwise:
+        else {
+            matrix.walkInOptimizedOrder(new DefaultRealMatrixPreservingVisitor() {
+                @Override
+                public void visit(int row, int column, double value) {
+                    totals[column] += value;
+                }
+            }, from, to - 1, 0, totals.length - 1);
+        }
+    }
+
+    /**
+     * Adds the sums of the given rows to the row totals in the storage order of the matrix.
+     *
+     * @param matrix The matrix.
+     * @param from The index of the row to start with (inclusive).
+     * @param to The index of the row to end with (exclusive).
+     * @param totals The row totals to be added to, indexed by rows.
+     */
+    private static void addRowSums (RealMatrix matrix, int from, int to, final double[] totals) {
+        // Nothing to do for empty ranges:
+        if (from >= to) {
+            return;
+        }
+
+        // Sum rows of arrays (left to right, as all other paths, rather than by the vector kernels):
+        if (matrix instanceof Array2DRowRealMatrix) {
+            final double[][] data = ((Array2DRowRealMatrix) matrix).getDataRef();
+            for (int row = from; row < to; row++) {
+                totals[row] += EMatrixUtils.sequentialSum(data[row]);
+            }
+        }
+        // Sum strided rows of flat matrices:
+        else if (matrix instanceof FlatRealMatrix) {
+            final FlatRealMatrix flat = (FlatRealMatrix) matrix;
+            final double[] data = flat.getDataRef();
+            final int colStride = flat.getColumnStride();
+            for (int row = from; row < to; row++) {
+                double total = 0.0;
+                for (int col = 0, index = flat.index(row, 0); col < flat.getColumnDimension(); col++, index += colStride) {
+                    total += data[index];
+                }
+                totals[row] += total;
+            }
+        }
+        // Sum rows copied in bulk from off-heap matrices:
+        else if (matrix instanceof MappedRealMatrix) {
+            for (int row = from; row < to; row++) {
+                totals[row] += EMatrixUtils.sequentialSum(matrix.getRow(row));
+            }
+        }
+        // Sum stored entries of sparse matrices:
+        else if (matrix instanceof CsrRealMatrix) {
+            ((CsrRealMatrix) matrix).addRowSums(from, to, totals);
+        }
+        // Sum indexed rows of arrays (eg. resamples) without copying rows:
+        else if (matrix instanceof RowIndexedRealMatrix && ((RowIndexedRealMatrix) matrix).getMatrix() instanceof Array2DRowRealMatrix) {
+            final double[][] data = ((Array2DRowRealMatrix) ((RowIndexedRealMatrix) matrix).getMatrix()).getDataRef();
+            final int[] index = ((RowIndexedRealMatrix) matrix).getIndexRef();
+            for (int row = from; row < to; row++) {
+                totals[row] += EMatrixUtils.sequentialSum(data[index[row]]);
+            }
+        }
+        // Walk in the optimized order otherwise:
+        else {
+            matrix.walkInOptimizedOrder(new DefaultRealMatrixPreservingVisitor() {
+                @Override
+                public void visit(int row, int column, double value) {
+                    totals[row] += value;
+                }
+            }, from, to - 1, 0, matrix.getColumnDimension() - 1);
+        }
+    }
+
+    /**
+     * Adds the second vector to the first vector element-by-element.
+     *
+     * @param totals The vector to be added to.
+     * @param values The vector to be added.
+     * @return The first vector.
+     */
+    private static double[] addInPlace (double[] totals, double[] values) {
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] += values[i];
+        }
+        return totals;
+    }
+
+    /**
+     * Indicates if all values are finite.
+     *
+     * @param values The values.
+     * @return {@code true} if no value is {@code NaN} or infinite.
+     */
+    private static boolean isFinite (double[] values) {
+        for (double value : values) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the sum of the values added from left to right.
+     *
+     * @param values The values.
+     * @return The sum of the values.
+     */
+    private static double sequentialSum (double[] values) {
+        double retval = 0.0;
+        for (double value : values) {
+            retval += value;
+        }
+        return retval;
+    }
+
+    /**
+     * Defines the element-wise operations of broadcasts, where {@code a} and {@code b} are the
+     * elements of the first and second vectors.
+     */
+    private enum Broadcast {
+        /**
+         * {@code x + a}
+         */
+        ADD,
+
+        /**
+         * {@code x - a}
+         */
+        SUBTRACT,
+
+        /**
+         * {@code x * a}
+         */
+        MULTIPLY,
+
+        /**
+         * {@code (x - a) / b}
+         */
+        STANDARDIZE,
+
+        /**
+         * {@code x * a + b}
+         */
+        AFFINE
+    }
+
+    /**
+     * Applies the broadcast operation to the matrix row by row into the destination matrix.
+     *
+     * @param matrix The input matrix.
+     * @param destination The destination matrix, possibly the input matrix itself.
+     * @param vector1 The first vector.
+     * @param vector2 The second vector (if required by the operation).
+     * @param operation The operation.
+     * @param vectorIndexedByColumn Indicates if vectors are indexed by columns (ie. applied to each row) or by rows (ie. applied to each column).
+     * @param parallel Indicates if rows are processed in parallel.
+     * @return The destination matrix.
+     */
+    private static RealMatrix broadcast (RealMatrix matrix, RealMatrix destination, Broadcast operation,
+                                         double[] vector1, double[] vector2, boolean vectorIndexedByColumn, boolean parallel) {
+        // Check dimensions:
+        MatrixUtils.checkAdditionCompatible(matrix, destination);
+        final int rows = matrix.getRowDimension();
+        final int cols = matrix.getColumnDimension();
+        final int length = vectorIndexedByColumn ? cols : rows;
+        if (vector1.length != length) {
+            throw new DimensionMismatchException(vector1.length, length);
+        }
+        else if (vector2 != null && vector2.length != length) {
+            throw new DimensionMismatchException(vector2.length, length);
+        }
+
+        // Get backing arrays if any:
+        final double[][] source = matrix instanceof Array2DRowRealMatrix ? ((Array2DRowRealMatrix) matrix).getDataRef() : null;
+        final double[][] target = destination instanceof Array2DRowRealMatrix ? ((Array2DRowRealMatrix) destination).getDataRef() : null;
+
+        // Define the task over ranges of rows:
+        final Parallel.RangeTask task = (from, to) -> {
+            final double[] buffer = target == null ? new double[cols] : null;
+            for (int row = from; row < to; row++) {
+                // Get the input and output rows:
+                final double[] input = source == null ? matrix.getRow(row) : source[row];
+                final double[] output = target == null ? buffer : target[row];
+
+                // Apply the operation:
+                if (vectorIndexedByColumn) {
+                    EMatrixUtils.broadcastRow(input, output, operation, vector1, vector2);
+                }
+                else {
+                    EMatrixUtils.broadcastRow(input, output, operation, vector1[row], vector2 == null ? 0.0 : vector2[row]);
+                }
+
+                // Write back if there is no backing array:
+                if (target == null) {
+                    destination.setRow(row, output);
+                }
+            }
+        };
+
+        // Run the task:
+        if (parallel && (long) rows * cols >= PARALLEL_THRESHOLD) {
+            Parallel.forRange(0, rows, Parallel.chunks(PARALLEL_THRESHOLD, cols), task);
+        }
+        else {
+            task.run(0, rows);
+        }
+
+        // Done, return:
+        return destination;
+    }
+
+    /**
+     * Applies the broadcast operation to the row with elements of vectors by columns.
+     *
+     * @param input The input row.
+     * @param output The output row, possibly the input row itself.
+     * @param operation The operation.
+     * @param vector1 The first vector.
+     * @param vector2 The second vector (if required by the operation).
+     */
+    private static void broadcastRow (double[] input, double[] output, Broadcast operation, double[] vector1, double[] vector2) {
+        switch (operation) {
+            case ADD:
+                for (int col = 0; col < input.length; col++) {
+                    output[col] = input[col] + vector1[col];
+                }
+                break;
+            case SUBTRACT:
+                for (int col = 0; col < input.length; col++) {
+                    output[col] = input[col] - vector1[col];
+                }
+                break;
+            case MULTIPLY:
+                for (int col = 0; col < input.length; col++) {
+                    output[col] = input[col] * vector1[col];
+                }
+                break;
+            case STANDARDIZE:
+                for (int col = 0; col < input.length; col++) {
+                    output[col] = (input[col] - vector1[col]) / vector2[col];
+                }
+                break;
+            case AFFINE:
+                for (int col = 0; col < input.length; col++) {
+                    output[col] = input[col] * vector1[col] + vector2[col];
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported broadcast operation: " + operation);
+        }
+    }
+
+    /**
+     * Applies the broadcast operation to the row with the same elements for all columns.
+     *
+     * @param input The input row.
+     * @param output The output row, possibly the input row itself.
+     * @param operation The operation.
+     * @param value1 The element of the first vector.
+     * @param value2 The element of the second vector (if required by the operation).
+     */
+    private static void broadcastRow (double[] input, double[] output, Broadcast operation, double value1, double value2) {
+        switch (operation) {
+            case ADD:
+                for (int col = 0; col < input.length; col++) {
+                    output[col] = input[col] + value1;
+                }
+                break;
+            case SUBTRACT:
+                for (int col = 0; col < input.length; col++) {
+                    output[col] = input[col] - value1;
+                }
+                break;
+            case MULTIPLY:
+                for (int col = 0; col < input.length; col++) {
+                    output[col] = input[col] * value1;
+                }
+                break;
+            case STANDARDIZE:
+                for (int col = 0; col < input.length; col++) {
+                    output[col] = (input[col] - value1) / value2;
+                }
+                break;
+            case AFFINE:
+                for (int col = 0; col < input.length; col++) {
+                    output[col] = input[col] * value1 + value2;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported broadcast operation: " + operation);
+        }
+    }
+
+    /**
+     * Multiplies the matrix with the column vector, optionally in parallel over rows.
+     *
+     * @param matrix The matrix.
+     * @param vector The vector of the length of the number of columns.
+     * @param parallel Indicates if rows are processed in parallel.
+     * @return The new product vector.
+     */
+    private static double[] operate (RealMatrix matrix, double[] vector, boolean parallel) {
+        // Check dimensions:
+        final int rows = matrix.getRowDimension();
+        final int cols = matrix.getColumnDimension();
+        if (vector.length != cols) {
+            throw new DimensionMismatchException(vector.length, cols);
+        }
+
+        // Define the task computing dot products of rows with the vector:
+        final double[] retval = new double[rows];
+        final double[][] data = matrix instanceof Array2DRowRealMatrix ? ((Array2DRowRealMatrix) matrix).getDataRef() : null;
+        final Parallel.RangeTask task = (from, to) -> {
+            for (int row = from; row < to; row++) {
+                final double[] values = data == null ? matrix.getRow(row) : data[row];
+                double total = 0.0;
+                for (int col = 0; col < cols; col++) {
+                    total += values[col] * vector[col];
+                }
+                retval[row] = total;
+            }
+        };
+
+        // Run the task:
+        if (parallel && (long) rows * cols >= PARALLEL_THRESHOLD) {
+            Parallel.forRange(0, rows, Parallel.chunks(PARALLEL_THRESHOLD, cols), task);
+        }
+        else {
+            task.run(0, rows);
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Multiplies the row vector with the matrix, optionally in parallel over ranges of columns.
+     *
+     * @param vector The vector of the length of the number of rows.
+     * @param matrix The matrix.
+     * @param parallel Indicates if columns are processed in parallel.
+     * @return The new product vector.
+     */
+    private static double[] preMultiply (double[] vector, RealMatrix matrix, boolean parallel) {
+        // Check dimensions:
+        final int rows = matrix.getRowDimension();
+        final int cols = matrix.getColumnDimension();
+        if (vector.length != rows) {
+            throw new DimensionMismatchException(vector.length, rows);
+        }
+
+        // Get rows once (the matrix is read row by row for each range of columns):
+        final double[][] data = matrix instanceof Array2DRowRealMatrix ? ((Array2DRowRealMatrix) matrix).getDataRef() : matrix.getData();
+
+        // Define the task accumulating scaled rows over a range of columns:
+        final double[] retval = new double[cols];
+        final Parallel.RangeTask task = (from, to) -> {
+            for (int row = 0; row < rows; row++) {
+                final double[] values = data[row];
+                final double factor = vector[row];
+                for (int col = from; col < to; col++) {
+                    retval[col] += factor * values[col];
+                }
+            }
+        };
+
+        // Run the task:
+        if (parallel && (long) rows * cols >= PARALLEL_THRESHOLD) {
+            Parallel.forRange(0, cols, Math.max(64, Parallel.chunks(PARALLEL_THRESHOLD, rows)), task);
+        }
+        else {
+            task.run(0, cols);
         }
 
         // Done, return:
         return retval;
     }
 
+    /**
+     * Returns the bias-corrected covariance matrix of columns, optionally computed in parallel.
+     *
+     * @param matrix The matrix of at least two rows.
+     * @param parallel Indicates if the computation runs in parallel.
+     * @return The new covariance matrix.
+     */
+    private static RealMatrix covariance (RealMatrix matrix, boolean parallel) {
+        // Check dimensions:
+        if (matrix.getRowDimension() < 2) {
+            throw new IllegalArgumentException("Covariance requires at least two rows.");
+        }
+
+        // Compute co-moments around the means, scale and return:
+        return EMatrixUtils.scaleComoments(Gemm.gram(matrix, EMatrixUtils.centeringMeans(matrix, parallel), parallel), matrix.getRowDimension());
+    }
+
+    /**
+     * Returns the means of columns corrected by the mean of residuals (as {@link org.apache.commons.math3.stat.descriptive.moment.Mean} does).
+     *
+     * <p>
+     *
+     * The means of constant columns are exact, so that their centered entries and hence their
+     * variances are exactly zero.
+     *
+     * @param matrix The matrix.
+     * @param parallel Indicates if column sums and residuals are computed in parallel.
+     * @return The means of columns.
+     */
+    private static double[] centeringMeans (RealMatrix matrix, boolean parallel) {
+        // Get the means from column sums:
+        final int rows = matrix.getRowDimension();
+        final int cols = matrix.getColumnDimension();
+        final double[] retval = parallel ? EMatrixUtils.parallelColSums(matrix) : EMatrixUtils.colSums(matrix);
+        for (int col = 0; col < cols; col++) {
+            retval[col] /= rows;
+        }
+
+        // Define the sums of residuals over ranges of rows:
+        final Parallel.RangeFunction<double[]> task = (from, to) -> {
+            final double[] totals = new double[cols];
+            matrix.walkInOptimizedOrder(new DefaultRealMatrixPreservingVisitor() {
+                @Override
+                public void visit(int row, int column, double value) {
+                    totals[column] += value - retval[column];
+                }
+            }, from, to - 1, 0, cols - 1);
+            return totals;
+        };
+
+        // Add the residuals, summed over chunks of rows in parallel if requested:
+        final double[] residuals = parallel ? Parallel.mapMerge(rows, cols, PARALLEL_THRESHOLD, task, EMatrixUtils::addInPlace) : task.apply(0, rows);
+        for (int col = 0; col < cols; col++) {
+            retval[col] += residuals[col] / rows;
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Scales the co-moments by the bias-corrected number of rows into a new matrix.
+     *
+     * @param comoments The co-moments.
+     * @param rows The number of rows.
+     * @return The new covariance matrix.
+     */
+    private static RealMatrix scaleComoments (double[][] comoments, long rows) {
+        for (double[] row : comoments) {
+            for (int col = 0; col < row.length; col++) {
+                row[col] /= rows - 1;
+            }
+        }
+        return new Array2DRowRealMatrix(comoments, false);
+    }
+
+    /**
+     * Returns the given range of rows as a matrix, without copying entries where possible.
+     *
+     * @param matrix The matrix.
+     * @param from The index of the row to start with (inclusive).
+     * @param to The index of the row to end with (exclusive).
+     * @return The matrix of the rows.
+     */
+    private static RealMatrix rowChunk (RealMatrix matrix, int from, int to) {
+        if (matrix instanceof Array2DRowRealMatrix) {
+            return new Array2DRowRealMatrix(Arrays.copyOfRange(((Array2DRowRealMatrix) matrix).getDataRef(), from, to), false);
+        }
+        else if (matrix instanceof FlatRealMatrix) {
+            return ((FlatRealMatrix) matrix).subMatrixView(from, to - 1, 0, matrix.getColumnDimension() - 1);
+        }
+        final double[][] retval = new double[to - from][];
+        for (int row = from; row < to; row++) {
+            retval[row - from] = matrix.getRow(row);
+        }
+        return new Array2DRowRealMatrix(retval, false);
+    }
+
     /**
      * Converts a real matrix to a JSON string.
      *
@@ -0,0 +1,458 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.linear.AbstractRealMatrix;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealMatrixChangingVisitor;
+import org.apache.commons.math3.linear.RealMatrixPreservingVisitor;
+
+/**
+ * Provides a real matrix backed by a single contiguous double array with arbitrary strides.
+ *
+ * <p>
+ *
+ * The entry at {@code (row, column)} is stored at {@code offset + row * rowStride + column * columnStride}
+ * of the backing array. Hence, a row-major matrix has strides {@code (columns, 1)} and a column-major
+ * matrix has strides {@code (1, rows)}.
+ *
+ * <p>
+ *
+ * Methods of {@link RealMatrix} such as {@link #getSubMatrix(int, int, int, int)}, {@link #transpose()}
+ * and {@link #copy()} return independent copies as per the contract of {@link RealMatrix}. The view
+ * methods {@link #rowView(int)}, {@link #columnView(int)}, {@link #subMatrixView(int, int, int, int)}
+ * and {@link #transposeView()} return matrices sharing the backing array without any copying, ie.
+ * changes to views are visible in the original matrix and vice versa.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class FlatRealMatrix extends AbstractRealMatrix {
+    /**
+     * The backing array.
+     */
+    private final double[] data;
+
+    /**
+     * The index of the entry {@code (0, 0)} in the backing array.
+     */
+    private final int offset;
+
+    /**
+     * The number of rows.
+     */
+    private final int rows;
+
+    /**
+     * The number of columns.
+     */
+    private final int columns;
+
+    /**
+     * The distance between rows in the backing array.
+     */
+    private final int rowStride;
+
+    /**
+     * The distance between columns in the backing array.
+     */
+    private final int columnStride;
+
+    /**
+     * Creates a row-major matrix of zeros.
+     *
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     */
+    public FlatRealMatrix(int rows, int columns) {
+        this(new double[FlatRealMatrix.checkedLength(rows, columns)], 0, rows, columns, columns, 1);
+    }
+
+    /**
+     * Creates a row-major matrix by copying the given data.
+     *
+     * @param data The data as an array of rows.
+     */
+    public FlatRealMatrix(double[][] data) {
+        this(data.length, data.length == 0 ? 0 : data[0].length);
+        for (int row = 0; row < this.rows; row++) {
+            if (data[row].length != this.columns) {
+                throw new DimensionMismatchException(data[row].length, this.columns);
+            }
+            System.arraycopy(data[row], 0, this.data, row * this.columns, this.columns);
+        }
+    }
+
+    /**
+     * Creates a row-major matrix backed by the given array without copying.
+     *
+     * @param data The backing array of length {@code rows * columns}.
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     */
+    public FlatRealMatrix(double[] data, int rows, int columns) {
+        this(data, 0, rows, columns, columns, 1);
+        if (data.length != FlatRealMatrix.checkedLength(rows, columns)) {
+            throw new DimensionMismatchException(data.length, rows * columns);
+        }
+    }
+
+    /**
+     * Creates a matrix backed by the given array without copying, with the given layout.
+     *
+     * @param data The backing array.
+     * @param offset The index of the entry {@code (0, 0)} in the backing array.
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     * @param rowStride The distance between rows in the backing array.
+     * @param columnStride The distance between columns in the backing array.
+     */
+    public FlatRealMatrix(double[] data, int offset, int rows, int columns, int rowStride, int columnStride) {
+        // Check dimensions:
+        if (rows <= 0) {
+            throw new NotStrictlyPositiveException(rows);
+        }
+        else if (columns <= 0) {
+            throw new NotStrictlyPositiveException(columns);
+        }
+
+        // Check that all entries are within the backing array (the extremes are at the corners):
+        final long last = offset + (long) (rows - 1) * rowStride + (long) (columns - 1) * columnStride;
+        final long first = offset;
+        final long corner1 = offset + (long) (rows - 1) * rowStride;
+        final long corner2 = offset + (long) (columns - 1) * columnStride;
+        final long min = Math.min(Math.min(first, last), Math.min(corner1, corner2));
+        final long max = Math.max(Math.max(first, last), Math.max(corner1, corner2));
+        if (min < 0 || max >= data.length) {
+            throw new IllegalArgumentException("The layout is out of the bounds of the backing array.");
+        }
+
+        // Save:
+        this.data = data;
+        this.offset = offset;
+        this.rows = rows;
+        this.columns = columns;
+        this.rowStride = rowStride;
+        this.columnStride = columnStride;
+    }
+
+    /**
+     * Returns the backing array.
+     *
+     * @return The backing array.
+     */
+    public double[] getDataRef() {
+        return this.data;
+    }
+
+    /**
+     * Returns the index of the entry {@code (0, 0)} in the backing array.
+     *
+     * @return The offset.
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Returns the distance between rows in the backing array.
+     *
+     * @return The row stride.
+     */
+    public int getRowStride() {
+        return this.rowStride;
+    }
+
+    /**
+     * Returns the distance between columns in the backing array.
+     *
+     * @return The column stride.
+     */
+    public int getColumnStride() {
+        return this.columnStride;
+    }
+
+    /**
+     * Indicates if the matrix occupies the backing array from its offset in row-major order without gaps.
+     *
+     * @return {@code true} if the matrix is contiguous and row-major.
+     */
+    public boolean isRowMajor() {
+        return this.columnStride == 1 && (this.rowStride == this.columns || this.rows == 1);
+    }
+
+    /**
+     * Returns the row as a {@code 1 x columns} view.
+     *
+     * @param row The index of the row.
+     * @return A view of the row.
+     */
+    public FlatRealMatrix rowView(int row) {
+        return this.subMatrixView(row, row, 0, this.columns - 1);
+    }
+
+    /**
+     * Returns the column as a {@code rows x 1} view.
+     *
+     * @param column The index of the column.
+     * @return A view of the column.
+     */
+    public FlatRealMatrix columnView(int column) {
+        return this.subMatrixView(0, this.rows - 1, column, column);
+    }
+
+    /**
+     * Returns the sub-matrix as a view. See {@link #getSubMatrix(int, int, int, int)} for a copy.
+     *
+     * @param startRow The index of the row to start with (inclusive).
+     * @param endRow The index of the row to end with (inclusive).
+     * @param startColumn The index of the column to start with (inclusive).
+     * @param endColumn The index of the column to end with (inclusive).
+     * @return A view of the sub-matrix.
+     */
+    public FlatRealMatrix subMatrixView(int startRow, int endRow, int startColumn, int endColumn) {
+        MatrixUtils.checkSubMatrixIndex(this, startRow, endRow, startColumn, endColumn);
+        return new FlatRealMatrix(this.data, this.index(startRow, startColumn), endRow - startRow + 1, endColumn - startColumn + 1,
+            this.rowStride, this.columnStride);
+    }
+
+    /**
+     * Returns the transpose as a view. See {@link #transpose()} for a copy.
+     *
+     * @return A view of the transpose.
+     */
+    public FlatRealMatrix transposeView() {
+        return new FlatRealMatrix(this.data, this.offset, this.columns, this.rows, this.columnStride, this.rowStride);
+    }
+
+    @Override
+    public int getRowDimension() {
+        return this.rows;
+    }
+
+    @Override
+    public int getColumnDimension() {
+        return this.columns;
+    }
+
+    @Override
+    public RealMatrix createMatrix(int rowDimension, int columnDimension) {
+        return new FlatRealMatrix(rowDimension, columnDimension);
+    }
+
+    @Override
+    public FlatRealMatrix copy() {
+        return new FlatRealMatrix(this.getData());
+    }
+
+    @Override
+    public double getEntry(int row, int column) {
+        MatrixUtils.checkMatrixIndex(this, row, column);
+        return this.data[this.index(row, column)];
+    }
+
+    @Override
+    public void setEntry(int row, int column, double value) {
+        MatrixUtils.checkMatrixIndex(this, row, column);
+        this.data[this.index(row, column)] = value;
+    }
+
+    @Override
+    public void addToEntry(int row, int column, double increment) {
+        MatrixUtils.checkMatrixIndex(this, row, column);
+        this.data[this.index(row, column)] += increment;
+    }
+
+    @Override
+    public void multiplyEntry(int row, int column, double factor) {
+        MatrixUtils.checkMatrixIndex(this, row, column);
+        this.data[this.index(row, column)] *= factor;
+    }
+
+    @Override
+    public double[] getRow(int row) {
+        // Check the row:
+        MatrixUtils.checkRowIndex(this, row);
+
+        // Copy the row:
+        final double[] retval = new double[this.columns];
+        if (this.columnStride == 1) {
+            System.arraycopy(this.data, this.index(row, 0), retval, 0, this.columns);
+        }
+        else {
+            for (int column = 0, index = this.index(row, 0); column < this.columns; column++, index += this.columnStride) {
+                retval[column] = this.data[index];
+            }
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    @Override
+    public double[] getColumn(int column) {
+        // Check the column:
+        MatrixUtils.checkColumnIndex(this, column);
+
+        // Copy the column:
+        final double[] retval = new double[this.rows];
+        if (this.rowStride == 1) {
+            System.arraycopy(this.data, this.index(0, column), retval, 0, this.rows);
+        }
+        else {
+            for (int row = 0, index = this.index(0, column); row < this.rows; row++, index += this.rowStride) {
+                retval[row] = this.data[index];
+            }
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    @Override
+    public double[][] getData() {
+        final double[][] retval = new double[this.rows][];
+        for (int row = 0; row < this.rows; row++) {
+            retval[row] = this.getRow(row);
+        }
+        return retval;
+    }
+
+    @Override
+    public FlatRealMatrix getSubMatrix(int startRow, int endRow, int startColumn, int endColumn) {
+        return this.subMatrixView(startRow, endRow, startColumn, endColumn).copy();
+    }
+
+    @Override
+    public FlatRealMatrix transpose() {
+        return this.transposeView().copy();
+    }
+
+    @Override
+    public double[] operate(double[] vector) {
+        // Check dimensions:
+        if (vector.length != this.columns) {
+            throw new DimensionMismatchException(vector.length, this.columns);
+        }
+
+        // Compute dot products of rows with the vector:
+        final double[] retval = new double[this.rows];
+        for (int row = 0; row < this.rows; row++) {
+            double total = 0.0;
+            for (int column = 0, index = this.index(row, 0); column < this.columns; column++, index += this.columnStride) {
+                total += this.data[index] * vector[column];
+            }
+            retval[row] = total;
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    @Override
+    public double walkInRowOrder(RealMatrixChangingVisitor visitor) {
+        visitor.start(this.rows, this.columns, 0, this.rows - 1, 0, this.columns - 1);
+        for (int row = 0; row < this.rows; row++) {
+            for (int column = 0, index = this.index(row, 0); column < this.columns; column++, index += this.columnStride) {
+                this.data[index] = visitor.visit(row, column, this.data[index]);
+            }
+        }
+        return visitor.end();
+    }
+
+    @Override
+    public double walkInRowOrder(RealMatrixPreservingVisitor visitor) {
+        visitor.start(this.rows, this.columns, 0, this.rows - 1, 0, this.columns - 1);
+        for (int row = 0; row < this.rows; row++) {
+            for (int column = 0, index = this.index(row, 0); column < this.columns; column++, index += this.columnStride) {
+                visitor.visit(row, column, this.data[index]);
+            }
+        }
+        return visitor.end();
+    }
+
+    @Override
+    public double walkInColumnOrder(RealMatrixChangingVisitor visitor) {
+        visitor.start(this.rows, this.columns, 0, this.rows - 1, 0, this.columns - 1);
+        for (int column = 0; column < this.columns; column++) {
+            for (int row = 0, index = this.index(0, column); row < this.rows; row++, index += this.rowStride) {
+                this.data[index] = visitor.visit(row, column, this.data[index]);
+            }
+        }
+        return visitor.end();
+    }
+
+    @Override
+    public double walkInColumnOrder(RealMatrixPreservingVisitor visitor) {
+        visitor.start(this.rows, this.columns, 0, this.rows - 1, 0, this.columns - 1);
+        for (int column = 0; column < this.columns; column++) {
+            for (int row = 0, index = this.index(0, column); row < this.rows; row++, index += this.rowStride) {
+                visitor.visit(row, column, this.data[index]);
+            }
+        }
+        return visitor.end();
+    }
+
+    @Override
+    public double walkInOptimizedOrder(RealMatrixChangingVisitor visitor) {
+        return this.isColumnMajorish() ? this.walkInColumnOrder(visitor) : this.walkInRowOrder(visitor);
+    }
+
+    @Override
+    public double walkInOptimizedOrder(RealMatrixPreservingVisitor visitor) {
+        return this.isColumnMajorish() ? this.walkInColumnOrder(visitor) : this.walkInRowOrder(visitor);
+    }
+
+    /**
+     * Returns the index of the entry in the backing array without checks.
+     *
+     * @param row The index of the row.
+     * @param column The index of the column.
+     * @return The index of the entry in the backing array.
+     */
+    int index(int row, int column) {
+        return this.offset + row * this.rowStride + column * this.columnStride;
+    }
+
+    /**
+     * Indicates if entries of columns are closer to each other than entries of rows in the backing array.
+     *
+     * @return {@code true} if walking in column order is more cache friendly.
+     */
+    private boolean isColumnMajorish() {
+        return Math.abs(this.rowStride) < Math.abs(this.columnStride);
+    }
+
+    /**
+     * Returns the length of the backing array for the given dimensions, checking for overflows.
+     *
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     * @return The length of the backing array.
+     */
+    private static int checkedLength(int rows, int columns) {
+        if (rows <= 0) {
+            throw new NotStrictlyPositiveException(rows);
+        }
+        else if (columns <= 0) {
+            throw new NotStrictlyPositiveException(columns);
+        }
+        return Math.multiplyExact(rows, columns);
+    }
+}
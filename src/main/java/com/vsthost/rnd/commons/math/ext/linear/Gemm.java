@@ -0,0 +1,422 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Provides the cache-blocked, packed matrix multiplication kernel behind
+ * {@link EMatrixUtils#multiply(RealMatrix, RealMatrix)} and friends.
+ *
+ * <p>
+ *
+ * The product is computed in tiles of {@value #MC} x {@value #NC} entries. For each tile, panels
+ * of {@value #KC} columns of the left operand and {@value #KC} rows of the right operand are
+ * packed into contiguous buffers and multiplied by a {@value #MR} x {@value #NR} register-tiled
+ * micro-kernel. Operands are read through their backing arrays where possible, and transposed
+ * operands are handled while packing without materializing the transpose. Tiles are independent,
+ * hence they are distributed over the fork/join pool in the parallel variant.
+ *
+ * <p>
+ *
+ * Each entry of the product is accumulated over the inner dimension in order, regardless of the
+ * number of threads. The result may differ from the naive triple loop in rounding.
+ */
+final class Gemm {
+    /**
+     * Defines the number of rows of the micro-kernel.
+     */
+    static final int MR = 4;
+
+    /**
+     * Defines the number of columns of the micro-kernel.
+     */
+    static final int NR = 4;
+
+    /**
+     * Defines the number of rows of tiles.
+     */
+    static final int MC = 64;
+
+    /**
+     * Defines the number of columns of tiles.
+     */
+    static final int NC = 256;
+
+    /**
+     * Defines the length of packed panels along the inner dimension.
+     */
+    static final int KC = 256;
+
+    /**
+     * Defines the number of multiply-adds from which the parallel variant actually runs in parallel.
+     */
+    private static final long PARALLEL_THRESHOLD = 1L << 21;
+
+    /**
+     * Multiplies the operands, optionally transposed, into a new matrix.
+     *
+     * @param left The left operand.
+     * @param transposeLeft Indicates if the transpose of the left operand is to be multiplied.
+     * @param right The right operand.
+     * @param transposeRight Indicates if the transpose of the right operand is to be multiplied.
+     * @param parallel Indicates if tiles are computed in parallel.
+     * @return A new matrix.
+     */
+    static RealMatrix multiply(RealMatrix left, boolean transposeLeft, RealMatrix right, boolean transposeRight, boolean parallel) {
+        final Operand a = new Operand(left, transposeLeft, null);
+        final Operand b = new Operand(right, transposeRight, null);
+        if (a.columns != b.rows) {
+            throw new DimensionMismatchException(b.rows, a.columns);
+        }
+        return new Array2DRowRealMatrix(Gemm.compute(a, b, false, parallel), false);
+    }
+
+    /**
+     * Computes the Gram matrix of the matrix centered implicitly by the given column shifts,
+     * ie. {@code (X - 1 * shifts^T)^T (X - 1 * shifts^T)}.
+     *
+     * <p>
+     *
+     * Shifts are subtracted while packing, hence the centered matrix is never materialized. Only
+     * tiles intersecting the upper triangle are computed, and the lower triangle is mirrored, so
+     * that the result is exactly symmetric.
+     *
+     * @param matrix The matrix.
+     * @param shifts The shifts of columns, such as column means.
+     * @param parallel Indicates if tiles are computed in parallel.
+     * @return The rows of the Gram matrix.
+     */
+    static double[][] gram(RealMatrix matrix, double[] shifts, boolean parallel) {
+        // Compute the upper triangle:
+        final double[][] retval = Gemm.compute(new Operand(matrix, true, shifts), new Operand(matrix, false, shifts), true, parallel);
+
+        // Mirror the lower triangle:
+        for (int i = 1; i < retval.length; i++) {
+            for (int j = 0; j < i; j++) {
+                retval[i][j] = retval[j][i];
+            }
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Computes the product of the operands by tiles.
+     *
+     * @param a The left operand.
+     * @param b The right operand.
+     * @param upper Indicates if only tiles intersecting the upper triangle are to be computed.
+     * @param parallel Indicates if tiles are computed in parallel.
+     * @return The rows of the product.
+     */
+    private static double[][] compute(Operand a, Operand b, boolean upper, boolean parallel) {
+        // Get dimensions and tiles:
+        final int m = a.rows;
+        final int n = b.columns;
+        final int k = a.columns;
+        final double[][] product = new double[m][n];
+        final int rowTiles = Parallel.chunks(m, MC);
+        final int columnTiles = Parallel.chunks(n, NC);
+        final int[] tiles = new int[rowTiles * columnTiles];
+        int count = 0;
+        for (int tile = 0; tile < tiles.length; tile++) {
+            if (!upper || (tile % columnTiles + 1) * NC > (tile / columnTiles) * MC) {
+                tiles[count++] = tile;
+            }
+        }
+
+        // Define the task over ranges of tiles:
+        final Parallel.RangeTask task = (from, to) -> {
+            // Allocate packing buffers once per range:
+            final double[] packedA = new double[Math.min(Parallel.chunks(m, MR) * MR, MC) * Math.min(k, KC)];
+            final double[] packedB = new double[Math.min(Parallel.chunks(n, NR) * NR, NC) * Math.min(k, KC)];
+
+            // Compute tiles:
+            for (int index = from; index < to; index++) {
+                final int i0 = (tiles[index] / columnTiles) * MC;
+                final int j0 = (tiles[index] % columnTiles) * NC;
+                final int mc = Math.min(MC, m - i0);
+                final int nc = Math.min(NC, n - j0);
+                for (int p0 = 0; p0 < k; p0 += KC) {
+                    final int kc = Math.min(KC, k - p0);
+                    a.packRows(i0, mc, p0, kc, packedA);
+                    b.packColumns(p0, kc, j0, nc, packedB);
+                    Gemm.multiplyPacked(packedA, packedB, product, i0, mc, j0, nc, kc);
+                }
+            }
+        };
+
+        // Run the task:
+        if (parallel && (long) m * n * k >= PARALLEL_THRESHOLD && count > 1) {
+            Parallel.forRange(0, count, Math.max(1, count / (4 * ForkJoinPool.getCommonPoolParallelism())), task);
+        }
+        else {
+            task.run(0, count);
+        }
+
+        // Done, return:
+        return product;
+    }
+
+    /**
+     * Multiplies packed panels and adds the result to the tile of the product.
+     *
+     * @param packedA The packed panels of rows of the left operand.
+     * @param packedB The packed panels of columns of the right operand.
+     * @param product The rows of the product.
+     * @param i0 The index of the first row of the tile.
+     * @param mc The number of rows of the tile.
+     * @param j0 The index of the first column of the tile.
+     * @param nc The number of columns of the tile.
+     * @param kc The length of panels.
+     */
+    private static void multiplyPacked(double[] packedA, double[] packedB, double[][] product, int i0, int mc, int j0, int nc, int kc) {
+        for (int jr = 0; jr < nc; jr += NR) {
+            final int bOffset = jr * kc;
+            for (int ir = 0; ir < mc; ir += MR) {
+                // Accumulate the block in registers:
+                final int aOffset = ir * kc;
+                double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+                double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+                double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+                double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+                for (int p = 0, ai = aOffset, bi = bOffset; p < kc; p++, ai += MR, bi += NR) {
+                    final double a0 = packedA[ai];
+                    final double a1 = packedA[ai + 1];
+                    final double a2 = packedA[ai + 2];
+                    final double a3 = packedA[ai + 3];
+                    final double b0 = packedB[bi];
+                    final double b1 = packedB[bi + 1];
+                    final double b2 = packedB[bi + 2];
+                    final double b3 = packedB[bi + 3];
+                    c00 += a0 * b0; c01 += a0 * b1; c02 += a0 * b2; c03 += a0 * b3;
+                    c10 += a1 * b0; c11 += a1 * b1; c12 += a1 * b2; c13 += a1 * b3;
+                    c20 += a2 * b0; c21 += a2 * b1; c22 += a2 * b2; c23 += a2 * b3;
+                    c30 += a3 * b0; c31 += a3 * b1; c32 += a3 * b2; c33 += a3 * b3;
+                }
+
+                // Add the valid part of the block to the product:
+                final int rows = Math.min(MR, mc - ir);
+                final int columns = Math.min(NR, nc - jr);
+                final int j = j0 + jr;
+                Gemm.addRow(product[i0 + ir], j, columns, c00, c01, c02, c03);
+                if (rows > 1) {
+                    Gemm.addRow(product[i0 + ir + 1], j, columns, c10, c11, c12, c13);
+                }
+                if (rows > 2) {
+                    Gemm.addRow(product[i0 + ir + 2], j, columns, c20, c21, c22, c23);
+                }
+                if (rows > 3) {
+                    Gemm.addRow(product[i0 + ir + 3], j, columns, c30, c31, c32, c33);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the first values to the row starting at the given column.
+     *
+     * @param row The row of the product.
+     * @param column The index of the column to start with.
+     * @param count The number of values to be added.
+     * @param v0 The first value.
+     * @param v1 The second value.
+     * @param v2 The third value.
+     * @param v3 The fourth value.
+     */
+    private static void addRow(double[] row, int column, int count, double v0, double v1, double v2, double v3) {
+        row[column] += v0;
+        if (count > 1) {
+            row[column + 1] += v1;
+        }
+        if (count > 2) {
+            row[column + 2] += v2;
+        }
+        if (count > 3) {
+            row[column + 3] += v3;
+        }
+    }
+
+    /**
+     * Provides read access to an operand, optionally transposed, through its backing array.
+     */
+    private static final class Operand {
+        /**
+         * The rows of the underlying matrix, if it is stored by rows.
+         */
+        private final double[][] data;
+
+        /**
+         * Indicates if the underlying rows are to be transposed.
+         */
+        private final boolean transposed;
+
+        /**
+         * The backing array of the underlying flat matrix, if it is flat.
+         */
+        private final double[] flat;
+
+        /**
+         * The offset, row stride and column stride of the operand in the flat backing array.
+         */
+        private final int offset, rowStride, columnStride;
+
+        /**
+         * The dimensions of the operand (after transposition).
+         */
+        private final int rows, columns;
+
+        /**
+         * The shifts to be subtracted from entries by the columns of the underlying matrix, if any.
+         */
+        private final double[] shifts;
+
+        /**
+         * Indicates if shifts are indexed by the rows of the operand (ie. the operand is transposed).
+         */
+        private final boolean shiftByRow;
+
+        /**
+         * Creates the operand.
+         *
+         * @param matrix The underlying matrix.
+         * @param transposed Indicates if the operand is the transpose of the matrix.
+         * @param shifts The shifts to be subtracted from entries by the columns of the matrix, if any.
+         */
+        Operand(RealMatrix matrix, boolean transposed, double[] shifts) {
+            if (shifts != null && shifts.length != matrix.getColumnDimension()) {
+                throw new DimensionMismatchException(shifts.length, matrix.getColumnDimension());
+            }
+            this.shifts = shifts;
+            this.shiftByRow = transposed;
+            this.rows = transposed ? matrix.getColumnDimension() : matrix.getRowDimension();
+            this.columns = transposed ? matrix.getRowDimension() : matrix.getColumnDimension();
+            if (matrix instanceof FlatRealMatrix) {
+                final FlatRealMatrix view = (FlatRealMatrix) matrix;
+                this.data = null;
+                this.transposed = false;
+                this.flat = view.getDataRef();
+                this.offset = view.getOffset();
+                this.rowStride = transposed ? view.getColumnStride() : view.getRowStride();
+                this.columnStride = transposed ? view.getRowStride() : view.getColumnStride();
+            }
+            else {
+                this.data = matrix instanceof Array2DRowRealMatrix ? ((Array2DRowRealMatrix) matrix).getDataRef() : matrix.getData();
+                this.transposed = transposed;
+                this.flat = null;
+                this.offset = 0;
+                this.rowStride = 0;
+                this.columnStride = 0;
+            }
+        }
+
+        /**
+         * Returns the entry of the operand.
+         *
+         * @param row The index of the row.
+         * @param column The index of the column.
+         * @return The entry.
+         */
+        private double get(int row, int column) {
+            final double value;
+            if (this.flat != null) {
+                value = this.flat[this.offset + row * this.rowStride + column * this.columnStride];
+            }
+            else {
+                value = this.transposed ? this.data[column][row] : this.data[row][column];
+            }
+            return this.shifts == null ? value : value - this.shifts[this.shiftByRow ? row : column];
+        }
+
+        /**
+         * Indicates if entries of rows are closer to each other than entries of columns.
+         *
+         * @return {@code true} if reading along rows is more cache friendly.
+         */
+        private boolean isRowContiguous() {
+            return this.flat == null ? !this.transposed : Math.abs(this.columnStride) <= Math.abs(this.rowStride);
+        }
+
+        /**
+         * Packs the block into panels of {@value #MR} rows, padded with zeros, where each panel
+         * stores the columns of its rows consecutively.
+         *
+         * @param i0 The index of the first row.
+         * @param mc The number of rows.
+         * @param p0 The index of the first column.
+         * @param kc The number of columns.
+         * @param packed The destination buffer.
+         */
+        void packRows(int i0, int mc, int p0, int kc, double[] packed) {
+            for (int ir = 0; ir < mc; ir += MR) {
+                final int base = ir * kc;
+                final int valid = Math.min(MR, mc - ir);
+                if (this.isRowContiguous()) {
+                    for (int r = 0; r < MR; r++) {
+                        for (int p = 0; p < kc; p++) {
+                            packed[base + p * MR + r] = r < valid ? this.get(i0 + ir + r, p0 + p) : 0.0;
+                        }
+                    }
+                }
+                else {
+                    for (int p = 0; p < kc; p++) {
+                        for (int r = 0; r < MR; r++) {
+                            packed[base + p * MR + r] = r < valid ? this.get(i0 + ir + r, p0 + p) : 0.0;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Packs the block into panels of {@value #NR} columns, padded with zeros, where each panel
+         * stores the rows of its columns consecutively.
+         *
+         * @param p0 The index of the first row.
+         * @param kc The number of rows.
+         * @param j0 The index of the first column.
+         * @param nc The number of columns.
+         * @param packed The destination buffer.
+         */
+        void packColumns(int p0, int kc, int j0, int nc, double[] packed) {
+            for (int jr = 0; jr < nc; jr += NR) {
+                final int base = jr * kc;
+                final int valid = Math.min(NR, nc - jr);
+                if (this.isRowContiguous()) {
+                    for (int p = 0; p < kc; p++) {
+                        for (int c = 0; c < NR; c++) {
+                            packed[base + p * NR + c] = c < valid ? this.get(p0 + p, j0 + jr + c) : 0.0;
+                        }
+                    }
+                }
+                else {
+                    for (int c = 0; c < NR; c++) {
+                        for (int p = 0; p < kc; p++) {
+                            packed[base + p * NR + c] = c < valid ? this.get(p0 + p, j0 + jr + c) : 0.0;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -24,6 +24,11 @@ import org.apache.commons.math3.linear.RealMatrix;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -75,4 +80,72 @@ public class IOUtils {
         return MatrixUtils.createRealMatrix(retvalArray);
     }
 
+    /**
+     * Writes the matrix to the filepath provided in the binary format of {@link MappedRealMatrix}.
+     *
+     * <p>
+     *
+     * The matrix is written row by row, hence it does not need to fit into the heap at once.
+     *
+     * @param matrix The matrix to be written.
+     * @param filepath The path of the file to be created or truncated.
+     * @throws IOException As thrown by the file channel.
+     */
+    public static void writeBinaryMatrix (RealMatrix matrix, String filepath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            // Write the header:
+            MappedRealMatrix.writeHeader(channel, matrix.getRowDimension(), matrix.getColumnDimension());
+
+            // Write rows through a buffer:
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            for (int row = 0; row < matrix.getRowDimension(); row++) {
+                for (double value : matrix.getRow(row)) {
+                    if (buffer.remaining() < Double.BYTES) {
+                        IOUtils.drain(buffer, channel);
+                    }
+                    buffer.putDouble(value);
+                }
+            }
+            IOUtils.drain(buffer, channel);
+        }
+    }
+
+    /**
+     * Maps the matrix from the filepath provided read-only. See {@link #writeBinaryMatrix(RealMatrix, String)}.
+     *
+     * @param filepath The path of the file which the matrix will be mapped from.
+     * @return A matrix backed by the file.
+     * @throws IOException As thrown by the file channel, or if the file is not a valid matrix file.
+     */
+    public static MappedRealMatrix mapMatrix (String filepath) throws IOException {
+        return MappedRealMatrix.map(Paths.get(filepath), false);
+    }
+
+    /**
+     * Maps the matrix from the filepath provided.
+     *
+     * @param filepath The path of the file which the matrix will be mapped from.
+     * @param writable Indicates if the mapping is writable, in which case changes are written to the file.
+     * @return A matrix backed by the file.
+     * @throws IOException As thrown by the file channel, or if the file is not a valid matrix file.
+     */
+    public static MappedRealMatrix mapMatrix (String filepath, boolean writable) throws IOException {
+        return MappedRealMatrix.map(Paths.get(filepath), writable);
+    }
+
+    /**
+     * Writes the contents of the buffer to the channel and clears the buffer.
+     *
+     * @param buffer The buffer in write mode.
+     * @param channel The channel.
+     * @throws IOException As thrown by the file channel.
+     */
+    private static void drain (ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
 }
@@ -0,0 +1,441 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.linear.AbstractRealMatrix;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealMatrixChangingVisitor;
+import org.apache.commons.math3.linear.RealMatrixPreservingVisitor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Provides a real matrix stored outside of the Java heap, either in direct buffers or in memory-mapped files.
+ *
+ * <p>
+ *
+ * Entries are stored in row-major order as little-endian doubles, split into segments of
+ * {@value #SEGMENT_SIZE} entries each, so that matrices are not limited by the 2 GB limit of
+ * buffers. Memory-mapped files start with a header of {@value #HEADER_SIZE} bytes, ie. the magic
+ * number {@value #MAGIC}, the format version, the number of rows and the number of columns as
+ * little-endian integers, followed by the entries. Such files are written by
+ * {@link IOUtils#writeBinaryMatrix(RealMatrix, String)} and mapped by {@link IOUtils#mapMatrix(String)}.
+ *
+ * <p>
+ *
+ * The residency of mapped matrices is left to the page cache of the operating system. Note that
+ * mappings are released by the garbage collector only, and that matrices mapped read-only throw
+ * {@link java.nio.ReadOnlyBufferException} on writes.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class MappedRealMatrix extends AbstractRealMatrix {
+    /**
+     * Defines the magic number of files ("VSTM" in little-endian).
+     */
+    static final int MAGIC = 0x4D545356;
+
+    /**
+     * Defines the version of the file format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Defines the size of the file header in bytes.
+     */
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * Defines the number of entries per segment (1 GB of doubles).
+     */
+    static final int SEGMENT_SIZE = 1 << 27;
+
+    /**
+     * The segments.
+     */
+    private final DoubleBuffer[] segments;
+
+    /**
+     * The number of entries per segment, a power of two.
+     */
+    private final int segmentSize;
+
+    /**
+     * The base 2 logarithm of the number of entries per segment.
+     */
+    private final int segmentShift;
+
+    /**
+     * The number of rows.
+     */
+    private final int rows;
+
+    /**
+     * The number of columns.
+     */
+    private final int columns;
+
+    /**
+     * Creates a matrix of zeros in direct buffers.
+     *
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     */
+    public MappedRealMatrix(int rows, int columns) {
+        this(rows, columns, SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a matrix of zeros in direct buffers with the given segment size.
+     *
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     * @param segmentSize The number of entries per segment, a power of two.
+     */
+    MappedRealMatrix(int rows, int columns, int segmentSize) {
+        this(rows, columns, segmentSize, new DoubleBuffer[MappedRealMatrix.segmentCount(rows, columns, segmentSize)]);
+        for (int segment = 0; segment < this.segments.length; segment++) {
+            this.segments[segment] = ByteBuffer.allocateDirect(this.segmentLength(segment) * Double.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+    }
+
+    /**
+     * Creates a matrix over the given segments.
+     *
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     * @param segmentSize The number of entries per segment, a power of two.
+     * @param segments The segments to be populated by the caller.
+     */
+    private MappedRealMatrix(int rows, int columns, int segmentSize, DoubleBuffer[] segments) {
+        this.rows = rows;
+        this.columns = columns;
+        this.segmentSize = segmentSize;
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+        this.segments = segments;
+    }
+
+    /**
+     * Maps the matrix stored in the file.
+     *
+     * @param path The path of the file.
+     * @param writable Indicates if the mapping is writable, in which case writes go to the file.
+     * @return The mapped matrix.
+     * @throws IOException As thrown by the file channel, or if the file is not a valid matrix file.
+     */
+    public static MappedRealMatrix map(Path path, boolean writable) throws IOException {
+        return MappedRealMatrix.map(path, writable, SEGMENT_SIZE);
+    }
+
+    /**
+     * Maps the matrix stored in the file with the given segment size.
+     *
+     * @param path The path of the file.
+     * @param writable Indicates if the mapping is writable, in which case writes go to the file.
+     * @param segmentSize The number of entries per segment, a power of two.
+     * @return The mapped matrix.
+     * @throws IOException As thrown by the file channel, or if the file is not a valid matrix file.
+     */
+    static MappedRealMatrix map(Path path, boolean writable, int segmentSize) throws IOException {
+        final StandardOpenOption[] options = writable
+            ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+            : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            // Read and check the header:
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading.
+            }
+            header.flip();
+            if (header.remaining() != HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("File is not a matrix file of a supported version: " + path);
+            }
+            final int rows = header.getInt();
+            final int columns = header.getInt();
+            if (rows <= 0 || columns <= 0 || channel.size() < HEADER_SIZE + (long) rows * columns * Double.BYTES) {
+                throw new IOException("File is truncated or has invalid dimensions: " + path);
+            }
+
+            // Map segments:
+            final MappedRealMatrix retval = new MappedRealMatrix(rows, columns, segmentSize,
+                new DoubleBuffer[MappedRealMatrix.segmentCount(rows, columns, segmentSize)]);
+            final FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            for (int segment = 0; segment < retval.segments.length; segment++) {
+                final long position = HEADER_SIZE + ((long) segment * segmentSize) * Double.BYTES;
+                retval.segments[segment] = channel.map(mode, position, (long) retval.segmentLength(segment) * Double.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+
+            // Done, return (mappings remain valid after the channel is closed):
+            return retval;
+        }
+    }
+
+    /**
+     * Creates a file for a matrix of zeros and maps it writable.
+     *
+     * @param path The path of the file to be created or truncated.
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     * @return The mapped matrix.
+     * @throws IOException As thrown by the file channel.
+     */
+    public static MappedRealMatrix create(Path path, int rows, int columns) throws IOException {
+        // Check the dimensions:
+        MappedRealMatrix.segmentCount(rows, columns, SEGMENT_SIZE);
+
+        // Write the header and extend the file to its size:
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedRealMatrix.writeHeader(channel, rows, columns);
+            final long size = HEADER_SIZE + (long) rows * columns * Double.BYTES;
+            channel.write(ByteBuffer.allocate(1), size - 1);
+        }
+
+        // Map and return:
+        return MappedRealMatrix.map(path, true);
+    }
+
+    /**
+     * Writes the header of a matrix file to the current position of the channel.
+     *
+     * @param channel The channel.
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     * @throws IOException As thrown by the file channel.
+     */
+    static void writeHeader(FileChannel channel, int rows, int columns) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(columns).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    @Override
+    public int getRowDimension() {
+        return this.rows;
+    }
+
+    @Override
+    public int getColumnDimension() {
+        return this.columns;
+    }
+
+    @Override
+    public RealMatrix createMatrix(int rowDimension, int columnDimension) {
+        return new MappedRealMatrix(rowDimension, columnDimension, this.segmentSize);
+    }
+
+    /**
+     * Returns a copy of the matrix in direct buffers.
+     *
+     * @return A new matrix.
+     */
+    @Override
+    public MappedRealMatrix copy() {
+        final MappedRealMatrix retval = new MappedRealMatrix(this.rows, this.columns, this.segmentSize);
+        for (int segment = 0; segment < this.segments.length; segment++) {
+            retval.segments[segment].duplicate().put(this.segments[segment].duplicate());
+        }
+        return retval;
+    }
+
+    @Override
+    public double getEntry(int row, int column) {
+        MatrixUtils.checkMatrixIndex(this, row, column);
+        final long index = (long) row * this.columns + column;
+        return this.segments[(int) (index >>> this.segmentShift)].get((int) (index & (this.segmentSize - 1)));
+    }
+
+    @Override
+    public void setEntry(int row, int column, double value) {
+        MatrixUtils.checkMatrixIndex(this, row, column);
+        final long index = (long) row * this.columns + column;
+        this.segments[(int) (index >>> this.segmentShift)].put((int) (index & (this.segmentSize - 1)), value);
+    }
+
+    @Override
+    public double[] getRow(int row) {
+        MatrixUtils.checkRowIndex(this, row);
+        final double[] retval = new double[this.columns];
+        this.transfer((long) row * this.columns, retval, false);
+        return retval;
+    }
+
+    @Override
+    public void setRow(int row, double[] array) {
+        MatrixUtils.checkRowIndex(this, row);
+        if (array.length != this.columns) {
+            throw new DimensionMismatchException(array.length, this.columns);
+        }
+        this.transfer((long) row * this.columns, array, true);
+    }
+
+    @Override
+    public double[][] getData() {
+        final double[][] retval = new double[this.rows][];
+        for (int row = 0; row < this.rows; row++) {
+            retval[row] = this.getRow(row);
+        }
+        return retval;
+    }
+
+    @Override
+    public double walkInRowOrder(RealMatrixChangingVisitor visitor) {
+        visitor.start(this.rows, this.columns, 0, this.rows - 1, 0, this.columns - 1);
+        int row = 0;
+        int column = 0;
+        for (DoubleBuffer segment : this.segments) {
+            for (int i = 0, length = segment.limit(); i < length; i++) {
+                segment.put(i, visitor.visit(row, column, segment.get(i)));
+                if (++column == this.columns) {
+                    column = 0;
+                    row++;
+                }
+            }
+        }
+        return visitor.end();
+    }
+
+    @Override
+    public double walkInRowOrder(RealMatrixPreservingVisitor visitor) {
+        visitor.start(this.rows, this.columns, 0, this.rows - 1, 0, this.columns - 1);
+        int row = 0;
+        int column = 0;
+        for (DoubleBuffer segment : this.segments) {
+            for (int i = 0, length = segment.limit(); i < length; i++) {
+                visitor.visit(row, column, segment.get(i));
+                if (++column == this.columns) {
+                    column = 0;
+                    row++;
+                }
+            }
+        }
+        return visitor.end();
+    }
+
+    @Override
+    public double walkInOptimizedOrder(RealMatrixChangingVisitor visitor) {
+        return this.walkInRowOrder(visitor);
+    }
+
+    @Override
+    public double walkInOptimizedOrder(RealMatrixPreservingVisitor visitor) {
+        return this.walkInRowOrder(visitor);
+    }
+
+    /**
+     * Adds the entries of the given rows to the column totals by streaming through the segments once.
+     *
+     * <p>
+     *
+     * Rows are added in order, hence the result is the same as summing columns entry by entry.
+     *
+     * @param fromRow The index of the row to start with (inclusive).
+     * @param toRow The index of the row to end with (exclusive).
+     * @param totals The column totals to be added to.
+     */
+    void addColumnSums(int fromRow, int toRow, double[] totals) {
+        long index = (long) fromRow * this.columns;
+        final long end = (long) toRow * this.columns;
+        int column = 0;
+        while (index < end) {
+            // Get the segment and the range within:
+            final DoubleBuffer segment = this.segments[(int) (index >>> this.segmentShift)];
+            final int position = (int) (index & (this.segmentSize - 1));
+            final int length = (int) Math.min(segment.limit() - position, end - index);
+
+            // Add entries:
+            for (int i = position; i < position + length; i++) {
+                totals[column] += segment.get(i);
+                if (++column == this.columns) {
+                    column = 0;
+                }
+            }
+            index += length;
+        }
+    }
+
+    /**
+     * Copies consecutive entries between the storage and the array, crossing segments as required.
+     *
+     * @param index The index of the first entry in the storage.
+     * @param array The array.
+     * @param store Indicates if the array is stored rather than loaded.
+     */
+    private void transfer(long index, double[] array, boolean store) {
+        int done = 0;
+        while (done < array.length) {
+            // Get the segment and the position within:
+            final long current = index + done;
+            final DoubleBuffer segment = this.segments[(int) (current >>> this.segmentShift)].duplicate();
+            segment.position((int) (current & (this.segmentSize - 1)));
+
+            // Transfer as much as the segment holds:
+            final int length = Math.min(array.length - done, segment.remaining());
+            if (store) {
+                segment.put(array, done, length);
+            }
+            else {
+                segment.get(array, done, length);
+            }
+            done += length;
+        }
+    }
+
+    /**
+     * Returns the number of entries of the segment.
+     *
+     * @param segment The index of the segment.
+     * @return The number of entries.
+     */
+    private int segmentLength(int segment) {
+        return (int) Math.min(this.segmentSize, (long) this.rows * this.columns - (long) segment * this.segmentSize);
+    }
+
+    /**
+     * Checks the dimensions and returns the number of segments required.
+     *
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     * @param segmentSize The number of entries per segment, a power of two.
+     * @return The number of segments.
+     */
+    private static int segmentCount(int rows, int columns, int segmentSize) {
+        if (rows <= 0) {
+            throw new NotStrictlyPositiveException(rows);
+        }
+        else if (columns <= 0) {
+            throw new NotStrictlyPositiveException(columns);
+        }
+        else if (segmentSize <= 0 || Integer.bitCount(segmentSize) != 1) {
+            throw new IllegalArgumentException("Segment size must be a positive power of two.");
+        }
+        return (int) (((long) rows * columns + segmentSize - 1) / segmentSize);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BinaryOperator;
+
+/**
+ * Provides fork/join helpers for splitting index ranges across worker threads.
+ */
+final class Parallel {
+    /**
+     * Defines the maximum number of chunks of {@link #mapMerge(int, int, int, RangeFunction, BinaryOperator)}.
+     */
+    static final int MAX_CHUNKS = 64;
+
+    /**
+     * Defines a unit of work over an index range.
+     */
+    interface RangeTask {
+        /**
+         * Runs the work for the given range.
+         *
+         * @param from The index to start with (inclusive).
+         * @param to The index to end with (exclusive).
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * Defines a computation of a partial result over an index range.
+     *
+     * @param <T> The type of partial results.
+     */
+    interface RangeFunction<T> {
+        /**
+         * Computes the partial result for the given range.
+         *
+         * @param from The index to start with (inclusive).
+         * @param to The index to end with (exclusive).
+         * @return The partial result.
+         */
+        T apply(int from, int to);
+    }
+
+    /**
+     * Runs the task over the range using the common fork/join pool.
+     *
+     * @param from The index to start with (inclusive).
+     * @param to The index to end with (exclusive).
+     * @param grain The maximum size of a range which is not split further.
+     * @param task The task to be run.
+     */
+    static void forRange(int from, int to, int grain, RangeTask task) {
+        Parallel.forRange(ForkJoinPool.commonPool(), from, to, grain, task);
+    }
+
+    /**
+     * Runs the task over the range using the provided fork/join pool.
+     *
+     * @param pool The fork/join pool.
+     * @param from The index to start with (inclusive).
+     * @param to The index to end with (exclusive).
+     * @param grain The maximum size of a range which is not split further.
+     * @param task The task to be run.
+     */
+    static void forRange(ForkJoinPool pool, int from, int to, int grain, RangeTask task) {
+        // Nothing to do for empty ranges, run small ranges in the caller thread:
+        if (to - from <= 0) {
+            return;
+        }
+        else if (to - from <= grain) {
+            task.run(from, to);
+            return;
+        }
+
+        // Split and run:
+        pool.invoke(new RangeAction(from, to, Math.max(1, grain), task));
+    }
+
+    /**
+     * Computes partial results over chunks of rows in parallel and merges them in order.
+     *
+     * <p>
+     *
+     * Rows are split into at most {@value #MAX_CHUNKS} chunks of at least {@code threshold / columns}
+     * rows, depending on the dimensions only. Partial results are merged from left to right, ie.
+     * {@code merger.apply(merger.apply(p0, p1), p2)} and so on. Hence, the result is reproducible
+     * regardless of the number of threads. Ranges of less than {@code threshold} entries are computed
+     * as a single chunk in the caller thread.
+     *
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     * @param threshold The number of entries from which rows are split.
+     * @param mapper The computation of partial results over ranges of rows.
+     * @param merger The merger of partial results, which may update and return its first argument.
+     * @param <T> The type of results.
+     * @return The merged result.
+     */
+    static <T> T mapMerge(int rows, int columns, int threshold, RangeFunction<T> mapper, BinaryOperator<T> merger) {
+        // Compute small ranges in the caller thread:
+        if ((long) rows * columns < threshold) {
+            return mapper.apply(0, rows);
+        }
+
+        // Get chunks:
+        final int size = Math.max(Parallel.chunks(threshold, Math.max(1, columns)), Parallel.chunks(rows, MAX_CHUNKS));
+        final int chunks = Parallel.chunks(rows, size);
+
+        // Compute partial results in parallel:
+        final Object[] partials = new Object[chunks];
+        Parallel.forRange(0, chunks, 1, (from, to) -> {
+            for (int chunk = from; chunk < to; chunk++) {
+                partials[chunk] = mapper.apply(chunk * size, Math.min(rows, (chunk + 1) * size));
+            }
+        });
+
+        // Merge partial results in order:
+        @SuppressWarnings("unchecked")
+        T retval = (T) partials[0];
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            @SuppressWarnings("unchecked")
+            final T partial = (T) partials[chunk];
+            retval = merger.apply(retval, partial);
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Returns the number of chunks of size {@code chunk} to cover {@code length} elements.
+     *
+     * @param length The number of elements.
+     * @param chunk The chunk size.
+     * @return The number of chunks.
+     */
+    static int chunks(int length, int chunk) {
+        return (int) ((length + (long) chunk - 1) / chunk);
+    }
+
+    /**
+     * Provides the recursive action which splits ranges into halves.
+     */
+    private static final class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final RangeTask task;
+
+        RangeAction(int from, int to, int grain, RangeTask task) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.grain) {
+                this.task.run(this.from, this.to);
+            }
+            else {
+                final int middle = (this.from + this.to) >>> 1;
+                RecursiveAction.invokeAll(
+                    new RangeAction(this.from, middle, this.grain, this.task),
+                    new RangeAction(middle, this.to, this.grain, this.task));
+            }
+        }
+    }
+}
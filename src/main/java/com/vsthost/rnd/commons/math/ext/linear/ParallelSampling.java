@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>, Tolga Sezer <tolgasbox@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Provides a parallel, seed-reproducible Monte Carlo driver for {@link VectorSampler}s
+ * such as {@link ZmbdSampler} and {@link TtbdSampler}.
+ *
+ * <p>
+ *
+ * Samples are split into consecutive streams of {@link #STREAM_LENGTH} samples each. Every
+ * stream uses its own random number generator seeded from the master seed and the stream index
+ * (see {@link #randomGenerator(long, long)}), and streams are distributed over a fork/join pool.
+ * Since the partitioning does not depend on the pool, the output is bit-identical for a given
+ * master seed regardless of the number of threads.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class ParallelSampling {
+    /**
+     * Defines the number of samples drawn from a single random stream.
+     */
+    public static final int STREAM_LENGTH = 1024;
+
+    /**
+     * Returns the random number generator of the given stream for the given master seed.
+     *
+     * <p>
+     *
+     * The seed of the stream is derived by the SplitMix64 finalizer, so that nearby master
+     * seeds and stream indices yield unrelated generator states. This can be used to reproduce
+     * a single stream of a parallel run sequentially.
+     *
+     * @param seed The master seed.
+     * @param stream The index of the stream.
+     * @return A new random number generator.
+     */
+    public static RandomGenerator randomGenerator(long seed, long stream) {
+        return new MersenneTwister(ParallelSampling.mix(seed + (stream + 1) * 0x9E3779B97F4A7C15L));
+    }
+
+    /**
+     * Draws {@code count} samples from the sampler in parallel.
+     *
+     * @param sampler The sampler to be used.
+     * @param count The number of samples.
+     * @param seed The master seed.
+     * @return A matrix of samples, one sample per row.
+     */
+    public static double[][] sample(VectorSampler sampler, int count, long seed) {
+        final double[][] retval = new double[count][sampler.getDimension()];
+        ParallelSampling.sample(sampler, seed, retval, ForkJoinPool.commonPool());
+        return retval;
+    }
+
+    /**
+     * Draws one sample per row of the destination matrix in parallel using the provided pool.
+     *
+     * @param sampler The sampler to be used.
+     * @param seed The master seed.
+     * @param destination The matrix to be populated, rows must be of sampler's dimension.
+     * @param pool The fork/join pool to run the streams on.
+     */
+    public static void sample(VectorSampler sampler, long seed, double[][] destination, ForkJoinPool pool) {
+        // Check row dimensions:
+        for (double[] row : destination) {
+            if (row.length != sampler.getDimension()) {
+                throw new IllegalArgumentException("Destination rows must be of the same length as bounds.");
+            }
+        }
+
+        // Run streams:
+        Parallel.forRange(pool, 0, Parallel.chunks(destination.length, STREAM_LENGTH), 1, (from, to) -> {
+            // Get a thread-confined sampler:
+            final VectorSampler local = sampler.copy();
+
+            // Iterate over streams and draw:
+            for (int stream = from; stream < to; stream++) {
+                final RandomGenerator randomGenerator = ParallelSampling.randomGenerator(seed, stream);
+                final int end = (int) Math.min((long) (stream + 1) * STREAM_LENGTH, destination.length);
+                for (int row = stream * STREAM_LENGTH; row < end; row++) {
+                    local.sample(randomGenerator, destination[row], 0, 1);
+                }
+            }
+        });
+    }
+
+    /**
+     * Draws {@code count} consecutive samples into the flat destination array in parallel using the provided pool.
+     *
+     * @param sampler The sampler to be used.
+     * @param seed The master seed.
+     * @param destination The array to be populated.
+     * @param offset The index of the destination array to start with.
+     * @param count The number of samples.
+     * @param pool The fork/join pool to run the streams on.
+     */
+    public static void sample(VectorSampler sampler, long seed, double[] destination, int offset, int count, ForkJoinPool pool) {
+        // Get the dimension:
+        final int dimension = sampler.getDimension();
+
+        // Check the destination capacity:
+        if (offset < 0 || count < 0 || offset + (long) count * dimension > destination.length) {
+            throw new IllegalArgumentException("Destination is too small for the requested number of samples.");
+        }
+
+        // Run streams:
+        Parallel.forRange(pool, 0, Parallel.chunks(count, STREAM_LENGTH), 1, (from, to) -> {
+            // Get a thread-confined sampler:
+            final VectorSampler local = sampler.copy();
+
+            // Iterate over streams and draw:
+            for (int stream = from; stream < to; stream++) {
+                final int start = stream * STREAM_LENGTH;
+                final int length = Math.min(STREAM_LENGTH, count - start);
+                local.sample(ParallelSampling.randomGenerator(seed, stream), destination, offset + start * dimension, length);
+            }
+        });
+    }
+
+    /**
+     * Draws {@code count} zero-mean (or target-mean) bounded distribution samples in parallel.
+     *
+     * @param lower Lower distances.
+     * @param upper Upper distances.
+     * @param targetMean The target mean.
+     * @param count The number of samples.
+     * @param seed The master seed.
+     * @return A matrix of samples, one sample per row.
+     */
+    public static double[][] zmbd(double[] lower, double[] upper, double targetMean, int count, long seed) {
+        return ParallelSampling.sample(new ZmbdSampler(lower, upper, targetMean), count, seed);
+    }
+
+    /**
+     * Draws {@code count} target-total bounded distribution samples in parallel.
+     *
+     * @param target The target total value.
+     * @param lower Lower limits.
+     * @param upper Upper limits.
+     * @param count The number of samples.
+     * @param seed The master seed.
+     * @return A matrix of samples, one sample per row.
+     */
+    public static double[][] ttbd(double target, double[] lower, double[] upper, int count, long seed) {
+        return ParallelSampling.sample(new TtbdSampler(target, lower, upper), count, seed);
+    }
+
+    /**
+     * Applies the SplitMix64 finalizer to the given value.
+     *
+     * @param z The value to be mixed.
+     * @return The mixed value.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
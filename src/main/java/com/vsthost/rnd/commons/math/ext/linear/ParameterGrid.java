@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Provides lazy grids of parameter points which compute their entries on demand.
+ *
+ * <p>
+ *
+ * A range grid has a fixed number of rows and each column runs from its lower to its upper value
+ * in equal steps, exactly as {@link DMatrixUtils#matrixFromRange(double[], double[], int)}.
+ * A cartesian grid has a row for each combination of the values of its axes, in lexicographic
+ * order (ie. the last column varies fastest), and rows are decoded from their indices as in a
+ * mixed radix number system. Grids of up to {@link Long#MAX_VALUE} rows are supported as long as
+ * they are not materialized.
+ *
+ * <p>
+ *
+ * Points can be iterated by (parallel) streams. Spliterators split index ranges in halves down
+ * to chunks of {@value #MIN_CHUNK} rows and traverse chunks by stepping from point to point
+ * rather than decoding each row index.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public final class ParameterGrid {
+    /**
+     * Defines the minimum number of rows of a chunk below which spliterators do not split any further.
+     */
+    static final int MIN_CHUNK = 1024;
+
+    /**
+     * The lower values of columns (range grids only).
+     */
+    private final double[] lower;
+
+    /**
+     * The steps of columns (range grids only).
+     */
+    private final double[] steps;
+
+    /**
+     * The values of axes (cartesian grids only).
+     */
+    private final double[][] axes;
+
+    /**
+     * The number of rows consumed by a unit step in the respective column (cartesian grids only).
+     */
+    private final long[] strides;
+
+    /**
+     * The number of rows.
+     */
+    private final long rows;
+
+    /**
+     * Creates a grid.
+     *
+     * @param lower The lower values of columns (range grids only).
+     * @param steps The steps of columns (range grids only).
+     * @param axes The values of axes (cartesian grids only).
+     * @param strides The strides of columns (cartesian grids only).
+     * @param rows The number of rows.
+     */
+    private ParameterGrid(double[] lower, double[] steps, double[][] axes, long[] strides, long rows) {
+        this.lower = lower;
+        this.steps = steps;
+        this.axes = axes;
+        this.strides = strides;
+        this.rows = rows;
+    }
+
+    /**
+     * Creates a range grid with the given number of rows. See {@link DMatrixUtils#matrixFromRange(double[], double[], int)}.
+     *
+     * @param lower The lower values of columns (the first row).
+     * @param upper The upper values of columns (the last row).
+     * @param rows The number of rows.
+     * @return A new grid.
+     */
+    public static ParameterGrid range(double[] lower, double[] upper, int rows) {
+        // Check arguments:
+        if (lower.length != upper.length) {
+            throw new IllegalArgumentException("Lower and upper values must be of the same length.");
+        }
+        else if (rows < 0) {
+            throw new IllegalArgumentException("Number of rows can not be negative.");
+        }
+
+        // Compute steps as per the sequence:
+        final double[] steps = new double[lower.length];
+        for (int col = 0; col < steps.length; col++) {
+            steps[col] = (upper[col] - lower[col]) / (rows == 1 ? 1 : rows - 1);
+        }
+
+        // Create and return:
+        return new ParameterGrid(lower.clone(), steps, null, null, rows);
+    }
+
+    /**
+     * Creates a cartesian grid of the given axes.
+     *
+     * @param axes The values of axes, one array per column.
+     * @return A new grid.
+     */
+    public static ParameterGrid cartesian(double[]... axes) {
+        // Copy axes and compute strides from the last column to the first:
+        final double[][] copies = new double[axes.length][];
+        final long[] strides = new long[axes.length];
+        long rows = 1;
+        for (int col = axes.length - 1; col >= 0; col--) {
+            copies[col] = axes[col].clone();
+            strides[col] = rows;
+            try {
+                rows = Math.multiplyExact(rows, copies[col].length);
+            }
+            catch (ArithmeticException exception) {
+                throw new IllegalArgumentException("Number of rows of the grid exceeds the maximum.");
+            }
+        }
+
+        // Create and return:
+        return new ParameterGrid(null, null, copies, strides, rows);
+    }
+
+    /**
+     * Creates a cartesian grid of sequences from lower to upper values of the given lengths per column.
+     *
+     * @param lower The lower values of columns.
+     * @param upper The upper values of columns.
+     * @param lengths The lengths of the sequences of columns.
+     * @return A new grid.
+     */
+    public static ParameterGrid cartesian(double[] lower, double[] upper, int[] lengths) {
+        // Check arguments:
+        if (lower.length != upper.length || lower.length != lengths.length) {
+            throw new IllegalArgumentException("Lower values, upper values and lengths must be of the same length.");
+        }
+
+        // Create axes and return:
+        final double[][] axes = new double[lengths.length][];
+        for (int col = 0; col < axes.length; col++) {
+            axes[col] = DMatrixUtils.sequence(lower[col], upper[col], lengths[col]);
+        }
+        return ParameterGrid.cartesian(axes);
+    }
+
+    /**
+     * Returns the number of rows, ie. points.
+     *
+     * @return The number of rows.
+     */
+    public long getRowDimension() {
+        return this.rows;
+    }
+
+    /**
+     * Returns the number of columns, ie. the dimension of points.
+     *
+     * @return The number of columns.
+     */
+    public int getColumnDimension() {
+        return this.axes == null ? this.lower.length : this.axes.length;
+    }
+
+    /**
+     * Returns the entry at the given row and column.
+     *
+     * @param row The index of the row.
+     * @param col The index of the column.
+     * @return The entry.
+     */
+    public double getEntry(long row, int col) {
+        // Check the row:
+        this.checkRow(row);
+
+        // Compute and return:
+        if (this.axes == null) {
+            return this.lower[col] + (row * this.steps[col]);
+        }
+        return this.axes[col][(int) ((row / this.strides[col]) % this.axes[col].length)];
+    }
+
+    /**
+     * Returns the point at the given row as a new array.
+     *
+     * @param row The index of the row.
+     * @return The point.
+     */
+    public double[] getPoint(long row) {
+        return this.getPoint(row, new double[this.getColumnDimension()]);
+    }
+
+    /**
+     * Populates the destination with the point at the given row.
+     *
+     * @param row The index of the row.
+     * @param destination The destination array of at least the number of columns.
+     * @return The destination array.
+     */
+    public double[] getPoint(long row, double[] destination) {
+        // Check the row:
+        this.checkRow(row);
+
+        // Compute range grid points directly:
+        if (this.axes == null) {
+            for (int col = 0; col < this.lower.length; col++) {
+                destination[col] = this.lower[col] + (row * this.steps[col]);
+            }
+            return destination;
+        }
+
+        // Decode cartesian grid points from the last column to the first:
+        long rest = row;
+        for (int col = this.axes.length - 1; col >= 0; col--) {
+            final int length = this.axes[col].length;
+            destination[col] = this.axes[col][(int) (rest % length)];
+            rest /= length;
+        }
+
+        // Done, return:
+        return destination;
+    }
+
+    /**
+     * Materializes the grid into a new matrix, filled row by row.
+     *
+     * @return A new matrix.
+     */
+    public double[][] toArray() {
+        // Check the size:
+        if (this.rows > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Grid is too large to be materialized.");
+        }
+
+        // Fill row by row:
+        final double[][] matrix = new double[(int) this.rows][];
+        final Spliterator<double[]> spliterator = this.spliterator();
+        for (int row = 0; row < matrix.length; row++) {
+            final int index = row;
+            spliterator.tryAdvance(point -> matrix[index] = point);
+        }
+
+        // Done, return:
+        return matrix;
+    }
+
+    /**
+     * Returns a spliterator over points as new arrays.
+     *
+     * @return A spliterator over points.
+     */
+    public Spliterator<double[]> spliterator() {
+        return new PointSpliterator(0, this.rows);
+    }
+
+    /**
+     * Returns a sequential stream of points as new arrays.
+     *
+     * <p>
+     *
+     * Use {@code LongStream.range(0, grid.getRowDimension()).mapToObj(grid::getPoint)} if row indices are required.
+     *
+     * @return A stream of points.
+     */
+    public Stream<double[]> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream of points as new arrays.
+     *
+     * @return A stream of points.
+     */
+    public Stream<double[]> parallelStream() {
+        return StreamSupport.stream(this.spliterator(), true);
+    }
+
+    /**
+     * Checks if the row is within the bounds of the grid.
+     *
+     * @param row The index of the row.
+     */
+    private void checkRow(long row) {
+        if (row < 0 || row >= this.rows) {
+            throw new IndexOutOfBoundsException("Row index " + row + " is out of the bounds of the grid.");
+        }
+    }
+
+    /**
+     * Provides the spliterator over a range of rows.
+     */
+    private final class PointSpliterator implements Spliterator<double[]> {
+        private long from;
+        private final long to;
+
+        /**
+         * The digits of the current row (cartesian grids only, decoded lazily).
+         */
+        private int[] digits;
+
+        PointSpliterator(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super double[]> action) {
+            if (this.from >= this.to) {
+                return false;
+            }
+            action.accept(this.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super double[]> action) {
+            while (this.from < this.to) {
+                action.accept(this.next());
+            }
+        }
+
+        @Override
+        public Spliterator<double[]> trySplit() {
+            // Do not split small ranges or ranges already being traversed:
+            if (this.to - this.from < 2 * MIN_CHUNK || this.digits != null) {
+                return null;
+            }
+
+            // Split in halves and return the prefix:
+            final long middle = this.from + (this.to - this.from) / 2;
+            final PointSpliterator prefix = new PointSpliterator(this.from, middle);
+            this.from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.to - this.from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+
+        /**
+         * Returns the current point and advances.
+         *
+         * @return The current point.
+         */
+        private double[] next() {
+            // Range grids are computed directly:
+            final long row = this.from++;
+            if (ParameterGrid.this.axes == null) {
+                return ParameterGrid.this.getPoint(row);
+            }
+
+            // Decode the first row of cartesian grids, step digits afterwards:
+            final double[][] axes = ParameterGrid.this.axes;
+            if (this.digits == null) {
+                this.digits = new int[axes.length];
+                long rest = row;
+                for (int col = axes.length - 1; col >= 0; col--) {
+                    this.digits[col] = (int) (rest % axes[col].length);
+                    rest /= axes[col].length;
+                }
+            }
+            else {
+                for (int col = axes.length - 1; col >= 0 && ++this.digits[col] == axes[col].length; col--) {
+                    this.digits[col] = 0;
+                }
+            }
+
+            // Get values:
+            final double[] values = new double[axes.length];
+            for (int col = 0; col < axes.length; col++) {
+                values[col] = axes[col][this.digits[col]];
+            }
+
+            // Done, return:
+            return values;
+        }
+    }
+}
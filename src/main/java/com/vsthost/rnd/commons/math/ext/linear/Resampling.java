@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Provides resampling of rows of matrices, ie. bootstrap samples, k-fold splits and (stratified)
+ * subsamples, as {@link RowIndexedRealMatrix} views over the source matrix.
+ *
+ * <p>
+ *
+ * No entries are copied: a resample costs a single row index, ie. 4 bytes per row, regardless of
+ * the number of columns. The parallel bootstrap draws each replicate from its own random stream
+ * (see {@link ParallelSampling#randomGenerator(long, long)}), so that the result is bit-identical
+ * for a given master seed regardless of the number of threads, and a single replicate can be
+ * reproduced sequentially.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class Resampling {
+    /**
+     * Provides a split of rows into training and test views.
+     */
+    public static class Split {
+        /**
+         * The training view.
+         */
+        private final RowIndexedRealMatrix training;
+
+        /**
+         * The test view.
+         */
+        private final RowIndexedRealMatrix test;
+
+        /**
+         * Creates a split.
+         *
+         * @param training The training view.
+         * @param test The test view.
+         */
+        Split(RowIndexedRealMatrix training, RowIndexedRealMatrix test) {
+            this.training = training;
+            this.test = test;
+        }
+
+        /**
+         * Returns the training view.
+         *
+         * @return The training view.
+         */
+        public RowIndexedRealMatrix getTraining() {
+            return this.training;
+        }
+
+        /**
+         * Returns the test view.
+         *
+         * @return The test view.
+         */
+        public RowIndexedRealMatrix getTest() {
+            return this.test;
+        }
+    }
+
+    /**
+     * Returns a bootstrap sample, ie. as many rows as the matrix drawn with replacement.
+     *
+     * @param matrix The matrix to be resampled.
+     * @param randomGenerator The random number generator to be used.
+     * @return A view of the bootstrap sample.
+     */
+    public static RowIndexedRealMatrix bootstrap(RealMatrix matrix, RandomGenerator randomGenerator) {
+        // Draw rows with replacement:
+        final int[] index = new int[matrix.getRowDimension()];
+        for (int row = 0; row < index.length; row++) {
+            index[row] = randomGenerator.nextInt(index.length);
+        }
+
+        // Done, return:
+        return new RowIndexedRealMatrix(matrix, index);
+    }
+
+    /**
+     * Computes the statistic of {@code replicates} bootstrap samples in parallel.
+     *
+     * @param matrix The matrix to be resampled.
+     * @param replicates The number of bootstrap samples.
+     * @param statistic The statistic to be computed, which must be safe to call concurrently.
+     * @param seed The master seed.
+     * @return The statistics, one per replicate.
+     */
+    public static double[][] bootstrap(RealMatrix matrix, int replicates, Function<? super RealMatrix, double[]> statistic, long seed) {
+        return Resampling.bootstrap(matrix, replicates, statistic, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the statistic of {@code replicates} bootstrap samples in parallel using the provided pool.
+     *
+     * <p>
+     *
+     * Replicate {@code b} is drawn by {@link #bootstrap(RealMatrix, RandomGenerator)} using
+     * {@link ParallelSampling#randomGenerator(long, long)} of the master seed and stream {@code b}.
+     * Only the row index of the replicates being computed is held at a time.
+     *
+     * @param matrix The matrix to be resampled.
+     * @param replicates The number of bootstrap samples.
+     * @param statistic The statistic to be computed, which must be safe to call concurrently.
+     * @param seed The master seed.
+     * @param pool The fork/join pool to run the replicates on.
+     * @return The statistics, one per replicate.
+     */
+    public static double[][] bootstrap(RealMatrix matrix, int replicates, Function<? super RealMatrix, double[]> statistic, long seed, ForkJoinPool pool) {
+        // Check arguments:
+        if (replicates < 0) {
+            throw new IllegalArgumentException("Number of replicates can not be negative.");
+        }
+
+        // Compute replicates in parallel:
+        final double[][] retval = new double[replicates][];
+        Parallel.forRange(pool, 0, replicates, 1, (from, to) -> {
+            for (int replicate = from; replicate < to; replicate++) {
+                retval[replicate] = statistic.apply(Resampling.bootstrap(matrix, ParallelSampling.randomGenerator(seed, replicate)));
+            }
+        });
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Splits shuffled rows into {@code k} folds of nearly equal size. Split {@code i} has fold
+     * {@code i} as the test view and all other folds as the training view.
+     *
+     * @param matrix The matrix to be split.
+     * @param k The number of folds.
+     * @param randomGenerator The random number generator to be used.
+     * @return The splits, one per fold.
+     */
+    public static Split[] kFold(RealMatrix matrix, int k, RandomGenerator randomGenerator) {
+        // Check arguments:
+        final int rows = matrix.getRowDimension();
+        if (k < 2 || k > rows) {
+            throw new IllegalArgumentException("Number of folds must be at least 2 and at most the number of rows.");
+        }
+
+        // Shuffle rows:
+        final int[] shuffled = DMatrixUtils.shuffleIndices(rows, randomGenerator);
+
+        // Split into folds, fold i being the shuffled rows [i * rows / k, (i + 1) * rows / k):
+        final Split[] retval = new Split[k];
+        for (int fold = 0; fold < k; fold++) {
+            // Get the fold bounds:
+            final int from = (int) ((long) fold * rows / k);
+            final int to = (int) ((long) (fold + 1) * rows / k);
+
+            // Get test and training rows:
+            final int[] test = new int[to - from];
+            final int[] training = new int[rows - test.length];
+            System.arraycopy(shuffled, from, test, 0, test.length);
+            System.arraycopy(shuffled, 0, training, 0, from);
+            System.arraycopy(shuffled, to, training, from, rows - to);
+
+            // Create views:
+            retval[fold] = new Split(new RowIndexedRealMatrix(matrix, training), new RowIndexedRealMatrix(matrix, test));
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Returns a subsample of {@code size} distinct rows drawn without replacement.
+     *
+     * @param matrix The matrix to be resampled.
+     * @param size The number of rows to be drawn.
+     * @param randomGenerator The random number generator to be used.
+     * @return A view of the subsample.
+     */
+    public static RowIndexedRealMatrix subsample(RealMatrix matrix, int size, RandomGenerator randomGenerator) {
+        // Check arguments:
+        if (size <= 0 || size > matrix.getRowDimension()) {
+            throw new IllegalArgumentException("Subsample size must be positive and at most the number of rows.");
+        }
+
+        // Draw the first rows of a partial shuffle:
+        final int[] index = new int[matrix.getRowDimension()];
+        for (int row = 0; row < index.length; row++) {
+            index[row] = row;
+        }
+        Resampling.partialShuffle(index, 0, index.length, size, randomGenerator);
+
+        // Done, return:
+        return new RowIndexedRealMatrix(matrix, Arrays.copyOf(index, size));
+    }
+
+    /**
+     * Returns a stratified subsample, ie. the given fraction of rows of each stratum drawn without
+     * replacement, but at least one row per stratum.
+     *
+     * <p>
+     *
+     * Rows of the subsample are grouped by strata in ascending order of stratum labels.
+     *
+     * @param matrix The matrix to be resampled.
+     * @param strata The stratum labels of rows.
+     * @param fraction The fraction of rows to be drawn from each stratum, in {@code (0, 1]}.
+     * @param randomGenerator The random number generator to be used.
+     * @return A view of the subsample.
+     */
+    public static RowIndexedRealMatrix stratifiedSubsample(RealMatrix matrix, int[] strata, double fraction, RandomGenerator randomGenerator) {
+        // Check arguments:
+        final int rows = matrix.getRowDimension();
+        if (strata.length != rows) {
+            throw new DimensionMismatchException(strata.length, rows);
+        }
+        else if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("Fraction must be in (0, 1].");
+        }
+
+        // Group rows by strata (stable, ie. rows are ascending within strata):
+        final int[] identity = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            identity[row] = row;
+        }
+        final int[] order = ArgSort.order(strata, identity, false);
+
+        // Draw from each stratum and move the drawn rows to the front:
+        int size = 0;
+        for (int start = 0, end; start < rows; start = end) {
+            // Find the end of the stratum:
+            end = start + 1;
+            while (end < rows && strata[order[end]] == strata[order[start]]) {
+                end++;
+            }
+
+            // Draw and move:
+            final int count = (int) Math.min(end - start, Math.max(1, Math.round(fraction * (end - start))));
+            Resampling.partialShuffle(order, start, end, count, randomGenerator);
+            System.arraycopy(order, start, order, size, count);
+            size += count;
+        }
+
+        // Done, return:
+        return new RowIndexedRealMatrix(matrix, Arrays.copyOf(order, size));
+    }
+
+    /**
+     * Shuffles the given number of elements into the front of the given range of the array (Fisher-Yates).
+     *
+     * @param array The array.
+     * @param from The index to start with (inclusive).
+     * @param to The index to end with (exclusive).
+     * @param count The number of elements to be drawn.
+     * @param randomGenerator The random number generator to be used.
+     */
+    private static void partialShuffle(int[] array, int from, int to, int count, RandomGenerator randomGenerator) {
+        for (int i = from; i < from + count; i++) {
+            final int target = i + randomGenerator.nextInt(to - i);
+            final int temp = array[target];
+            array[target] = array[i];
+            array[i] = temp;
+        }
+    }
+}
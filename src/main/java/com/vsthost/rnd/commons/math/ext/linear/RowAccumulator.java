@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+
+/**
+ * Provides a streaming accumulator of rows which keeps running sums, means, variances, mins and
+ * maxs of columns without storing rows.
+ *
+ * <p>
+ *
+ * Rows are added one at a time or in batches. Means and variances are updated with Welford's
+ * method and sums are compensated (Neumaier), so that long streams do not lose precision.
+ * Accumulators of disjoint partitions of rows (eg. built on different threads or shards) are
+ * combined with {@link #merge(RowAccumulator)}: counts, mins and maxs merge exactly, sums merge
+ * with compensation and variances merge with Chan's formulas. See {@link #collector(int)} for
+ * (parallel) streams of rows.
+ *
+ * <p>
+ *
+ * Variances are bias-corrected as in {@link org.apache.commons.math3.stat.descriptive.DescriptiveStatistics}:
+ * they are {@code NaN} with less than two rows.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class RowAccumulator implements Consumer<double[]> {
+    /**
+     * The number of rows added.
+     */
+    private long n;
+
+    /**
+     * The running sums of columns.
+     */
+    private final double[] sums;
+
+    /**
+     * The running compensations of the sums of columns.
+     */
+    private final double[] compensations;
+
+    /**
+     * The running means of columns.
+     */
+    private final double[] means;
+
+    /**
+     * The running sums of squared deviations from the means of columns.
+     */
+    private final double[] m2s;
+
+    /**
+     * The running mins of columns.
+     */
+    private final double[] mins;
+
+    /**
+     * The running maxs of columns.
+     */
+    private final double[] maxs;
+
+    /**
+     * Creates an empty accumulator for the given number of columns.
+     *
+     * @param columns The number of columns.
+     */
+    public RowAccumulator(int columns) {
+        this.sums = new double[columns];
+        this.compensations = new double[columns];
+        this.means = new double[columns];
+        this.m2s = new double[columns];
+        this.mins = DMatrixUtils.repeat(Double.POSITIVE_INFINITY, columns);
+        this.maxs = DMatrixUtils.repeat(Double.NEGATIVE_INFINITY, columns);
+    }
+
+    /**
+     * Returns a collector of rows into an accumulator, eg. {@code rows.parallel().collect(RowAccumulator.collector(columns))}.
+     *
+     * @param columns The number of columns.
+     * @return A collector of rows.
+     */
+    public static Collector<double[], ?, RowAccumulator> collector(int columns) {
+        return Collector.of(() -> new RowAccumulator(columns), RowAccumulator::add, (left, right) -> {
+            left.merge(right);
+            return left;
+        });
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param row The row of the length of the number of columns.
+     */
+    public void add(double[] row) {
+        // Check the row:
+        if (row.length != this.means.length) {
+            throw new DimensionMismatchException(row.length, this.means.length);
+        }
+
+        // Update columns:
+        final long count = ++this.n;
+        for (int col = 0; col < row.length; col++) {
+            final double value = row[col];
+            RowAccumulator.addCompensated(this.sums, this.compensations, col, value);
+            final double delta = value - this.means[col];
+            this.means[col] += delta / count;
+            this.m2s[col] += delta * (value - this.means[col]);
+            this.mins[col] = Math.min(this.mins[col], value);
+            this.maxs[col] = Math.max(this.maxs[col], value);
+        }
+    }
+
+    /**
+     * Adds a batch of rows.
+     *
+     * @param rows The rows of the length of the number of columns.
+     */
+    public void add(double[][] rows) {
+        for (double[] row : rows) {
+            this.add(row);
+        }
+    }
+
+    /**
+     * Adds a row. This is the same as {@link #add(double[])}.
+     *
+     * @param row The row of the length of the number of columns.
+     */
+    @Override
+    public void accept(double[] row) {
+        this.add(row);
+    }
+
+    /**
+     * Merges the accumulator of another disjoint set of rows into this accumulator.
+     *
+     * @param other The accumulator to be merged.
+     */
+    public void merge(RowAccumulator other) {
+        // Check dimensions:
+        if (other.means.length != this.means.length) {
+            throw new DimensionMismatchException(other.means.length, this.means.length);
+        }
+
+        // Nothing to merge if the other is empty, copy the other if this is empty:
+        if (other.n == 0) {
+            return;
+        }
+        else if (this.n == 0) {
+            this.n = other.n;
+            System.arraycopy(other.sums, 0, this.sums, 0, this.sums.length);
+            System.arraycopy(other.compensations, 0, this.compensations, 0, this.compensations.length);
+            System.arraycopy(other.means, 0, this.means, 0, this.means.length);
+            System.arraycopy(other.m2s, 0, this.m2s, 0, this.m2s.length);
+            System.arraycopy(other.mins, 0, this.mins, 0, this.mins.length);
+            System.arraycopy(other.maxs, 0, this.maxs, 0, this.maxs.length);
+            return;
+        }
+
+        // Merge columns, means and variances by Chan's formulas:
+        final double n1 = this.n;
+        final double n2 = other.n;
+        final double count = n1 + n2;
+        for (int col = 0; col < this.means.length; col++) {
+            RowAccumulator.addCompensated(this.sums, this.compensations, col, other.sums[col]);
+            this.compensations[col] += other.compensations[col];
+            final double delta = other.means[col] - this.means[col];
+            this.means[col] += delta * (n2 / count);
+            this.m2s[col] += other.m2s[col] + delta * delta * (n1 * n2 / count);
+            this.mins[col] = Math.min(this.mins[col], other.mins[col]);
+            this.maxs[col] = Math.max(this.maxs[col], other.maxs[col]);
+        }
+        this.n += other.n;
+    }
+
+    /**
+     * Returns the number of rows added.
+     *
+     * @return The number of rows.
+     */
+    public long getN() {
+        return this.n;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return The number of columns.
+     */
+    public int getColumnDimension() {
+        return this.means.length;
+    }
+
+    /**
+     * Returns the sums of columns.
+     *
+     * @return A new array of sums.
+     */
+    public double[] getSums() {
+        final double[] retval = new double[this.sums.length];
+        for (int col = 0; col < retval.length; col++) {
+            retval[col] = Double.isInfinite(this.sums[col]) ? this.sums[col] : this.sums[col] + this.compensations[col];
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the means of columns ({@code NaN} without rows).
+     *
+     * @return A new array of means.
+     */
+    public double[] getMeans() {
+        return this.n == 0 ? DMatrixUtils.repeat(Double.NaN, this.means.length) : this.means.clone();
+    }
+
+    /**
+     * Returns the bias-corrected variances of columns ({@code NaN} with less than two rows).
+     *
+     * @return A new array of variances.
+     */
+    public double[] getVariances() {
+        final double[] retval = new double[this.means.length];
+        for (int col = 0; col < retval.length; col++) {
+            retval[col] = this.n < 2 ? Double.NaN : this.m2s[col] / (this.n - 1);
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the bias-corrected standard deviations of columns ({@code NaN} with less than two rows).
+     *
+     * @return A new array of standard deviations.
+     */
+    public double[] getStandardDeviations() {
+        final double[] retval = this.getVariances();
+        for (int col = 0; col < retval.length; col++) {
+            retval[col] = Math.sqrt(retval[col]);
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the mins of columns ({@code NaN} without rows).
+     *
+     * @return A new array of mins.
+     */
+    public double[] getMins() {
+        return this.n == 0 ? DMatrixUtils.repeat(Double.NaN, this.mins.length) : this.mins.clone();
+    }
+
+    /**
+     * Returns the maxs of columns ({@code NaN} without rows).
+     *
+     * @return A new array of maxs.
+     */
+    public double[] getMaxs() {
+        return this.n == 0 ? DMatrixUtils.repeat(Double.NaN, this.maxs.length) : this.maxs.clone();
+    }
+
+    /**
+     * Adds the value to the running sum at the given index with Neumaier's compensation.
+     *
+     * @param sums The running sums.
+     * @param compensations The running compensations.
+     * @param index The index of the running sum.
+     * @param value The value to be added.
+     */
+    private static void addCompensated(double[] sums, double[] compensations, int index, double value) {
+        final double total = sums[index];
+        final double sum = total + value;
+        compensations[index] += Math.abs(total) >= Math.abs(value) ? (total - sum) + value : (value - sum) + total;
+        sums[index] = sum;
+    }
+}
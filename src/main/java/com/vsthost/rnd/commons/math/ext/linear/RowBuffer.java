@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NoDataException;
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Provides a growable buffer of rows to build matrices by appending rows, batches of rows and
+ * matrices, as a replacement of repeated {@link EMatrixUtils#rbind(RealMatrix, RealMatrix)} calls.
+ *
+ * <p>
+ *
+ * Rows are stored in a single row-major array of which the capacity grows by half of its size
+ * (but at least by {@value #MIN_CAPACITY} rows), so that appending {@code n} rows costs amortized
+ * O(n) copying. {@link #toMatrix()} returns a {@link FlatRealMatrix} view of the rows appended so
+ * far without copying. The view shares data with the buffer until the buffer grows; rows appended
+ * afterwards are not visible through the view.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class RowBuffer {
+    /**
+     * Defines the minimum number of rows the capacity grows by.
+     */
+    static final int MIN_CAPACITY = 16;
+
+    /**
+     * The number of columns.
+     */
+    private final int columns;
+
+    /**
+     * The row-major data of which the length is the capacity times the number of columns.
+     */
+    private double[] data;
+
+    /**
+     * The number of rows appended.
+     */
+    private int rows;
+
+    /**
+     * Creates an empty buffer for the given number of columns.
+     *
+     * @param columns The number of columns.
+     */
+    public RowBuffer(int columns) {
+        this(columns, MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty buffer for the given number of columns and initial capacity.
+     *
+     * @param columns The number of columns.
+     * @param capacity The initial number of rows to be reserved.
+     */
+    public RowBuffer(int columns, int capacity) {
+        if (columns <= 0) {
+            throw new NotStrictlyPositiveException(columns);
+        }
+        else if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity can not be negative.");
+        }
+        this.columns = columns;
+        this.data = new double[Math.multiplyExact(columns, capacity)];
+    }
+
+    /**
+     * Returns the number of rows appended.
+     *
+     * @return The number of rows.
+     */
+    public int getRowDimension() {
+        return this.rows;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return The number of columns.
+     */
+    public int getColumnDimension() {
+        return this.columns;
+    }
+
+    /**
+     * Returns the number of rows which can be appended without growing.
+     *
+     * @return The capacity in rows.
+     */
+    public int getCapacity() {
+        return this.data.length / this.columns;
+    }
+
+    /**
+     * Appends a row.
+     *
+     * @param row The row of the length of the number of columns.
+     * @return This buffer.
+     */
+    public RowBuffer add(double[] row) {
+        this.checkColumns(row.length);
+        this.ensureCapacity(this.rows + 1);
+        System.arraycopy(row, 0, this.data, this.rows++ * this.columns, this.columns);
+        return this;
+    }
+
+    /**
+     * Appends a batch of rows.
+     *
+     * @param rows The rows of the length of the number of columns.
+     * @return This buffer.
+     */
+    public RowBuffer add(double[][] rows) {
+        // Check all rows first, so that the buffer is not modified on failure:
+        for (double[] row : rows) {
+            this.checkColumns(row.length);
+        }
+
+        // Reserve and copy:
+        this.ensureCapacity(this.rows + rows.length);
+        for (double[] row : rows) {
+            System.arraycopy(row, 0, this.data, this.rows++ * this.columns, this.columns);
+        }
+
+        // Done, return:
+        return this;
+    }
+
+    /**
+     * Appends the rows of a matrix.
+     *
+     * @param matrix The matrix of the same number of columns.
+     * @return This buffer.
+     */
+    public RowBuffer add(RealMatrix matrix) {
+        // Check and reserve:
+        this.checkColumns(matrix.getColumnDimension());
+        final int count = matrix.getRowDimension();
+        this.ensureCapacity(this.rows + count);
+
+        // Copy contiguous flat matrices at once:
+        if (matrix instanceof FlatRealMatrix && ((FlatRealMatrix) matrix).isRowMajor()) {
+            final FlatRealMatrix flat = (FlatRealMatrix) matrix;
+            System.arraycopy(flat.getDataRef(), flat.getOffset(), this.data, this.rows * this.columns, count * this.columns);
+            this.rows += count;
+        }
+        // Copy rows of arrays:
+        else if (matrix instanceof Array2DRowRealMatrix) {
+            this.add(((Array2DRowRealMatrix) matrix).getDataRef());
+        }
+        // Copy rows one by one otherwise:
+        else {
+            for (int row = 0; row < count; row++) {
+                System.arraycopy(matrix.getRow(row), 0, this.data, this.rows++ * this.columns, this.columns);
+            }
+        }
+
+        // Done, return:
+        return this;
+    }
+
+    /**
+     * Removes all rows while keeping the capacity.
+     *
+     * <p>
+     *
+     * Note that rows appended afterwards overwrite the data of views returned before.
+     *
+     * @return This buffer.
+     */
+    public RowBuffer clear() {
+        this.rows = 0;
+        return this;
+    }
+
+    /**
+     * Reduces the capacity to the number of rows appended.
+     *
+     * @return This buffer.
+     */
+    public RowBuffer trimToSize() {
+        if (this.data.length != this.rows * this.columns) {
+            this.data = Arrays.copyOf(this.data, this.rows * this.columns);
+        }
+        return this;
+    }
+
+    /**
+     * Returns a view of the rows appended so far, without copying.
+     *
+     * @return A matrix view of the rows.
+     */
+    public FlatRealMatrix toMatrix() {
+        if (this.rows == 0) {
+            throw new NoDataException();
+        }
+        return new FlatRealMatrix(this.data, 0, this.rows, this.columns, this.columns, 1);
+    }
+
+    /**
+     * Returns the rows appended so far as a new array of rows.
+     *
+     * @return A new array of rows.
+     */
+    public double[][] toArray() {
+        final double[][] retval = new double[this.rows][];
+        for (int row = 0; row < retval.length; row++) {
+            retval[row] = Arrays.copyOfRange(this.data, row * this.columns, (row + 1) * this.columns);
+        }
+        return retval;
+    }
+
+    /**
+     * Checks the number of columns.
+     *
+     * @param length The number of columns to be checked.
+     */
+    private void checkColumns(int length) {
+        if (length != this.columns) {
+            throw new DimensionMismatchException(length, this.columns);
+        }
+    }
+
+    /**
+     * Grows the capacity if required.
+     *
+     * @param capacity The required capacity in rows.
+     */
+    private void ensureCapacity(int capacity) {
+        // Check if there is enough capacity:
+        final int current = this.getCapacity();
+        if (capacity <= current) {
+            return;
+        }
+
+        // Grow by half of the current capacity, but at least by the minimum:
+        final long grown = Math.max((long) capacity, (long) current + Math.max(MIN_CAPACITY, current / 2));
+        final long length = grown * this.columns;
+        if (length > Integer.MAX_VALUE - 8) {
+            if ((long) capacity * this.columns > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Number of entries exceeds the maximum length of arrays.");
+            }
+            this.data = Arrays.copyOf(this.data, (Integer.MAX_VALUE - 8) / this.columns * this.columns);
+            return;
+        }
+        this.data = Arrays.copyOf(this.data, (int) length);
+    }
+}
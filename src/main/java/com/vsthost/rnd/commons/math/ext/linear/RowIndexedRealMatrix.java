@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.exception.NoDataException;
+import org.apache.commons.math3.linear.AbstractRealMatrix;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Provides a lazy view of a matrix of which rows are selected by an index, ie. row {@code i} of
+ * the view is row {@code index[i]} of the underlying matrix.
+ *
+ * <p>
+ *
+ * No data is copied: reads and writes go to the underlying matrix. The index may be a permutation
+ * (eg. shuffled rows) or may repeat or skip rows (eg. bootstrap samples), in which case a write to
+ * a repeated row is visible through all of its occurrences. {@link #copy()} materializes the view.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class RowIndexedRealMatrix extends AbstractRealMatrix {
+    /**
+     * The underlying matrix.
+     */
+    private final RealMatrix matrix;
+
+    /**
+     * The indices of the rows of the underlying matrix.
+     */
+    private final int[] index;
+
+    /**
+     * Creates a view of the matrix with the given row index. The index is used as is, without copying.
+     *
+     * @param matrix The underlying matrix.
+     * @param index The indices of the rows of the underlying matrix.
+     */
+    public RowIndexedRealMatrix(RealMatrix matrix, int[] index) {
+        // Check the index:
+        if (index.length == 0) {
+            throw new NoDataException();
+        }
+        for (int row : index) {
+            MatrixUtils.checkRowIndex(matrix, row);
+        }
+
+        // Save:
+        this.matrix = matrix;
+        this.index = index;
+    }
+
+    /**
+     * Returns the underlying matrix.
+     *
+     * @return The underlying matrix.
+     */
+    public RealMatrix getMatrix() {
+        return this.matrix;
+    }
+
+    /**
+     * Returns the row index.
+     *
+     * @return The row index (not a copy).
+     */
+    public int[] getIndexRef() {
+        return this.index;
+    }
+
+    @Override
+    public int getRowDimension() {
+        return this.index.length;
+    }
+
+    @Override
+    public int getColumnDimension() {
+        return this.matrix.getColumnDimension();
+    }
+
+    @Override
+    public RealMatrix createMatrix(int rowDimension, int columnDimension) {
+        return this.matrix.createMatrix(rowDimension, columnDimension);
+    }
+
+    @Override
+    public RealMatrix copy() {
+        return new Array2DRowRealMatrix(this.getData(), false);
+    }
+
+    @Override
+    public double getEntry(int row, int column) {
+        MatrixUtils.checkRowIndex(this, row);
+        return this.matrix.getEntry(this.index[row], column);
+    }
+
+    @Override
+    public void setEntry(int row, int column, double value) {
+        MatrixUtils.checkRowIndex(this, row);
+        this.matrix.setEntry(this.index[row], column, value);
+    }
+
+    @Override
+    public void addToEntry(int row, int column, double increment) {
+        MatrixUtils.checkRowIndex(this, row);
+        this.matrix.addToEntry(this.index[row], column, increment);
+    }
+
+    @Override
+    public void multiplyEntry(int row, int column, double factor) {
+        MatrixUtils.checkRowIndex(this, row);
+        this.matrix.multiplyEntry(this.index[row], column, factor);
+    }
+
+    @Override
+    public double[] getRow(int row) {
+        MatrixUtils.checkRowIndex(this, row);
+        return this.matrix.getRow(this.index[row]);
+    }
+
+    @Override
+    public void setRow(int row, double[] array) {
+        MatrixUtils.checkRowIndex(this, row);
+        this.matrix.setRow(this.index[row], array);
+    }
+
+    @Override
+    public double[][] getData() {
+        final double[][] retval = new double[this.index.length][];
+        for (int row = 0; row < retval.length; row++) {
+            retval[row] = this.matrix.getRow(this.index[row]);
+        }
+        return retval;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+/**
+ * Provides the portable, scalar implementation of {@link VectorKernels}.
+ */
+final class ScalarVectorKernels implements VectorKernels {
+    @Override
+    public double sum(double[] vector, int offset, int length) {
+        // Declare and initialize the accumulator:
+        double total = 0.0;
+
+        // Iterate over the range:
+        for (int i = offset; i < offset + length; i++) {
+            total += vector[i];
+        }
+
+        // Done, return:
+        return total;
+    }
+
+    @Override
+    public double sumOfAbsolutes(double[] vector, int offset, int length) {
+        // Declare and initialize the accumulator:
+        double total = 0.0;
+
+        // Iterate over the range:
+        for (int i = offset; i < offset + length; i++) {
+            total += Math.abs(vector[i]);
+        }
+
+        // Done, return:
+        return total;
+    }
+
+    @Override
+    public void pairwiseMin(double[] vector1, int offset1, double[] vector2, int offset2, double[] destination, int destinationOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            destination[destinationOffset + i] = Math.min(vector1[offset1 + i], vector2[offset2 + i]);
+        }
+    }
+
+    @Override
+    public void pairwiseMax(double[] vector1, int offset1, double[] vector2, int offset2, double[] destination, int destinationOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            destination[destinationOffset + i] = Math.max(vector1[offset1 + i], vector2[offset2 + i]);
+        }
+    }
+
+    @Override
+    public void ensureLimit(double[] vector, int offset, double limit, boolean min, double[] destination, int destinationOffset, int length) {
+        if (min) {
+            for (int i = 0; i < length; i++) {
+                final double value = vector[offset + i];
+                destination[destinationOffset + i] = value < limit ? limit : value;
+            }
+        }
+        else {
+            for (int i = 0; i < length; i++) {
+                final double value = vector[offset + i];
+                destination[destinationOffset + i] = value > limit ? limit : value;
+            }
+        }
+    }
+
+    @Override
+    public void applyIndices(double[] vector, int[] indices, int indicesOffset, double[] destination, int destinationOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            destination[destinationOffset + i] = vector[indices[indicesOffset + i]];
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Provides inclusive prefix scans (cumulative sums, products, mins and maxs) of vectors and
+ * matrices, backing {@link DMatrixUtils#cumsum(double[])} and friends.
+ *
+ * <p>
+ *
+ * Parallel scans split the range into blocks, reduce blocks in parallel, carry block totals
+ * sequentially and finally scan blocks in parallel seeded by their carries. This reads the input
+ * twice and writes the output once. Mins and maxs are exactly the same as the sequential scans.
+ * Sums and products are accumulated in a different order, hence they may differ from the
+ * sequential scans in rounding.
+ *
+ * <p>
+ *
+ * Compensated sums use Neumaier's variant of Kahan summation and are accurate to nearly the last
+ * bit regardless of the length of the vector.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class Scans {
+    /**
+     * Defines the scan operations.
+     */
+    public enum Operation {
+        /**
+         * Cumulative sums.
+         */
+        SUM,
+
+        /**
+         * Cumulative sums with compensated summation.
+         */
+        COMPENSATED_SUM,
+
+        /**
+         * Cumulative products.
+         */
+        PRODUCT,
+
+        /**
+         * Cumulative mins.
+         */
+        MIN,
+
+        /**
+         * Cumulative maxs.
+         */
+        MAX
+    }
+
+    /**
+     * Defines the length from which the parallel variants actually run in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Scans the vector into a new array.
+     *
+     * @param vector The input vector.
+     * @param operation The scan operation.
+     * @return A new array of cumulative values.
+     */
+    public static double[] scan(double[] vector, Operation operation) {
+        return Scans.scan(vector, 0, new double[vector.length], 0, vector.length, operation);
+    }
+
+    /**
+     * Scans the given range of the vector into the given range of the destination array.
+     *
+     * <p>
+     *
+     * The destination may be the vector itself with the same offset in which case the scan is
+     * computed in-place. Other overlapping ranges are rejected.
+     *
+     * @param vector The input vector.
+     * @param offset The index of the vector to start with.
+     * @param destination The destination array.
+     * @param destinationOffset The index of the destination to start with.
+     * @param length The length of the ranges.
+     * @param operation The scan operation.
+     * @return The destination array.
+     */
+    public static double[] scan(double[] vector, int offset, double[] destination, int destinationOffset, int length, Operation operation) {
+        // Check ranges:
+        DMatrixUtils.checkRange(vector, offset, length);
+        DMatrixUtils.checkRange(destination, destinationOffset, length);
+        DMatrixUtils.checkOverlap(vector, offset, destination, destinationOffset, length);
+
+        // Scan:
+        Scans.scanRange(vector, offset, destination, destinationOffset, length, operation, Scans.identity(operation), 0.0);
+
+        // Done, return:
+        return destination;
+    }
+
+    /**
+     * Scans the vector into a new array in parallel.
+     *
+     * @param vector The input vector.
+     * @param operation The scan operation.
+     * @return A new array of cumulative values.
+     */
+    public static double[] parallelScan(double[] vector, Operation operation) {
+        return Scans.parallelScan(vector, 0, new double[vector.length], 0, vector.length, operation);
+    }
+
+    /**
+     * Scans the given range of the vector into the given range of the destination array in parallel.
+     * See {@link #scan(double[], int, double[], int, int, Operation)}.
+     *
+     * @param vector The input vector.
+     * @param offset The index of the vector to start with.
+     * @param destination The destination array.
+     * @param destinationOffset The index of the destination to start with.
+     * @param length The length of the ranges.
+     * @param operation The scan operation.
+     * @return The destination array.
+     */
+    public static double[] parallelScan(double[] vector, int offset, double[] destination, int destinationOffset, int length, Operation operation) {
+        // Check ranges:
+        DMatrixUtils.checkRange(vector, offset, length);
+        DMatrixUtils.checkRange(destination, destinationOffset, length);
+        DMatrixUtils.checkOverlap(vector, offset, destination, destinationOffset, length);
+
+        // Scan small ranges sequentially:
+        if (length < PARALLEL_THRESHOLD) {
+            Scans.scanRange(vector, offset, destination, destinationOffset, length, operation, Scans.identity(operation), 0.0);
+            return destination;
+        }
+
+        // Get blocks:
+        final int blocks = Math.min(4 * ForkJoinPool.getCommonPoolParallelism(), length / (PARALLEL_THRESHOLD / 4));
+        final int size = Parallel.chunks(length, blocks);
+
+        // Reduce blocks in parallel:
+        final double[] totals = new double[blocks];
+        final double[] compensations = new double[blocks];
+        Parallel.forRange(0, blocks, 1, (from, to) -> {
+            for (int block = from; block < to; block++) {
+                final int start = block * size;
+                Scans.reduceRange(vector, offset + start, Math.min(size, length - start), operation, totals, compensations, block);
+            }
+        });
+
+        // Carry block totals sequentially (exclusive, ie. the carry of a block excludes the block itself):
+        final double[] carries = new double[blocks];
+        final double[] carryCompensations = new double[blocks];
+        carries[0] = Scans.identity(operation);
+        for (int block = 1; block < blocks; block++) {
+            carries[block] = carries[block - 1];
+            carryCompensations[block] = carryCompensations[block - 1] + compensations[block - 1];
+            Scans.step(carries, carryCompensations, block, totals[block - 1], operation);
+        }
+
+        // Scan blocks in parallel seeded with carries:
+        Parallel.forRange(0, blocks, 1, (from, to) -> {
+            for (int block = from; block < to; block++) {
+                final int start = block * size;
+                Scans.scanRange(vector, offset + start, destination, destinationOffset + start, Math.min(size, length - start),
+                    operation, carries[block], carryCompensations[block]);
+            }
+        });
+
+        // Done, return:
+        return destination;
+    }
+
+    /**
+     * Scans each column of the matrix from top to bottom into a new matrix.
+     *
+     * @param matrix The input matrix.
+     * @param operation The scan operation.
+     * @return A new matrix of cumulative values per column.
+     */
+    public static RealMatrix scanColumns(RealMatrix matrix, Operation operation) {
+        // Get a copy of the data:
+        final double[][] data = matrix.getData();
+        final int cols = matrix.getColumnDimension();
+
+        // Keep running totals and compensations per column, and scan row by row:
+        final double[] totals = DMatrixUtils.repeat(Scans.identity(operation), cols);
+        final double[] compensations = new double[cols];
+        for (double[] row : data) {
+            for (int j = 0; j < cols; j++) {
+                row[j] = Scans.step(totals, compensations, j, row[j], operation);
+            }
+        }
+
+        // Done, return:
+        return new Array2DRowRealMatrix(data, false);
+    }
+
+    /**
+     * Scans each row of the matrix from left to right into a new matrix.
+     *
+     * @param matrix The input matrix.
+     * @param operation The scan operation.
+     * @return A new matrix of cumulative values per row.
+     */
+    public static RealMatrix scanRows(RealMatrix matrix, Operation operation) {
+        // Get a copy of the data:
+        final double[][] data = matrix.getData();
+
+        // Scan rows in-place:
+        for (double[] row : data) {
+            Scans.scanRange(row, 0, row, 0, row.length, operation, Scans.identity(operation), 0.0);
+        }
+
+        // Done, return:
+        return new Array2DRowRealMatrix(data, false);
+    }
+
+    /**
+     * Returns the identity of the operation.
+     *
+     * <p>
+     *
+     * Note that the identity of sums is {@code -0.0}, so that signed zeros are preserved.
+     *
+     * @param operation The scan operation.
+     * @return The identity.
+     */
+    private static double identity(Operation operation) {
+        switch (operation) {
+            case PRODUCT:
+                return 1.0;
+            case MIN:
+                return Double.POSITIVE_INFINITY;
+            case MAX:
+                return Double.NEGATIVE_INFINITY;
+            default:
+                return -0.0;
+        }
+    }
+
+    /**
+     * Scans the range seeded with the given total and compensation.
+     *
+     * @param vector The input vector.
+     * @param offset The index of the vector to start with.
+     * @param destination The destination array.
+     * @param destinationOffset The index of the destination to start with.
+     * @param length The length of the ranges.
+     * @param operation The scan operation.
+     * @param seed The total to start with.
+     * @param compensation The compensation to start with (for compensated sums only).
+     */
+    private static void scanRange(double[] vector, int offset, double[] destination, int destinationOffset, int length,
+                                  Operation operation, double seed, double compensation) {
+        double total = seed;
+        switch (operation) {
+            case SUM:
+                for (int i = 0; i < length; i++) {
+                    total += vector[offset + i];
+                    destination[destinationOffset + i] = total;
+                }
+                break;
+            case COMPENSATED_SUM:
+                double error = compensation;
+                for (int i = 0; i < length; i++) {
+                    final double value = vector[offset + i];
+                    final double sum = total + value;
+                    error += Math.abs(total) >= Math.abs(value) ? (total - sum) + value : (value - sum) + total;
+                    total = sum;
+                    destination[destinationOffset + i] = Double.isInfinite(total) ? total : total + error;
+                }
+                break;
+            case PRODUCT:
+                for (int i = 0; i < length; i++) {
+                    total *= vector[offset + i];
+                    destination[destinationOffset + i] = total;
+                }
+                break;
+            case MIN:
+                for (int i = 0; i < length; i++) {
+                    total = Math.min(total, vector[offset + i]);
+                    destination[destinationOffset + i] = total;
+                }
+                break;
+            default:
+                for (int i = 0; i < length; i++) {
+                    total = Math.max(total, vector[offset + i]);
+                    destination[destinationOffset + i] = total;
+                }
+        }
+    }
+
+    /**
+     * Reduces the range into a total and a compensation.
+     *
+     * @param vector The input vector.
+     * @param offset The index of the vector to start with.
+     * @param length The length of the range.
+     * @param operation The scan operation.
+     * @param totals The destination array for the total.
+     * @param compensations The destination array for the compensation.
+     * @param index The index of the destinations.
+     */
+    private static void reduceRange(double[] vector, int offset, int length, Operation operation, double[] totals, double[] compensations, int index) {
+        // Sums are best reduced by the vector kernels:
+        if (operation == Operation.SUM) {
+            totals[index] = VectorKernelsProvider.INSTANCE.sum(vector, offset, length);
+            return;
+        }
+
+        // Step through the range otherwise:
+        totals[index] = Scans.identity(operation);
+        compensations[index] = 0.0;
+        for (int i = 0; i < length; i++) {
+            Scans.step(totals, compensations, index, vector[offset + i], operation);
+        }
+    }
+
+    /**
+     * Steps the running total at the given index with the value.
+     *
+     * @param totals The running totals.
+     * @param compensations The running compensations.
+     * @param index The index of the running total.
+     * @param value The value to step with.
+     * @param operation The scan operation.
+     * @return The cumulative value after the step.
+     */
+    private static double step(double[] totals, double[] compensations, int index, double value, Operation operation) {
+        final double total = totals[index];
+        switch (operation) {
+            case SUM:
+                return totals[index] = total + value;
+            case COMPENSATED_SUM:
+                final double sum = total + value;
+                compensations[index] += Math.abs(total) >= Math.abs(value) ? (total - sum) + value : (value - sum) + total;
+                totals[index] = sum;
+                return Double.isInfinite(sum) ? sum : sum + compensations[index];
+            case PRODUCT:
+                return totals[index] = total * value;
+            case MIN:
+                return totals[index] = Math.min(total, value);
+            default:
+                return totals[index] = Math.max(total, value);
+        }
+    }
+}
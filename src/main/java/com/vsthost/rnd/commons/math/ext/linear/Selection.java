@@ -0,0 +1,422 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>, Tolga Sezer <tolgasbox@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import java.util.Arrays;
+
+/**
+ * Provides linear-time order statistics (medians, quantiles) by selection instead of sorting.
+ *
+ * <p>
+ *
+ * Selection is done by introselect: a quickselect with median-of-three pivots and three-way
+ * partitioning which falls back to median-of-medians pivots if it fails to converge quickly,
+ * hence the worst case is linear, too. Multiple ranks are selected in one recursive partitioning
+ * pass over the data.
+ *
+ * <p>
+ *
+ * {@code NaN}s are ordered last and {@code -0.0} is ordered before {@code 0.0} as in
+ * {@link Arrays#sort(double[])}, hence selected elements are the same as of sorted vectors, including
+ * the sign of zeros. Other elements equal to a selected element (such as zeros of the other sign)
+ * may be found on either side of it.
+ *
+ * <p>
+ *
+ * Methods with the {@code InPlace} suffix rearrange the elements of the provided vector.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class Selection {
+    /**
+     * Defines the length up to which insertion sort is used.
+     */
+    private static final int INSERTION_THRESHOLD = 16;
+
+    /**
+     * Returns the {@code k}-th smallest (0-based) element of the vector, rearranging the vector such
+     * that no element before {@code k} is larger and no element after {@code k} is smaller.
+     *
+     * @param vector The input vector as a double array.
+     * @param k The rank of the element.
+     * @return The {@code k}-th smallest element.
+     */
+    public static double selectInPlace(double[] vector, int k) {
+        // Check the rank:
+        if (k < 0 || k >= vector.length) {
+            throw new IllegalArgumentException("Rank must be within the bounds of the vector.");
+        }
+
+        // Select:
+        Selection.selectAll(vector, k);
+
+        // Done, return:
+        return vector[k];
+    }
+
+    /**
+     * Returns the median of the vector, rearranging its elements.
+     *
+     * @param vector The input vector as a double array.
+     * @return The median of the vector.
+     */
+    public static double medianInPlace(double[] vector) {
+        // Get the length:
+        final int n = vector.length;
+
+        // Empty vectors have no median:
+        if (n == 0) {
+            return Double.NaN;
+        }
+
+        // Select the middle element(s):
+        if (n % 2 == 1) {
+            Selection.selectAll(vector, n / 2);
+            return vector[n / 2];
+        }
+        Selection.selectAll(vector, n / 2 - 1, n / 2);
+        return (vector[n / 2 - 1] + vector[n / 2]) / 2;
+    }
+
+    /**
+     * Returns the median of the vector without modifying it.
+     *
+     * @param vector The input vector as a double array.
+     * @return The median of the vector.
+     */
+    public static double median(double[] vector) {
+        return Selection.medianInPlace(vector.clone());
+    }
+
+    /**
+     * Returns the quantiles of the vector for the given probabilities, rearranging its elements.
+     *
+     * <p>
+     *
+     * Quantiles are computed by linear interpolation between closest ranks, ie. the definition
+     * of type 7 in R (its default) where the quantile for {@code p} is found at (0-based) position
+     * {@code (n - 1) * p}.
+     *
+     * @param vector The input vector as a double array.
+     * @param probabilities Probabilities in the range of {@code [0, 1]}.
+     * @return Quantiles in the order of probabilities.
+     */
+    public static double[] quantilesInPlace(double[] vector, double... probabilities) {
+        // Get the length:
+        final int n = vector.length;
+
+        // Check probabilities:
+        for (double probability : probabilities) {
+            if (!(probability >= 0.0 && probability <= 1.0)) {
+                throw new IllegalArgumentException("Probabilities must be in the range of [0, 1].");
+            }
+        }
+
+        // Empty vectors have no quantiles:
+        final double[] retval = new double[probabilities.length];
+        if (n == 0) {
+            Arrays.fill(retval, Double.NaN);
+            return retval;
+        }
+
+        // Collect the required ranks:
+        final int[] ranks = new int[2 * probabilities.length];
+        for (int i = 0; i < probabilities.length; i++) {
+            final int rank = (int) Math.floor((n - 1) * probabilities[i]);
+            ranks[2 * i] = rank;
+            ranks[2 * i + 1] = Math.min(rank + 1, n - 1);
+        }
+
+        // Select all ranks:
+        Selection.selectAll(vector, ranks);
+
+        // Interpolate:
+        for (int i = 0; i < probabilities.length; i++) {
+            final double position = (n - 1) * probabilities[i];
+            final int rank = (int) Math.floor(position);
+            final double fraction = position - rank;
+            retval[i] = fraction == 0.0 ? vector[rank] : vector[rank] + fraction * (vector[rank + 1] - vector[rank]);
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Returns the quantiles of the vector for the given probabilities without modifying it.
+     *
+     * @param vector The input vector as a double array.
+     * @param probabilities Probabilities in the range of {@code [0, 1]}.
+     * @return Quantiles in the order of probabilities.
+     * @see Selection#quantilesInPlace(double[], double...)
+     */
+    public static double[] quantiles(double[] vector, double... probabilities) {
+        return Selection.quantilesInPlace(vector.clone(), probabilities);
+    }
+
+    /**
+     * Rearranges the vector such that elements at all given ranks are in their sorted positions.
+     *
+     * @param vector The vector.
+     * @param ranks Ranks (possibly unsorted or with duplicates).
+     */
+    private static void selectAll(double[] vector, int... ranks) {
+        // Move NaNs to the end and negative zeros out of the way:
+        final int end = Selection.partitionNaNs(vector);
+        final int negativeZeros = Selection.clearNegativeZeros(vector, end);
+
+        // Sort ranks and drop duplicates and those in the NaN region:
+        final int[] sorted = Arrays.stream(ranks).filter(r -> r < end).sorted().distinct().toArray();
+
+        // Select:
+        Selection.selectAll(vector, 0, end - 1, sorted, 0, sorted.length - 1);
+
+        // Put negative zeros back:
+        if (negativeZeros > 0) {
+            Selection.restoreNegativeZeros(vector, end, sorted, negativeZeros);
+        }
+    }
+
+    /**
+     * Recursively selects the sorted ranks within the range.
+     *
+     * @param a The vector.
+     * @param lo The lower bound of the range (inclusive).
+     * @param hi The upper bound of the range (inclusive).
+     * @param ranks Sorted, distinct ranks.
+     * @param rlo The index of the first rank to be considered (inclusive).
+     * @param rhi The index of the last rank to be considered (inclusive).
+     */
+    private static void selectAll(double[] a, int lo, int hi, int[] ranks, int rlo, int rhi) {
+        // Nothing to do for empty ranges:
+        if (rlo > rhi || lo > hi) {
+            return;
+        }
+
+        // Select the middle rank which partitions the range:
+        final int middle = (rlo + rhi) >>> 1;
+        final int k = ranks[middle];
+        Selection.select(a, lo, hi, k);
+
+        // Recurse into both sides:
+        Selection.selectAll(a, lo, k - 1, ranks, rlo, middle - 1);
+        Selection.selectAll(a, k + 1, hi, ranks, middle + 1, rhi);
+    }
+
+    /**
+     * Moves {@code NaN}s to the end of the vector.
+     *
+     * @param a The vector.
+     * @return The number of non-{@code NaN} elements.
+     */
+    private static int partitionNaNs(double[] a) {
+        int end = a.length;
+        int i = 0;
+        while (i < end) {
+            if (Double.isNaN(a[i])) {
+                Selection.swap(a, i, --end);
+            }
+            else {
+                i++;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Replaces negative zeros by positive zeros.
+     *
+     * @param a The vector.
+     * @param end The number of non-{@code NaN} elements at the front of the vector.
+     * @return The number of negative zeros replaced.
+     */
+    private static int clearNegativeZeros(double[] a, int end) {
+        int retval = 0;
+        for (int i = 0; i < end; i++) {
+            if (a[i] == 0.0 && Double.doubleToRawLongBits(a[i]) != 0L) {
+                a[i] = 0.0;
+                retval++;
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Puts the negative zeros back after the selection, such that zeros at selected ranks have the sign
+     * they have in the sorted vector, ie. negative zeros are ordered before positive zeros.
+     *
+     * @param a The vector.
+     * @param end The number of non-{@code NaN} elements at the front of the vector.
+     * @param ranks Sorted, distinct, selected ranks.
+     * @param negativeZeros The number of negative zeros replaced before the selection.
+     */
+    private static void restoreNegativeZeros(double[] a, int end, int[] ranks, int negativeZeros) {
+        // Count negative elements, ie. those before zeros in the sorted vector:
+        int negatives = 0;
+        for (int i = 0; i < end; i++) {
+            if (a[i] < 0.0) {
+                negatives++;
+            }
+        }
+
+        // Set the signs of selected zeros:
+        int remaining = negativeZeros;
+        for (int k : ranks) {
+            if (a[k] == 0.0 && k - negatives < negativeZeros) {
+                a[k] = -0.0;
+                remaining--;
+            }
+        }
+
+        // Set the signs of other zeros, so that the vector keeps its elements:
+        for (int i = 0, r = 0; i < end && remaining > 0; i++) {
+            // Skip selected ranks:
+            while (r < ranks.length && ranks[r] < i) {
+                r++;
+            }
+            if (r < ranks.length && ranks[r] == i) {
+                continue;
+            }
+
+            // Replace a positive zero:
+            if (a[i] == 0.0 && Double.doubleToRawLongBits(a[i]) == 0L) {
+                a[i] = -0.0;
+                remaining--;
+            }
+        }
+    }
+
+    /**
+     * Introselect for the {@code k}-th element within the range.
+     *
+     * @param a The vector without {@code NaN}s in the range.
+     * @param lo The lower bound of the range (inclusive).
+     * @param hi The upper bound of the range (inclusive).
+     * @param k The rank to be selected.
+     */
+    private static void select(double[] a, int lo, int hi, int k) {
+        // Allow logarithmically many quickselect steps before falling back to median of medians:
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(hi - lo + 1));
+
+        // Iterate until the range is small:
+        while (hi - lo > INSERTION_THRESHOLD) {
+            // Get the pivot:
+            final double pivot = depth-- > 0 ? Selection.medianOfThree(a, lo, hi) : Selection.medianOfMedians(a, lo, hi);
+
+            // Partition into three: [lo, lt) < pivot, [lt, gt] == pivot, (gt, hi] > pivot
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i <= gt) {
+                final double value = a[i];
+                if (value < pivot) {
+                    Selection.swap(a, lt++, i++);
+                }
+                else if (value > pivot) {
+                    Selection.swap(a, i, gt--);
+                }
+                else {
+                    i++;
+                }
+            }
+
+            // Narrow the range or finish:
+            if (k < lt) {
+                hi = lt - 1;
+            }
+            else if (k > gt) {
+                lo = gt + 1;
+            }
+            else {
+                return;
+            }
+        }
+
+        // Sort the small range:
+        Selection.insertion(a, lo, hi);
+    }
+
+    /**
+     * Returns the median of the first, middle and last elements of the range.
+     *
+     * @param a The vector.
+     * @param lo The lower bound of the range (inclusive).
+     * @param hi The upper bound of the range (inclusive).
+     * @return The pivot value.
+     */
+    private static double medianOfThree(double[] a, int lo, int hi) {
+        final double x = a[lo];
+        final double y = a[(lo + hi) >>> 1];
+        final double z = a[hi];
+        return Math.max(Math.min(x, y), Math.min(Math.max(x, y), z));
+    }
+
+    /**
+     * Returns the median of medians of groups of five within the range, rearranging the range.
+     *
+     * @param a The vector.
+     * @param lo The lower bound of the range (inclusive).
+     * @param hi The upper bound of the range (inclusive).
+     * @return The pivot value.
+     */
+    private static double medianOfMedians(double[] a, int lo, int hi) {
+        // Move group medians to the front of the range:
+        int store = lo;
+        for (int i = lo; i <= hi; i += 5) {
+            final int end = Math.min(i + 4, hi);
+            Selection.insertion(a, i, end);
+            Selection.swap(a, store++, i + (end - i) / 2);
+        }
+
+        // Select the median of the medians:
+        final int middle = lo + (store - lo - 1) / 2;
+        Selection.select(a, lo, store - 1, middle);
+        return a[middle];
+    }
+
+    /**
+     * Sorts the range by insertion sort.
+     *
+     * @param a The vector.
+     * @param lo The lower bound of the range (inclusive).
+     * @param hi The upper bound of the range (inclusive).
+     */
+    private static void insertion(double[] a, int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            final double value = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > value) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = value;
+        }
+    }
+
+    /**
+     * Swaps two elements.
+     *
+     * @param a The vector.
+     * @param i The first index.
+     * @param j The second index.
+     */
+    private static void swap(double[] a, int i, int j) {
+        final double temp = a[i];
+        a[i] = a[j];
+        a[j] = temp;
+    }
+}
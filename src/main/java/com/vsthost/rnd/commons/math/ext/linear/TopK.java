@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>, Tolga Sezer <tolgasbox@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+/**
+ * Provides partial ordering of vectors, ie. the indices of the {@code k} smallest or largest values,
+ * backing {@link DMatrixUtils#getTopK}.
+ *
+ * <p>
+ *
+ * Selection is done by a bounded binary heap in O(n log k) time and O(k) space without boxing.
+ * The result is exactly the first {@code k} elements of {@link DMatrixUtils#getOrder(double[], boolean)},
+ * ie. values are compared as per {@link Double#compare(double, double)} and ties are resolved by
+ * preferring the smaller index.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class TopK {
+    /**
+     * Defines the length from which the parallel variants actually run in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Defines the strict ranking of two indices.
+     */
+    private interface Ranking {
+        /**
+         * Indicates if the first index ranks before the second one.
+         *
+         * @param i The first index.
+         * @param j The second index.
+         * @return {@code true} if {@code i} ranks before {@code j}.
+         */
+        boolean before(int i, int j);
+    }
+
+    /**
+     * Returns the indices of the {@code k} smallest or largest values in the respective order.
+     *
+     * @param values A vector of double values.
+     * @param k The number of indices to be returned (capped at the length of the vector).
+     * @param descending Flag indicating if we go for largest values or not.
+     * @return A vector of indices.
+     */
+    public static int[] select(double[] values, int k, boolean descending) {
+        return TopK.heap(TopK.check(k, values.length), 0, values.length, null, TopK.ranking(values, descending));
+    }
+
+    /**
+     * Returns the indices of the {@code k} smallest or largest values in the respective order.
+     *
+     * @param values A vector of integer values.
+     * @param k The number of indices to be returned (capped at the length of the vector).
+     * @param descending Flag indicating if we go for largest values or not.
+     * @return A vector of indices.
+     */
+    public static int[] select(int[] values, int k, boolean descending) {
+        return TopK.heap(TopK.check(k, values.length), 0, values.length, null, TopK.ranking(values, descending));
+    }
+
+    /**
+     * Returns the indices of the {@code k} smallest or largest values in the respective order
+     * by selecting from chunks in parallel and merging the chunk results.
+     *
+     * @param values A vector of double values.
+     * @param k The number of indices to be returned (capped at the length of the vector).
+     * @param descending Flag indicating if we go for largest values or not.
+     * @return A vector of indices.
+     */
+    public static int[] parallelSelect(double[] values, int k, boolean descending) {
+        return TopK.parallel(TopK.check(k, values.length), values.length, TopK.ranking(values, descending));
+    }
+
+    /**
+     * Returns the indices of the {@code k} smallest or largest values in the respective order
+     * by selecting from chunks in parallel and merging the chunk results.
+     *
+     * @param values A vector of integer values.
+     * @param k The number of indices to be returned (capped at the length of the vector).
+     * @param descending Flag indicating if we go for largest values or not.
+     * @return A vector of indices.
+     */
+    public static int[] parallelSelect(int[] values, int k, boolean descending) {
+        return TopK.parallel(TopK.check(k, values.length), values.length, TopK.ranking(values, descending));
+    }
+
+    /**
+     * Checks and caps {@code k}.
+     *
+     * @param k The number of indices requested.
+     * @param length The length of the vector.
+     * @return The effective number of indices.
+     */
+    private static int check(int k, int length) {
+        if (k < 0) {
+            throw new IllegalArgumentException("The number of elements to be selected must be non-negative.");
+        }
+        return Math.min(k, length);
+    }
+
+    /**
+     * Returns the ranking for double values.
+     *
+     * @param values A vector of double values.
+     * @param descending Flag indicating if we go descending or not.
+     * @return The ranking.
+     */
+    private static Ranking ranking(double[] values, boolean descending) {
+        if (descending) {
+            return (i, j) -> {
+                final int c = Double.compare(values[i], values[j]);
+                return c > 0 || (c == 0 && i < j);
+            };
+        }
+        return (i, j) -> {
+            final int c = Double.compare(values[i], values[j]);
+            return c < 0 || (c == 0 && i < j);
+        };
+    }
+
+    /**
+     * Returns the ranking for integer values.
+     *
+     * @param values A vector of integer values.
+     * @param descending Flag indicating if we go descending or not.
+     * @return The ranking.
+     */
+    private static Ranking ranking(int[] values, boolean descending) {
+        if (descending) {
+            return (i, j) -> values[i] > values[j] || (values[i] == values[j] && i < j);
+        }
+        return (i, j) -> values[i] < values[j] || (values[i] == values[j] && i < j);
+    }
+
+    /**
+     * Selects in chunks in parallel and merges.
+     *
+     * @param k The effective number of indices.
+     * @param length The length of the vector.
+     * @param ranking The ranking.
+     * @return A vector of indices.
+     */
+    private static int[] parallel(int k, int length, Ranking ranking) {
+        // Run sequentially for small vectors:
+        final int size = Math.max(PARALLEL_THRESHOLD / 4, 4 * k);
+        if (length < PARALLEL_THRESHOLD || length <= size) {
+            return TopK.heap(k, 0, length, null, ranking);
+        }
+
+        // Select in chunks:
+        final int chunks = Parallel.chunks(length, size);
+        final int[][] partials = new int[chunks][];
+        Parallel.forRange(0, chunks, 1, (from, to) -> {
+            for (int c = from; c < to; c++) {
+                partials[c] = TopK.heap(k, c * size, Math.min(length, (c + 1) * size), null, ranking);
+            }
+        });
+
+        // Collect candidates:
+        int count = 0;
+        final int[] candidates = new int[chunks * k];
+        for (int[] partial : partials) {
+            System.arraycopy(partial, 0, candidates, count, partial.length);
+            count += partial.length;
+        }
+
+        // Select among candidates:
+        return TopK.heap(k, 0, count, candidates, ranking);
+    }
+
+    /**
+     * Selects the best {@code k} indices using a bounded heap with the worst index at its root.
+     *
+     * @param k The effective number of indices.
+     * @param from The position to start with (inclusive).
+     * @param to The position to end with (exclusive).
+     * @param candidates The candidate indices at positions, or {@code null} if positions are indices themselves.
+     * @param ranking The ranking.
+     * @return The selected indices in the order of ranking.
+     */
+    private static int[] heap(int k, int from, int to, int[] candidates, Ranking ranking) {
+        // Initialize the heap:
+        final int[] heap = new int[k];
+        int size = 0;
+
+        // Nothing to do if nothing is required:
+        if (k == 0) {
+            return heap;
+        }
+
+        // Iterate over positions and offer:
+        for (int p = from; p < to; p++) {
+            final int index = candidates == null ? p : candidates[p];
+            if (size < k) {
+                // Add to the heap and sift up:
+                int child = size++;
+                while (child > 0) {
+                    final int parent = (child - 1) >>> 1;
+                    if (!ranking.before(heap[parent], index)) {
+                        break;
+                    }
+                    heap[child] = heap[parent];
+                    child = parent;
+                }
+                heap[child] = index;
+            }
+            else if (ranking.before(index, heap[0])) {
+                // Replace the root and sift down:
+                TopK.siftDown(heap, size, index, ranking);
+            }
+        }
+
+        // Pop the worst to the end, one by one:
+        final int[] retval = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            retval[i] = heap[0];
+            TopK.siftDown(heap, i, heap[i], ranking);
+        }
+
+        // Done, return:
+        return retval;
+    }
+
+    /**
+     * Places the index at the root of the heap and sifts it down.
+     *
+     * @param heap The heap.
+     * @param size The size of the heap.
+     * @param index The index to be placed.
+     * @param ranking The ranking.
+     */
+    private static void siftDown(int[] heap, int size, int index, Ranking ranking) {
+        int parent = 0;
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && ranking.before(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!ranking.before(index, heap[child])) {
+                break;
+            }
+            heap[parent] = heap[child];
+            parent = child;
+        }
+        if (size > 0) {
+            heap[parent] = index;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>, Tolga Sezer <tolgasbox@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Provides a reusable sampler for the target-total bounded distribution
+ * as defined by {@link DMatrixUtils#ttbd(double, double[], double[], RandomGenerator)}.
+ *
+ * <p>
+ *
+ * The shuffle is applied as an index permutation: bounds are read and values are written
+ * through the shuffled indices, hence no intermediate arrays are allocated per sample. For
+ * the same random number generator state, the sampler produces exactly the same values as
+ * {@link DMatrixUtils#ttbd(double, double[], double[], RandomGenerator)}.
+ *
+ * <p>
+ *
+ * Note that instances keep a scratch buffer for shuffled indices and are therefore not thread-safe.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class TtbdSampler implements VectorSampler {
+    /**
+     * The target total value.
+     */
+    private final double target;
+
+    /**
+     * Lower limits.
+     */
+    private final double[] lower;
+
+    /**
+     * Upper limits.
+     */
+    private final double[] upper;
+
+    /**
+     * Scratch buffer for shuffled indices.
+     */
+    private final int[] indices;
+
+    /**
+     * Creates a new sampler for the provided target and limits.
+     *
+     * @param target The target total value.
+     * @param lower Lower limits.
+     * @param upper Upper limits.
+     */
+    public TtbdSampler(double target, double[] lower, double[] upper) {
+        // Check dimension match:
+        if (lower.length != upper.length) {
+            throw new IllegalArgumentException("Lower and upper bounds must be of same length.");
+        }
+
+        // Check for that lower bounds must be equal to or less than upper bounds.
+        for (int i = 0; i < lower.length; i++) {
+            if (lower[i] > upper[i]) {
+                throw new IllegalArgumentException("Lower bounds must be equal to or less than upper bounds.");
+            }
+        }
+
+        // Save the state:
+        this.target = target;
+        this.lower = lower.clone();
+        this.upper = upper.clone();
+        this.indices = new int[lower.length];
+    }
+
+    /**
+     * Creates a new sampler sharing the (immutable) parameters of another sampler.
+     *
+     * @param other The sampler to be copied.
+     */
+    private TtbdSampler(TtbdSampler other) {
+        this.target = other.target;
+        this.lower = other.lower;
+        this.upper = other.upper;
+        this.indices = new int[other.indices.length];
+    }
+
+    /**
+     * Returns a new sampler with the same parameters but its own scratch buffer,
+     * to be used on another thread.
+     *
+     * @return A new sampler.
+     */
+    @Override
+    public TtbdSampler copy() {
+        return new TtbdSampler(this);
+    }
+
+    /**
+     * Returns the dimension of the samples.
+     *
+     * @return The dimension of the samples.
+     */
+    @Override
+    public int getDimension() {
+        return this.lower.length;
+    }
+
+    /**
+     * Returns the target total value.
+     *
+     * @return The target total value.
+     */
+    public double getTarget() {
+        return this.target;
+    }
+
+    /**
+     * Draws a single sample into a new array.
+     *
+     * @param randomGenerator The random generator.
+     * @return A vector of target-total bounded sample.
+     */
+    public double[] sample(RandomGenerator randomGenerator) {
+        final double[] retval = new double[this.lower.length];
+        this.sample(randomGenerator, retval, 0);
+        return retval;
+    }
+
+    /**
+     * Draws {@code count} samples into a new matrix, one sample per row.
+     *
+     * @param randomGenerator The random generator.
+     * @param count The number of samples.
+     * @return A matrix of samples.
+     */
+    public double[][] sample(RandomGenerator randomGenerator, int count) {
+        final double[][] retval = new double[count][this.lower.length];
+        this.sample(randomGenerator, retval);
+        return retval;
+    }
+
+    /**
+     * Draws one sample per row of the destination matrix.
+     *
+     * @param randomGenerator The random generator.
+     * @param destination The matrix to be populated, rows must be of sampler's dimension.
+     */
+    public void sample(RandomGenerator randomGenerator, double[][] destination) {
+        for (int row = 0; row < destination.length; row++) {
+            // Check the row dimension:
+            if (destination[row].length != this.lower.length) {
+                throw new IllegalArgumentException("Destination rows must be of the same length as bounds.");
+            }
+
+            // Draw the sample:
+            this.sample(randomGenerator, destination[row], 0);
+        }
+    }
+
+    /**
+     * Draws {@code count} consecutive samples into the flat destination array starting at {@code offset}.
+     *
+     * @param randomGenerator The random generator.
+     * @param destination The array to be populated.
+     * @param offset The index of the destination array to start with.
+     * @param count The number of samples.
+     */
+    @Override
+    public void sample(RandomGenerator randomGenerator, double[] destination, int offset, int count) {
+        // Check the destination capacity:
+        if (offset < 0 || count < 0 || offset + (long) count * this.lower.length > destination.length) {
+            throw new IllegalArgumentException("Destination is too small for the requested number of samples.");
+        }
+
+        // Iterate and draw:
+        for (int i = 0; i < count; i++) {
+            this.draw(randomGenerator, destination, offset + i * this.lower.length);
+        }
+    }
+
+    /**
+     * Draws a single sample into the destination array starting at {@code offset}.
+     *
+     * @param randomGenerator The random generator.
+     * @param destination The array to be populated.
+     * @param offset The index of the destination array to start with.
+     */
+    public void sample(RandomGenerator randomGenerator, double[] destination, int offset) {
+        this.sample(randomGenerator, destination, offset, 1);
+    }
+
+    /**
+     * Provides the workhorse which draws a sample in a random order of the elements.
+     *
+     * @param randomGenerator The random generator.
+     * @param destination The array to be populated.
+     * @param offset The index of the destination array to start with.
+     */
+    private void draw(RandomGenerator randomGenerator, double[] destination, int offset) {
+        // Get indices and shuffle:
+        DMatrixUtils.shuffleIndices(this.indices, randomGenerator);
+
+        // Iterate in the shuffled order, simulate and compute the simulated total:
+        double total = 0.0;
+        for (int i = 0; i < this.indices.length; i++) {
+            // Get the original index of the element:
+            final int index = offset + this.indices[i];
+            final double lower = this.lower[this.indices[i]];
+            final double upper = this.upper[this.indices[i]];
+
+            // Simulate:
+            if (lower == upper) {
+                destination[index] = lower;
+            }
+            else {
+                final double u = randomGenerator.nextDouble();
+                destination[index] = u * upper + (1 - u) * lower;
+            }
+
+            // Update the total:
+            total += destination[index];
+        }
+
+        // Compute the gap of simulated total and target total:
+        double gap = this.target - total;
+
+        // Iterate over the values in the shuffled order and adjust as per gap:
+        for (int i = 0; i < this.indices.length; i++) {
+            // If there is no gap, we are done:
+            if (gap == 0.0) {
+                return;
+            }
+
+            // Get the original index of the element:
+            final int index = offset + this.indices[i];
+
+            // Calculate the distances to limits:
+            final double distanceToLower = this.lower[this.indices[i]] - destination[index];
+            final double distanceToUpper = this.upper[this.indices[i]] - destination[index];
+
+            // Compute the permissible shift:
+            final double shift = gap > 0 ? Math.min(distanceToUpper, gap) : Math.max(distanceToLower, gap);
+
+            // Apply the shift:
+            destination[index] += shift;
+
+            // Update gap:
+            gap -= shift;
+        }
+    }
+}
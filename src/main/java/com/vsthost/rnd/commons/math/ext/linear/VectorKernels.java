@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+/**
+ * Defines the core vector loops used by {@link DMatrixUtils} over array ranges.
+ *
+ * <p>
+ *
+ * The implementation in use is provided by {@link VectorKernelsProvider#INSTANCE}, which is
+ * the scalar implementation on Java 8 and may be a SIMD implementation on newer runtimes.
+ */
+interface VectorKernels {
+    /**
+     * Returns the sum of the range.
+     *
+     * @param vector The input vector.
+     * @param offset The index to start with.
+     * @param length The length of the range.
+     * @return The sum of the range.
+     */
+    double sum(double[] vector, int offset, int length);
+
+    /**
+     * Returns the sum of the absolute values in the range.
+     *
+     * @param vector The input vector.
+     * @param offset The index to start with.
+     * @param length The length of the range.
+     * @return The sum of the absolute values in the range.
+     */
+    double sumOfAbsolutes(double[] vector, int offset, int length);
+
+    /**
+     * Computes the mins of respective pairs from two ranges.
+     *
+     * @param vector1 The first vector.
+     * @param offset1 The index of the first vector to start with.
+     * @param vector2 The second vector.
+     * @param offset2 The index of the second vector to start with.
+     * @param destination The destination vector.
+     * @param destinationOffset The index of the destination vector to start with.
+     * @param length The length of the ranges.
+     */
+    void pairwiseMin(double[] vector1, int offset1, double[] vector2, int offset2, double[] destination, int destinationOffset, int length);
+
+    /**
+     * Computes the maxs of respective pairs from two ranges.
+     *
+     * @param vector1 The first vector.
+     * @param offset1 The index of the first vector to start with.
+     * @param vector2 The second vector.
+     * @param offset2 The index of the second vector to start with.
+     * @param destination The destination vector.
+     * @param destinationOffset The index of the destination vector to start with.
+     * @param length The length of the ranges.
+     */
+    void pairwiseMax(double[] vector1, int offset1, double[] vector2, int offset2, double[] destination, int destinationOffset, int length);
+
+    /**
+     * Limits the range to {@code limit} as a lower ({@code min == true}) or upper ({@code min == false}) boundary.
+     *
+     * @param vector The input vector.
+     * @param offset The index of the input vector to start with.
+     * @param limit The limit.
+     * @param min The flag if we should min the limit ({@code true}) or max it ({@code false}).
+     * @param destination The destination vector.
+     * @param destinationOffset The index of the destination vector to start with.
+     * @param length The length of the ranges.
+     */
+    void ensureLimit(double[] vector, int offset, double limit, boolean min, double[] destination, int destinationOffset, int length);
+
+    /**
+     * Gathers values at the given indices.
+     *
+     * @param vector The input vector.
+     * @param indices The indices.
+     * @param indicesOffset The index of the indices to start with.
+     * @param destination The destination vector.
+     * @param destinationOffset The index of the destination vector to start with.
+     * @param length The length of the ranges.
+     */
+    void applyIndices(double[] vector, int[] indices, int indicesOffset, double[] destination, int destinationOffset, int length);
+}
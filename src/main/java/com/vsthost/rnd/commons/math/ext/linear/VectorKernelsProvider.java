@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+/**
+ * Provides the {@link VectorKernels} implementation in use.
+ *
+ * <p>
+ *
+ * This is the Java 8 baseline which always provides the scalar implementation. The multi-release
+ * JAR carries a Java 17 variant of this class under {@code META-INF/versions/17} which selects the
+ * SIMD implementation at runtime if the {@code jdk.incubator.vector} module is available.
+ */
+final class VectorKernelsProvider {
+    /**
+     * Defines the system property which can be set to {@code false} to disable SIMD kernels.
+     */
+    static final String PROPERTY = "com.vsthost.rnd.commons.math.ext.linear.simd";
+
+    /**
+     * The kernels in use.
+     */
+    static final VectorKernels INSTANCE = new ScalarVectorKernels();
+}
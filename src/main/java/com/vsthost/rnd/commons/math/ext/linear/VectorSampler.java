@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Defines a reusable sampler of fixed-dimension vectors writing into flat destination arrays.
+ */
+public interface VectorSampler {
+    /**
+     * Returns the dimension of the samples.
+     *
+     * @return The dimension of the samples.
+     */
+    int getDimension();
+
+    /**
+     * Draws {@code count} consecutive samples into the flat destination array starting at {@code offset}.
+     *
+     * @param randomGenerator Random number generator.
+     * @param destination The array to be populated.
+     * @param offset The index of the destination array to start with.
+     * @param count The number of samples.
+     */
+    void sample(RandomGenerator randomGenerator, double[] destination, int offset, int count);
+
+    /**
+     * Returns a new sampler with the same parameters but its own scratch state so that
+     * it can be used on another thread.
+     *
+     * @return A new sampler.
+     */
+    VectorSampler copy();
+}
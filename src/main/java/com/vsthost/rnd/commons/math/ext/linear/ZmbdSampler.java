@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>, Tolga Sezer <tolgasbox@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Provides a reusable sampler for the zero-mean (or target-mean) bounded distribution
+ * as defined by {@link DMatrixUtils#zmbd(double[], double[], double, RandomGenerator)}.
+ *
+ * <p>
+ *
+ * Bounds are validated once at construction time and samples are written directly into
+ * caller-supplied arrays. For the same random number generator state, the sampler produces
+ * exactly the same values as {@link DMatrixUtils#zmbd(double[], double[], double, RandomGenerator)}.
+ *
+ * <p>
+ *
+ * Note that instances keep a scratch buffer for shuffled indices and are therefore not thread-safe.
+ *
+ * @author Vehbi Sinan Tunalioglu, Tolga Sezer
+ */
+public class ZmbdSampler implements VectorSampler {
+    /**
+     * Lower distances.
+     */
+    private final double[] lower;
+
+    /**
+     * Upper distances.
+     */
+    private final double[] upper;
+
+    /**
+     * The target mean.
+     */
+    private final double targetMean;
+
+    /**
+     * Scratch buffer for shuffled indices.
+     */
+    private final int[] indices;
+
+    /**
+     * Creates a new sampler for the provided distances.
+     *
+     * @param lower Lower distances.
+     * @param upper Upper distances.
+     * @param targetMean The target mean (ie. not zero-mean, but target-mean bounded...).
+     */
+    public ZmbdSampler(double[] lower, double[] upper, double targetMean) {
+        // Check dimension match:
+        if (lower.length != upper.length) {
+            throw new IllegalArgumentException("Lower and upper bounds must be of same length.");
+        }
+
+        // Check for that lower bounds must be equal to or less than upper bounds.
+        for (int i = 0; i < lower.length; i++) {
+            if (lower[i] > upper[i]) {
+                throw new IllegalArgumentException("Lower bounds must be equal to or less than upper bounds.");
+            }
+        }
+
+        // Save the state:
+        this.lower = lower.clone();
+        this.upper = upper.clone();
+        this.targetMean = targetMean;
+        this.indices = new int[lower.length];
+    }
+
+    /**
+     * Creates a new zero-mean sampler for the provided distances.
+     *
+     * @param lower Lower distances.
+     * @param upper Upper distances.
+     */
+    public ZmbdSampler(double[] lower, double[] upper) {
+        this(lower, upper, 0.0);
+    }
+
+    /**
+     * Creates a new sampler sharing the (immutable) parameters of another sampler.
+     *
+     * @param other The sampler to be copied.
+     */
+    private ZmbdSampler(ZmbdSampler other) {
+        this.lower = other.lower;
+        this.upper = other.upper;
+        this.targetMean = other.targetMean;
+        this.indices = new int[other.indices.length];
+    }
+
+    /**
+     * Returns a new sampler with the same parameters but its own scratch buffer,
+     * to be used on another thread.
+     *
+     * @return A new sampler.
+     */
+    @Override
+    public ZmbdSampler copy() {
+        return new ZmbdSampler(this);
+    }
+
+    /**
+     * Returns the dimension of the samples.
+     *
+     * @return The dimension of the samples.
+     */
+    @Override
+    public int getDimension() {
+        return this.lower.length;
+    }
+
+    /**
+     * Returns the target mean.
+     *
+     * @return The target mean.
+     */
+    public double getTargetMean() {
+        return this.targetMean;
+    }
+
+    /**
+     * Draws a single sample into a new array.
+     *
+     * @param randomGenerator Random number generator.
+     * @return The zero-mean bounded uniform distribution sample.
+     */
+    public double[] sample(RandomGenerator randomGenerator) {
+        final double[] retval = new double[this.lower.length];
+        this.sample(randomGenerator, retval, 0);
+        return retval;
+    }
+
+    /**
+     * Draws {@code count} samples into a new matrix, one sample per row.
+     *
+     * @param randomGenerator Random number generator.
+     * @param count The number of samples.
+     * @return A matrix of samples.
+     */
+    public double[][] sample(RandomGenerator randomGenerator, int count) {
+        final double[][] retval = new double[count][this.lower.length];
+        this.sample(randomGenerator, retval);
+        return retval;
+    }
+
+    /**
+     * Draws one sample per row of the destination matrix.
+     *
+     * @param randomGenerator Random number generator.
+     * @param destination The matrix to be populated, rows must be of sampler's dimension.
+     */
+    public void sample(RandomGenerator randomGenerator, double[][] destination) {
+        for (int row = 0; row < destination.length; row++) {
+            // Check the row dimension:
+            if (destination[row].length != this.lower.length) {
+                throw new IllegalArgumentException("Destination rows must be of the same length as bounds.");
+            }
+
+            // Draw the sample:
+            this.sample(randomGenerator, destination[row], 0);
+        }
+    }
+
+    /**
+     * Draws {@code count} consecutive samples into the flat destination array starting at {@code offset}.
+     *
+     * @param randomGenerator Random number generator.
+     * @param destination The array to be populated.
+     * @param offset The index of the destination array to start with.
+     * @param count The number of samples.
+     */
+    @Override
+    public void sample(RandomGenerator randomGenerator, double[] destination, int offset, int count) {
+        // Check the destination capacity:
+        if (offset < 0 || count < 0 || offset + (long) count * this.lower.length > destination.length) {
+            throw new IllegalArgumentException("Destination is too small for the requested number of samples.");
+        }
+
+        // Iterate and draw:
+        for (int i = 0; i < count; i++) {
+            this.draw(randomGenerator, destination, offset + i * this.lower.length);
+        }
+    }
+
+    /**
+     * Draws a single sample into the destination array starting at {@code offset}.
+     *
+     * @param randomGenerator Random number generator.
+     * @param destination The array to be populated.
+     * @param offset The index of the destination array to start with.
+     */
+    public void sample(RandomGenerator randomGenerator, double[] destination, int offset) {
+        this.sample(randomGenerator, destination, offset, 1);
+    }
+
+    /**
+     * Provides the workhorse which draws a sample in a random order of the elements.
+     *
+     * <p>
+     *
+     * Bounds are read through the shuffled indices and each value is written directly to its
+     * original position, hence no shuffled copies of the bounds or of the result are needed.
+     *
+     * @param randomGenerator Random number generator.
+     * @param destination The array to be populated.
+     * @param offset The index of the destination array to start with.
+     */
+    private void draw(RandomGenerator randomGenerator, double[] destination, int offset) {
+        // Define the dimension of the problem:
+        final int dimension = this.lower.length;
+
+        // Get indices and shuffle:
+        DMatrixUtils.shuffleIndices(this.indices, randomGenerator);
+
+        // Get the sum of lowers and uppers in the shuffled order:
+        double lowerSum = 0.0;
+        double upperSum = 0.0;
+        for (int i = 0; i < dimension; i++) {
+            lowerSum += this.lower[this.indices[i]];
+            upperSum += this.upper[this.indices[i]];
+        }
+
+        // Define the cumulative sums and the mean value to be updated:
+        double cumLower = 0.0;
+        double cumUpper = 0.0;
+        double mean = 0.0;
+
+        // Iterate over the dimension in a random order and update permissible draws and mean value:
+        double minValue, maxValue, value;
+        for (int i = 0; i < dimension; i++) {
+            // Get the original index of the element:
+            final int index = this.indices[i];
+
+            // Define the min/max value:
+            minValue = this.lower[index];
+            maxValue = this.upper[index];
+
+            // Update the cumulative sums:
+            cumLower = i == 0 ? minValue : minValue + cumLower;
+            cumUpper = i == 0 ? maxValue : maxValue + cumUpper;
+
+            // Simulate or get antithetical for the element:
+            if (mean == this.targetMean) {
+                // Compute the contingencies:
+                final double contingencyLower = lowerSum - cumLower;
+                final double contingencyUpper = upperSum - cumUpper;
+
+                // Get correct contingency U/L bounds by sign:
+                final double contingencyU = contingencyUpper > 0 ? contingencyUpper : -contingencyUpper;
+                final double contingencyL = contingencyLower < 0 ? contingencyLower : -contingencyLower;
+
+                // Update the effective range:
+                minValue = minValue < 0 ? Math.max(minValue, -contingencyU) : Math.min(minValue, -contingencyL);
+                maxValue = maxValue > 0 ? Math.min(maxValue, -contingencyL) : Math.max(maxValue, -contingencyU);
+
+                // Get the value:
+                if (minValue == maxValue) {
+                    value = minValue;
+
+                    if (value < this.lower[index]) {
+                        value = this.lower[index];
+                    }
+                    else if (value > this.upper[index]) {
+                        value = this.upper[index];
+                    }
+                }
+                else {
+                    final double u = randomGenerator.nextDouble();
+                    value = u * Math.max(minValue, maxValue) + (1 - u) * Math.min(minValue, maxValue);
+                }
+            }
+            else if (mean > 0.0) {
+                value = maxValue > -mean ? Math.max(-mean, minValue) : Math.min(-mean, maxValue);
+            }
+            else {
+                value = minValue < -mean ? Math.min(-mean, maxValue) : Math.max(-mean, minValue);
+            }
+
+            // Save the value at its original position:
+            destination[offset + index] = value;
+
+            // Update the mean:
+            mean += value;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Provides the SIMD implementation of {@link VectorKernels} on top of the Vector API.
+ *
+ * <p>
+ *
+ * Element-wise kernels produce exactly the same results as {@link ScalarVectorKernels}. Reductions
+ * accumulate lane-wise, hence their results may differ from the scalar ones in rounding.
+ */
+final class SimdVectorKernels implements VectorKernels {
+    /**
+     * The preferred species of the platform.
+     */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public double sum(double[] vector, int offset, int length) {
+        // Accumulate in two independent vectors:
+        final int step = SPECIES.length();
+        final int bound = length - length % (2 * step);
+        DoubleVector total1 = DoubleVector.zero(SPECIES);
+        DoubleVector total2 = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += 2 * step) {
+            total1 = total1.add(DoubleVector.fromArray(SPECIES, vector, offset + i));
+            total2 = total2.add(DoubleVector.fromArray(SPECIES, vector, offset + i + step));
+        }
+
+        // Reduce and add the tail:
+        double total = total1.add(total2).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            total += vector[offset + i];
+        }
+
+        // Done, return:
+        return total;
+    }
+
+    @Override
+    public double sumOfAbsolutes(double[] vector, int offset, int length) {
+        // Accumulate in two independent vectors:
+        final int step = SPECIES.length();
+        final int bound = length - length % (2 * step);
+        DoubleVector total1 = DoubleVector.zero(SPECIES);
+        DoubleVector total2 = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += 2 * step) {
+            total1 = total1.add(DoubleVector.fromArray(SPECIES, vector, offset + i).abs());
+            total2 = total2.add(DoubleVector.fromArray(SPECIES, vector, offset + i + step).abs());
+        }
+
+        // Reduce and add the tail:
+        double total = total1.add(total2).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            total += Math.abs(vector[offset + i]);
+        }
+
+        // Done, return:
+        return total;
+    }
+
+    @Override
+    public void pairwiseMin(double[] vector1, int offset1, double[] vector2, int offset2, double[] destination, int destinationOffset, int length) {
+        final int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, vector1, offset1 + i)
+                .lanewise(VectorOperators.MIN, DoubleVector.fromArray(SPECIES, vector2, offset2 + i))
+                .intoArray(destination, destinationOffset + i);
+        }
+        for (; i < length; i++) {
+            destination[destinationOffset + i] = Math.min(vector1[offset1 + i], vector2[offset2 + i]);
+        }
+    }
+
+    @Override
+    public void pairwiseMax(double[] vector1, int offset1, double[] vector2, int offset2, double[] destination, int destinationOffset, int length) {
+        final int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, vector1, offset1 + i)
+                .lanewise(VectorOperators.MAX, DoubleVector.fromArray(SPECIES, vector2, offset2 + i))
+                .intoArray(destination, destinationOffset + i);
+        }
+        for (; i < length; i++) {
+            destination[destinationOffset + i] = Math.max(vector1[offset1 + i], vector2[offset2 + i]);
+        }
+    }
+
+    @Override
+    public void ensureLimit(double[] vector, int offset, double limit, boolean min, double[] destination, int destinationOffset, int length) {
+        // Compare and blend rather than min/max to keep the scalar semantics for signed zeros and NaNs:
+        final VectorOperators.Comparison comparison = min ? VectorOperators.LT : VectorOperators.GT;
+        final int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            final DoubleVector value = DoubleVector.fromArray(SPECIES, vector, offset + i);
+            value.blend(limit, value.compare(comparison, limit)).intoArray(destination, destinationOffset + i);
+        }
+        for (; i < length; i++) {
+            final double value = vector[offset + i];
+            destination[destinationOffset + i] = (min ? value < limit : value > limit) ? limit : value;
+        }
+    }
+
+    @Override
+    public void applyIndices(double[] vector, int[] indices, int indicesOffset, double[] destination, int destinationOffset, int length) {
+        final int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, vector, 0, indices, indicesOffset + i).intoArray(destination, destinationOffset + i);
+        }
+        for (; i < length; i++) {
+            destination[destinationOffset + i] = vector[indices[indicesOffset + i]];
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+/**
+ * Provides the {@link VectorKernels} implementation in use.
+ *
+ * <p>
+ *
+ * This is the Java 17 variant of the class in the multi-release JAR. It selects the SIMD
+ * implementation if the {@code jdk.incubator.vector} module is resolved at runtime (ie. the JVM
+ * is started with {@code --add-modules jdk.incubator.vector}) and the system property
+ * {@value #PROPERTY} is not set to {@code false}. Otherwise, the scalar implementation is used.
+ */
+final class VectorKernelsProvider {
+    /**
+     * Defines the system property which can be set to {@code false} to disable SIMD kernels.
+     */
+    static final String PROPERTY = "com.vsthost.rnd.commons.math.ext.linear.simd";
+
+    /**
+     * The kernels in use.
+     */
+    static final VectorKernels INSTANCE = VectorKernelsProvider.create();
+
+    /**
+     * Creates the kernels, attempting SIMD kernels first.
+     *
+     * @return Kernels.
+     */
+    private static VectorKernels create() {
+        // Check if disabled or not available:
+        if ("false".equalsIgnoreCase(System.getProperty(PROPERTY, "true").trim()) || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new ScalarVectorKernels();
+        }
+
+        // Attempt to load SIMD kernels reflectively, so that linkage problems stay confined:
+        try {
+            return Class.forName(VectorKernelsProvider.class.getPackageName() + ".SimdVectorKernels")
+                .asSubclass(VectorKernels.class)
+                .getDeclaredConstructor()
+                .newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError exception) {
+            return new ScalarVectorKernels();
+        }
+    }
+}
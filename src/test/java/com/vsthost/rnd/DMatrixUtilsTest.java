@@ -16,15 +16,25 @@
 
 package com.vsthost.rnd;
 
+import com.vsthost.rnd.commons.math.ext.linear.ArgSort;
 import com.vsthost.rnd.commons.math.ext.linear.DMatrixUtils;
+import com.vsthost.rnd.commons.math.ext.linear.DVectorExpr;
+import com.vsthost.rnd.commons.math.ext.linear.ParameterGrid;
+import com.vsthost.rnd.commons.math.ext.linear.Scans;
+import com.vsthost.rnd.commons.math.ext.linear.Selection;
+import com.vsthost.rnd.commons.math.ext.linear.TopK;
+import com.vsthost.rnd.commons.math.ext.linear.TtbdSampler;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.math3.distribution.UniformRealDistribution;
 import org.apache.commons.math3.random.MersenneTwister;
 import org.apache.commons.math3.random.RandomGenerator;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.stream.IntStream;
 
 /**
@@ -83,6 +93,63 @@ public class DMatrixUtilsTest extends TestCase {
         this.assertEquals(-2.5, DMatrixUtils.median(new double[]{-1, -2, -3, -4}));
     }
 
+    /**
+     * Testing median and quantiles by selection against sorting.
+     */
+    public void testQuantiles() {
+        // Test simple cases:
+        this.assertEquals(3.0, DMatrixUtils.median(new double[]{1, Double.NaN, 3}));
+        this.assertTrue(Double.isNaN(DMatrixUtils.median(new double[]{})));
+        this.assertTrue(Arrays.equals(new double[]{1.0, 2.5, 4.0, 1.75}, DMatrixUtils.quantiles(new double[]{4, 1, 3, 2}, 0.0, 0.5, 1.0, 0.25)));
+
+        // Test random vectors with many ties against sorting:
+        final RandomGenerator randomGenerator = new MersenneTwister(42);
+        for (int length : new int[]{1, 2, 17, 1000, 100001}) {
+            for (int modulo : new int[]{3, 1000000}) {
+                final double[] vector = new double[length];
+                for (int i = 0; i < length; i++) {
+                    vector[i] = randomGenerator.nextInt(modulo);
+                }
+                final double[] sorted = vector.clone();
+                Arrays.sort(sorted);
+                final double expected = length % 2 == 1 ? sorted[length / 2] : (sorted[length / 2 - 1] + sorted[length / 2]) / 2;
+                this.assertEquals(expected, DMatrixUtils.median(vector));
+                this.assertEquals(expected, DMatrixUtils.medianInPlace(vector.clone()));
+                final double[] quantiles = DMatrixUtils.quantiles(vector, 0.1, 0.9, 0.0, 1.0);
+                this.assertEquals(sorted[0], quantiles[2]);
+                this.assertEquals(sorted[length - 1], quantiles[3]);
+                final double position = (length - 1) * 0.9;
+                final int rank = (int) Math.floor(position);
+                this.assertEquals(sorted[rank] + (position - rank) * (sorted[Math.min(rank + 1, length - 1)] - sorted[rank]), quantiles[1], 1E-9);
+            }
+        }
+
+        // Test the signs of zeros against sorting, which orders -0.0 before 0.0:
+        final double[] values = new double[]{-0.0, 0.0, -0.0, 0.0, 1.0, -1.0, Double.NaN};
+        for (int length = 1; length < 300; length += 7) {
+            final double[] vector = new double[length];
+            for (int i = 0; i < length; i++) {
+                vector[i] = values[randomGenerator.nextInt(length % 2 == 0 ? 4 : values.length)];
+            }
+            final double[] sorted = vector.clone();
+            Arrays.sort(sorted);
+            final double[] rearranged = vector.clone();
+            final double[] quantiles = DMatrixUtils.quantilesInPlace(rearranged, 0.0, 0.3, 0.5, 1.0);
+            Arrays.sort(rearranged);
+            this.assertTrue(Arrays.equals(sorted, rearranged));
+            this.assertEquals(length % 2 == 1 ? sorted[length / 2] : (sorted[length / 2 - 1] + sorted[length / 2]) / 2, DMatrixUtils.median(vector));
+            this.assertEquals(sorted[0], quantiles[0]);
+            this.assertEquals(sorted[length - 1], quantiles[3]);
+            this.assertEquals(sorted[length / 3], Selection.selectInPlace(vector.clone(), length / 3));
+        }
+
+        // Test sorted and reverse sorted vectors which are adversarial for naive pivots:
+        final double[] ascending = IntStream.range(0, 100000).asDoubleStream().toArray();
+        final double[] descending = IntStream.range(0, 100000).map(i -> 100000 - i).asDoubleStream().toArray();
+        this.assertEquals(49999.5, DMatrixUtils.median(ascending));
+        this.assertEquals(50000.5, DMatrixUtils.median(descending));
+    }
+
     /**
      * Testing sequence generation.
      */
@@ -122,6 +189,101 @@ public class DMatrixUtilsTest extends TestCase {
         this.assertEquals(2.0, sequence[2]);
     }
 
+    /**
+     * Testing selection by predicates, bitmasks and bit sets.
+     */
+    public void testSelectByPredicate() {
+        // Create a vector and a predicate:
+        final double[] vector = IntStream.range(0, 150).asDoubleStream().toArray();
+        final boolean[] predicate = new boolean[vector.length];
+        final BitSet bitSet = new BitSet();
+        for (int i = 0; i < vector.length; i++) {
+            predicate[i] = i % 3 == 0 || i == 149;
+            bitSet.set(i, predicate[i]);
+        }
+
+        // Define the expected selection:
+        final double[] expected = IntStream.range(0, 150).filter(i -> i % 3 == 0 || i == 149).asDoubleStream().toArray();
+
+        // Check all paths:
+        this.assertTrue(Arrays.equals(expected, DMatrixUtils.selectByPredicate(vector, predicate)));
+        this.assertTrue(Arrays.equals(expected, DMatrixUtils.selectByPredicate(vector, ArrayUtils.toObject(predicate))));
+        this.assertTrue(Arrays.equals(expected, DMatrixUtils.selectByPredicate(vector, DMatrixUtils.bitmask(predicate))));
+        this.assertTrue(Arrays.equals(expected, DMatrixUtils.selectByPredicate(vector, bitSet)));
+        this.assertTrue(Arrays.equals(expected, DMatrixUtils.selectByPredicate(vector, x -> x % 3 == 0 || x == 149)));
+        this.assertTrue(Arrays.equals(bitSet.toLongArray(), DMatrixUtils.bitmask(predicate)));
+
+        // Bits beyond the length of values are ignored:
+        this.assertTrue(Arrays.equals(new double[]{0, 3}, DMatrixUtils.selectByPredicate(Arrays.copyOf(vector, 5), DMatrixUtils.bitmask(predicate))));
+        this.assertTrue(Arrays.equals(new double[]{0, 3}, DMatrixUtils.selectByPredicate(Arrays.copyOf(vector, 5), bitSet)));
+        this.assertEquals(0, DMatrixUtils.selectByPredicate(new double[]{}, new long[]{-1L}).length);
+    }
+
+    /**
+     * Testing the order of elements against a boxed, comparator-based stable sort.
+     */
+    public void testGetOrder() {
+        // Test simple cases:
+        this.assertTrue(Arrays.equals(new int[]{1, 2, 0}, DMatrixUtils.getOrder(new double[]{3, 1, 2})));
+        this.assertTrue(Arrays.equals(new int[]{0, 2, 1}, DMatrixUtils.getOrder(new double[]{3, 1, 2}, true)));
+        this.assertTrue(Arrays.equals(new int[]{3, 1, 0, 2}, DMatrixUtils.getOrder(new double[]{0.0, -0.0, Double.NaN, -1.0})));
+        this.assertTrue(Arrays.equals(new int[]{1, 2, 0}, DMatrixUtils.getOrder(new int[]{3, 1, 2})));
+        this.assertEquals(0, DMatrixUtils.getOrder(new double[]{}).length);
+
+        // Test random vectors with many ties in both directions:
+        final RandomGenerator randomGenerator = new MersenneTwister(42);
+        for (int length : new int[]{10, 100, 5000, 200000}) {
+            final double[] doubles = new double[length];
+            final int[] ints = new int[length];
+            for (int i = 0; i < length; i++) {
+                doubles[i] = randomGenerator.nextInt(100) - 50.5;
+                ints[i] = i % 3 == 0 ? randomGenerator.nextInt() : randomGenerator.nextInt(50);
+            }
+            final int[] indices = IntStream.range(0, length).map(i -> length - 1 - i).toArray();
+            for (boolean descending : new boolean[]{false, true}) {
+                final Integer[] expectedDoubles = IntStream.of(indices).boxed().toArray(Integer[]::new);
+                Arrays.sort(expectedDoubles, (o1, o2) -> descending ? Double.compare(doubles[o2], doubles[o1]) : Double.compare(doubles[o1], doubles[o2]));
+                final Integer[] expectedInts = IntStream.of(indices).boxed().toArray(Integer[]::new);
+                Arrays.sort(expectedInts, (o1, o2) -> descending ? Integer.compare(ints[o2], ints[o1]) : Integer.compare(ints[o1], ints[o2]));
+                this.assertTrue(Arrays.equals(ArrayUtils.toPrimitive(expectedDoubles), DMatrixUtils.getOrder(doubles, indices, descending)));
+                this.assertTrue(Arrays.equals(ArrayUtils.toPrimitive(expectedDoubles), ArgSort.parallelOrder(doubles, indices, descending)));
+                this.assertTrue(Arrays.equals(ArrayUtils.toPrimitive(expectedInts), DMatrixUtils.getOrder(ints, indices, descending)));
+                this.assertTrue(Arrays.equals(ArrayUtils.toPrimitive(expectedInts), ArgSort.parallelOrder(ints, indices, descending)));
+            }
+        }
+    }
+
+    /**
+     * Testing top-k selection against the full order.
+     */
+    public void testGetTopK() {
+        // Test simple cases:
+        this.assertTrue(Arrays.equals(new int[]{0, 2}, DMatrixUtils.getTopK(new double[]{3, 1, 2}, 2, true)));
+        this.assertTrue(Arrays.equals(new int[]{1, 2, 0}, DMatrixUtils.getTopK(new int[]{3, 1, 2}, 5, false)));
+        this.assertEquals(0, DMatrixUtils.getTopK(new double[]{3, 1, 2}, 0, true).length);
+
+        // Test random vectors with many ties in both directions:
+        final RandomGenerator randomGenerator = new MersenneTwister(42);
+        for (int length : new int[]{10, 1000, 300000}) {
+            final double[] doubles = new double[length];
+            final int[] ints = new int[length];
+            for (int i = 0; i < length; i++) {
+                doubles[i] = randomGenerator.nextInt(1000) / 10.0;
+                ints[i] = randomGenerator.nextInt(1000);
+            }
+            for (boolean descending : new boolean[]{false, true}) {
+                for (int k : new int[]{1, 7, 100}) {
+                    final int[] expectedDoubles = Arrays.copyOf(DMatrixUtils.getOrder(doubles, descending), Math.min(k, length));
+                    final int[] expectedInts = Arrays.copyOf(DMatrixUtils.getOrder(ints, descending), Math.min(k, length));
+                    this.assertTrue(Arrays.equals(expectedDoubles, DMatrixUtils.getTopK(doubles, k, descending)));
+                    this.assertTrue(Arrays.equals(expectedDoubles, TopK.parallelSelect(doubles, k, descending)));
+                    this.assertTrue(Arrays.equals(expectedInts, DMatrixUtils.getTopK(ints, k, descending)));
+                    this.assertTrue(Arrays.equals(expectedInts, TopK.parallelSelect(ints, k, descending)));
+                }
+            }
+        }
+    }
+
     /**
      * Testing rounding to up/down.
      */
@@ -143,6 +305,45 @@ public class DMatrixUtilsTest extends TestCase {
         this.assertEquals(new BigDecimal("0.150"), DMatrixUtils.roundToClosest(0.161234, 0.025));
     }
 
+    /**
+     * Testing batch rounding against the scalar rounding.
+     */
+    public void testRoundArrays() {
+        // Create values off, on and in the middle of grids:
+        final RandomGenerator randomGenerator = new MersenneTwister(42);
+        for (double steps : new double[]{0.025, 0.01, 0.3, 1.0 / 3, 5, 1E-8, 1E7, -0.5}) {
+            final double[] values = new double[30000];
+            for (int i = 0; i < values.length; i++) {
+                switch (i % 3) {
+                    case 0:
+                        values[i] = randomGenerator.nextGaussian() * 100;
+                        break;
+                    case 1:
+                        values[i] = (randomGenerator.nextInt(2001) - 1000) * steps;
+                        break;
+                    default:
+                        values[i] = (randomGenerator.nextInt(2001) - 1000 + 0.5) * steps;
+                }
+            }
+            values[0] = -0.0;
+            values[1] = 1E300;
+
+            // Check against scalar methods:
+            final double[] down = DMatrixUtils.roundDownTo(values, steps);
+            final double[] up = DMatrixUtils.roundUpTo(values, steps);
+            final double[] closest = DMatrixUtils.roundToClosest(values, steps);
+            for (int i = 0; i < values.length; i++) {
+                this.assertEquals(down[i], DMatrixUtils.roundDownTo(values[i], steps).doubleValue());
+                this.assertEquals(up[i], DMatrixUtils.roundUpTo(values[i], steps).doubleValue());
+                this.assertEquals(closest[i], DMatrixUtils.roundToClosest(values[i], steps).doubleValue());
+            }
+            this.assertTrue(Arrays.equals(closest, DMatrixUtils.parallelRoundToClosest(values, steps)));
+        }
+
+        // Check the example from the scalar tests:
+        this.assertTrue(Arrays.equals(new double[]{0.0, 0.175, 0.0, 0.025, 0.15}, DMatrixUtils.roundToClosest(new double[]{0.0012345, 0.171234, 0.012445, 0.012645, 0.161234}, 0.025)));
+    }
+
     /**
      * Testing ZMBD with predefined args.
      */
@@ -228,6 +429,65 @@ public class DMatrixUtilsTest extends TestCase {
         IntStream.range(0, 1000).forEach(e -> this.testZmbdRandom());
     }
 
+    /**
+     * Testing TTBD and its reusable sampler.
+     */
+    public void testTtbd() {
+        // Outputs of the original implementation for MersenneTwister(42) and target 1.5:
+        final double[] lower1 = new double[]{0.0, 0.1, 0.2, 0.3, 0.25};
+        final double[] upper1 = new double[]{0.5, 0.4, 0.2, 0.6, 0.35};
+        final double[][] expected1 = new double[][]{
+            {0.45639605278160744, 0.14679835632432214, 0.2, 0.3468055908940706, 0.35},
+            {0.48495492877065216, 0.10617534841483042, 0.2, 0.4588697228145173, 0.25},
+            {0.20625168257649892, 0.4, 0.2, 0.3912726742550126, 0.3024756431684886},
+            {0.14607232789513103, 0.26729148760207155, 0.2, 0.6, 0.2866361845027973},
+            {0.2962072824445582, 0.1139351257381159, 0.2, 0.5398575918173261, 0.35},
+        };
+        this.assertTtbdGolden(1.5, lower1, upper1, 42, expected1);
+
+        // Outputs of the original implementation for MersenneTwister(11) and target 2.0:
+        final double[] lower2 = new double[]{0.0, 0.5, -1.0, 0.2};
+        final double[] upper2 = new double[]{1.0, 1.5, 1.0, 0.8};
+        final double[][] expected2 = new double[][]{
+            {0.10517515965442503, 1.4262829634577572, 0.15207250504805048, 0.31646937183976703},
+            {0.7299644755387593, 0.5, 0.5700355244612405, 0.2},
+            {0.6725102368069231, 1.087665843443373, -0.40227781183973876, 0.6421017315894426},
+            {0.7589795875739862, 0.657912299411733, -0.10785709907077812, 0.6909652120850589},
+            {0.8640042257898024, 1.2748306184939056, -0.431921772824706, 0.293086928540998},
+        };
+        this.assertTtbdGolden(2.0, lower2, upper2, 11, expected2);
+
+        // Check constraints of many samples:
+        final double[][] samples = new TtbdSampler(1.5, lower1, upper1).sample(new MersenneTwister(42), 100);
+        for (int i = 0; i < samples.length; i++) {
+            this.assertEquals(1.5, DMatrixUtils.sum(samples[i]), 1E-8);
+            for (int j = 0; j < lower1.length; j++) {
+                this.assertTrue(lower1[j] - 1E-12 <= samples[i][j] && samples[i][j] <= upper1[j] + 1E-12);
+            }
+        }
+    }
+
+    /**
+     * Asserts that {@link DMatrixUtils#ttbd} and a sampler, one by one and in bulk, draw the expected samples bit-by-bit.
+     *
+     * @param target The target total.
+     * @param lower Lower limits.
+     * @param upper Upper limits.
+     * @param seed The seed of the random generators.
+     * @param expected The expected samples.
+     */
+    private void assertTtbdGolden(double target, double[] lower, double[] upper, int seed, double[][] expected) {
+        final TtbdSampler sampler = new TtbdSampler(target, lower, upper);
+        final RandomGenerator randomGenerator1 = new MersenneTwister(seed);
+        final RandomGenerator randomGenerator2 = new MersenneTwister(seed);
+        final double[][] bulk = sampler.sample(new MersenneTwister(seed), expected.length);
+        for (int i = 0; i < expected.length; i++) {
+            this.assertTrue(Arrays.equals(expected[i], DMatrixUtils.ttbd(target, lower, upper, randomGenerator1)));
+            this.assertTrue(Arrays.equals(expected[i], sampler.sample(randomGenerator2)));
+            this.assertTrue(Arrays.equals(expected[i], bulk[i]));
+        }
+    }
+
     /**
      * Testing {@link DMatrixUtils#applyIndices(double[], int[])}
      */
@@ -267,6 +527,197 @@ public class DMatrixUtilsTest extends TestCase {
         this.assertEquals(-2.0, DMatrixUtils.ensureLimit(new double[]{-2.0}, 0, false)[0]);
     }
 
+    /**
+     * Testing destination, range and in-place overloads.
+     */
+    public void testDestinationOverloads () {
+        // Define vectors:
+        final double[] vector1 = new double[]{3, -1, 4, -1, 5};
+        final double[] vector2 = new double[]{2, 7, -1, 8, 2};
+
+        // Test pairwise ops into destinations and ranges:
+        final double[] buffer = new double[7];
+        this.assertTrue(Arrays.equals(DMatrixUtils.pairwiseMin(vector1, vector2), DMatrixUtils.pairwiseMin(vector1, vector2, new double[5])));
+        this.assertTrue(Arrays.equals(new double[]{0, 4, 8, 5, 0, 0, 0}, DMatrixUtils.pairwiseMax(vector1, 2, vector2, 2, buffer, 1, 3)));
+        this.assertSame(buffer, DMatrixUtils.pairwiseMax(vector1, 0, vector2, 0, buffer, 0, 5));
+        this.assertTrue(Arrays.equals(DMatrixUtils.pairwiseMax(vector1, vector2), Arrays.copyOf(buffer, 5)));
+
+        // Test in-place ops:
+        final double[] copy = vector1.clone();
+        this.assertSame(copy, DMatrixUtils.ensureLimitInPlace(copy, 0, true));
+        this.assertTrue(Arrays.equals(DMatrixUtils.ensureLimit(vector1, 0, true), copy));
+        this.assertTrue(Arrays.equals(DMatrixUtils.cumsum(vector1), DMatrixUtils.cumsumInPlace(vector1.clone())));
+        this.assertTrue(Arrays.equals(new double[]{3, 2, 6, 5, 10}, DMatrixUtils.cumsum(vector1)));
+        this.assertEquals(0, DMatrixUtils.cumsum(new double[0]).length);
+
+        // Test sequence, repeat and indices into ranges:
+        Arrays.fill(buffer, 0);
+        this.assertTrue(Arrays.equals(new double[]{0, 1, 2, 3, 0, 0, 0}, DMatrixUtils.sequence(1, 3, buffer, 1, 3)));
+        this.assertTrue(Arrays.equals(new double[]{0, 1, 2, 3, 9, 9, 0}, DMatrixUtils.repeat(9, buffer, 4, 2)));
+        this.assertTrue(Arrays.equals(new double[]{5, 3, 2, 3, 9, 9, 0}, DMatrixUtils.applyIndices(vector1, new int[]{4, 0}, 0, buffer, 0, 2)));
+
+        // Test rejected ranges and aliasing:
+        try {
+            DMatrixUtils.applyIndices(buffer, new int[]{1, 0}, buffer);
+            this.fail("Gathering in-place should be rejected.");
+        }
+        catch (IllegalArgumentException exception) {
+            // Expected.
+        }
+        try {
+            DMatrixUtils.cumsum(buffer, 0, buffer, 1, 3);
+            this.fail("Overlapping ranges should be rejected.");
+        }
+        catch (IllegalArgumentException exception) {
+            // Expected.
+        }
+        try {
+            DMatrixUtils.ensureLimit(vector1, 0, true, new double[4]);
+            this.fail("Short destinations should be rejected.");
+        }
+        catch (IllegalArgumentException exception) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Testing lazy range and cartesian grids.
+     */
+    public void testParameterGrid () {
+        // Check the range grid against sequences:
+        final double[] lower = new double[]{0, 1.2, -5};
+        final double[] upper = new double[]{1, 2, 5};
+        final double[][] matrix = DMatrixUtils.matrixFromRange(lower, upper, 7);
+        for (int col = 0; col < lower.length; col++) {
+            final double[] sequence = DMatrixUtils.sequence(lower[col], upper[col], 7);
+            for (int row = 0; row < sequence.length; row++) {
+                this.assertEquals(sequence[row], matrix[row][col]);
+                this.assertEquals(sequence[row], ParameterGrid.range(lower, upper, 7).getEntry(row, col));
+            }
+        }
+
+        // Check that extra upper bounds are ignored as before:
+        this.assertTrue(Arrays.deepEquals(matrix, DMatrixUtils.matrixFromRange(lower, new double[]{1, 2, 5, 9}, 7)));
+
+        // Check the cartesian grid decoding:
+        final ParameterGrid grid = ParameterGrid.cartesian(new double[]{1, 2}, new double[]{10, 20, 30}, new double[]{100, 200, 300, 400});
+        this.assertEquals(24, grid.getRowDimension());
+        this.assertEquals(3, grid.getColumnDimension());
+        this.assertTrue(Arrays.equals(new double[]{1, 10, 100}, grid.getPoint(0)));
+        this.assertTrue(Arrays.equals(new double[]{1, 10, 200}, grid.getPoint(1)));
+        this.assertTrue(Arrays.equals(new double[]{2, 30, 400}, grid.getPoint(23)));
+        this.assertEquals(20.0, grid.getEntry(17, 1));
+
+        // Check streams against decoding, including splits of a large grid:
+        final ParameterGrid large = ParameterGrid.cartesian(new double[]{0, 0, 0}, new double[]{1, 1, 1}, new int[]{17, 31, 43});
+        final double[][] points = large.parallelStream().toArray(double[][]::new);
+        this.assertEquals(large.getRowDimension(), points.length);
+        for (int row = 0; row < points.length; row++) {
+            this.assertTrue(Arrays.equals(large.getPoint(row), points[row]));
+        }
+        this.assertEquals(large.stream().mapToDouble(point -> point[2]).sum(), large.parallelStream().mapToDouble(point -> point[2]).sum(), 1E-9);
+
+        // Check that huge grids are lazy:
+        final double[] axis = DMatrixUtils.sequence(0, 1, 1000);
+        final ParameterGrid huge = ParameterGrid.cartesian(axis, axis, axis, axis, axis);
+        this.assertEquals(1000000000000000L, huge.getRowDimension());
+        this.assertEquals(1.0, huge.getEntry(huge.getRowDimension() - 1, 0));
+        this.assertEquals(5, huge.stream().skip(123).limit(5).count());
+    }
+
+    /**
+     * Testing prefix scans, sequentially and in parallel.
+     */
+    public void testScans () {
+        // Test simple cases:
+        this.assertTrue(Arrays.equals(new double[]{3, -3, -12, 12, 60}, DMatrixUtils.cumprod(new double[]{3, -1, 4, -1, 5})));
+        this.assertTrue(Arrays.equals(new double[]{3, -1, -1, -1, -1}, DMatrixUtils.cummin(new double[]{3, -1, 4, -1, 5})));
+        this.assertTrue(Arrays.equals(new double[]{3, 3, 4, 4, 5}, DMatrixUtils.cummax(new double[]{3, -1, 4, -1, 5})));
+        this.assertTrue(Arrays.equals(new double[]{-0.0, 1.0}, DMatrixUtils.cumsum(new double[]{-0.0, 1.0})));
+        this.assertEquals(0, DMatrixUtils.parallelCumsum(new double[0]).length);
+
+        // Create a long random vector with a large offset to make rounding errors visible:
+        final RandomGenerator randomGenerator = new MersenneTwister(42);
+        final double[] vector = new double[100007];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = randomGenerator.nextDouble() + (i == 0 ? 1E10 : 0);
+        }
+
+        // Compute exact sums as reference:
+        final double[] exact = new double[vector.length];
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < vector.length; i++) {
+            total = total.add(new BigDecimal(vector[i]));
+            exact[i] = total.doubleValue();
+        }
+
+        // Check sums:
+        final double[] sequential = DMatrixUtils.cumsum(vector);
+        final double[] parallel = DMatrixUtils.parallelCumsum(vector);
+        final double[] compensated = Scans.scan(vector, Scans.Operation.COMPENSATED_SUM);
+        final double[] parallelCompensated = Scans.parallelScan(vector, Scans.Operation.COMPENSATED_SUM);
+        for (int i = 0; i < vector.length; i++) {
+            this.assertEquals(exact[i], sequential[i], 1E-1);
+            this.assertEquals(exact[i], parallel[i], 1E-1);
+            this.assertEquals(exact[i], compensated[i], Math.ulp(exact[i]));
+            this.assertEquals(exact[i], parallelCompensated[i], Math.ulp(exact[i]));
+        }
+
+        // Check that parallel mins and maxs are exact, also in-place:
+        this.assertTrue(Arrays.equals(Scans.scan(vector, Scans.Operation.MAX), Scans.parallelScan(vector, Scans.Operation.MAX)));
+        final double[] copy = vector.clone();
+        Scans.parallelScan(copy, 0, copy, 0, copy.length, Scans.Operation.MIN);
+        this.assertTrue(Arrays.equals(DMatrixUtils.cummin(vector), copy));
+    }
+
+    /**
+     * Testing fused vector expressions against respective chained calls.
+     */
+    public void testVectorExpr () {
+        // Create random vectors spanning multiple blocks:
+        final RandomGenerator randomGenerator = new MersenneTwister(42);
+        final int length = 100003;
+        final double[] a = new double[length];
+        final double[] b = new double[length];
+        for (int i = 0; i < length; i++) {
+            a[i] = randomGenerator.nextGaussian();
+            b[i] = randomGenerator.nextGaussian();
+        }
+
+        // Check element-wise results:
+        final double[] expected = DMatrixUtils.ensureLimit(DMatrixUtils.pairwiseMin(a, b), 0, true);
+        final DVectorExpr expression = DVectorExpr.of(a).min(b).clampLow(0);
+        this.assertTrue(Arrays.equals(expected, expression.toArray()));
+        this.assertTrue(Arrays.equals(expected, expression.parallelToArray()));
+
+        // Check sums:
+        this.assertEquals(DMatrixUtils.sum(expected), expression.sum(), 1E-9);
+        this.assertEquals(expression.sum(), expression.parallelSum());
+        this.assertEquals(DMatrixUtils.sumOfAbsolutes(b), DVectorExpr.of(b).parallelSumOfAbsolutes(), 1E-9);
+
+        // Check nested expressions as operands:
+        final double[] nested = DVectorExpr.of(a).abs().max(DVectorExpr.of(b).multiply(2).add(1)).subtract(a).toArray();
+        for (int i = 0; i < length; i++) {
+            this.assertEquals(Math.max(Math.abs(a[i]), b[i] * 2 + 1) - a[i], nested[i]);
+        }
+
+        // Check evaluation into a source vector:
+        final double[] copy = a.clone();
+        DVectorExpr.of(copy).map(x -> x * x).add(copy).into(copy, 0);
+        for (int i = 0; i < length; i++) {
+            this.assertEquals(a[i] * a[i] + a[i], copy[i]);
+        }
+
+        // Check length mismatch:
+        try {
+            DVectorExpr.of(a).min(new double[1]);
+            this.fail("Length mismatch should be rejected.");
+        }
+        catch (IllegalArgumentException exception) {
+            // Expected.
+        }
+    }
+
     /**
      * Convenience method to test boundaries.
      *
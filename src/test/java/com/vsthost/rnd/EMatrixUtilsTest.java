@@ -1,11 +1,34 @@
 package com.vsthost.rnd;
 
+import com.vsthost.rnd.commons.math.ext.linear.ColumnStats;
+import com.vsthost.rnd.commons.math.ext.linear.CsrRealMatrix;
 import com.vsthost.rnd.commons.math.ext.linear.EMatrixUtils;
+import com.vsthost.rnd.commons.math.ext.linear.FlatRealMatrix;
+import com.vsthost.rnd.commons.math.ext.linear.IOUtils;
+import com.vsthost.rnd.commons.math.ext.linear.MappedRealMatrix;
+import com.vsthost.rnd.commons.math.ext.linear.ParallelSampling;
+import com.vsthost.rnd.commons.math.ext.linear.Resampling;
+import com.vsthost.rnd.commons.math.ext.linear.RowAccumulator;
+import com.vsthost.rnd.commons.math.ext.linear.RowBuffer;
+import com.vsthost.rnd.commons.math.ext.linear.RowIndexedRealMatrix;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import org.apache.commons.math3.linear.BlockRealMatrix;
+import org.apache.commons.math3.linear.DefaultRealMatrixChangingVisitor;
 import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.OpenMapRealMatrix;
 import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.stat.correlation.Covariance;
+import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.commons.math3.util.MathArrays;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Unit tests for EMatrixUtils.
@@ -82,6 +105,31 @@ public class EMatrixUtilsTest extends TestCase
         assertEquals(rowSums[0], 0.0);
     }
 
+    public void testCumsums()
+    {
+        // Create a sample matrix:
+        RealMatrix testMatrix = MatrixUtils.createRealMatrix(new double[][]{new double[]{1, 2, 3}, new double[]{10, 20, 30}, new double[]{100, 200, 300}});
+
+        // Compute column and row cumulative sums:
+        RealMatrix colCumsums = EMatrixUtils.colCumsums(testMatrix);
+        RealMatrix rowCumsums = EMatrixUtils.rowCumsums(testMatrix);
+
+        // Test individual values:
+        assertEquals(3.0, colCumsums.getRow(0)[2]);
+        assertEquals(33.0, colCumsums.getRow(1)[2]);
+        assertEquals(333.0, colCumsums.getRow(2)[2]);
+        assertEquals(100.0, rowCumsums.getRow(2)[0]);
+        assertEquals(300.0, rowCumsums.getRow(2)[1]);
+        assertEquals(600.0, rowCumsums.getRow(2)[2]);
+
+        // Test that the last row and column are the column and row sums:
+        assertTrue(java.util.Arrays.equals(colCumsums.getRow(2), EMatrixUtils.colSums(testMatrix)));
+        assertEquals(60.0, rowCumsums.getColumn(2)[1]);
+
+        // Test that the original matrix is not modified:
+        assertEquals(300.0, testMatrix.getEntry(2, 2));
+    }
+
     public void testColMeans()
     {
         // Create a sample matrix:
@@ -285,6 +333,13 @@ public class EMatrixUtilsTest extends TestCase
         assertEquals(1.52753, stds[0], 0.00001);
         assertEquals(3.05505, stds[1], 0.00001);
         assertEquals(6.42910, stds[2], 0.00001);
+
+        // Check a single column as descriptive statistics do:
+        double[] single = EMatrixUtils.rowStdDevs(testMatrix.getSubMatrix(0, 2, 1, 1));
+        for (int row = 0; row < 3; row++) {
+            assertEquals(new DescriptiveStatistics(new double[]{testMatrix.getEntry(row, 1)}).getStandardDeviation(), single[row]);
+            assertTrue(Double.isNaN(single[row]));
+        }
     }
 
     public void testColStd () {
@@ -300,6 +355,582 @@ public class EMatrixUtilsTest extends TestCase
         assertEquals(7.63763, stds[0], 0.00001);
         assertEquals(8.00000, stds[1], 0.00001);
         assertEquals(12.2202, stds[2], 0.00001);
+
+        // Check a single row as descriptive statistics do:
+        RealMatrix single = testMatrix.getSubMatrix(1, 1, 0, 2);
+        for (double[] result : new double[][]{EMatrixUtils.columnStdDevs(single), EMatrixUtils.parallelColumnStdDevs(single)}) {
+            for (int col = 0; col < 3; col++) {
+                assertEquals(new DescriptiveStatistics(new double[]{testMatrix.getEntry(1, col)}).getStandardDeviation(), result[col]);
+                assertTrue(Double.isNaN(result[col]));
+            }
+        }
+    }
+
+    public void testFlatRealMatrix () {
+        // Create a sample matrix:
+        double[] data = new double[]{1, 2, 3, 10, 20, 30};
+        FlatRealMatrix testMatrix = new FlatRealMatrix(data, 2, 3);
+        assertEquals(30.0, testMatrix.getEntry(1, 2));
+        assertEquals(10.0, testMatrix.getRow(1)[0]);
+        assertEquals(20.0, testMatrix.getColumn(1)[1]);
+        assertEquals(60.0, testMatrix.operate(new double[]{1, 1, 1})[1]);
+
+        // Check that the column-major layout yields the same matrix as the transpose of the row-major layout:
+        FlatRealMatrix columnMajor = new FlatRealMatrix(data, 0, 3, 2, 1, 3);
+        assertEquals(columnMajor, testMatrix.transpose());
+        assertEquals(columnMajor, testMatrix.transposeView());
+        assertTrue(testMatrix.isRowMajor());
+        assertFalse(columnMajor.isRowMajor());
+
+        // Check that views share data:
+        RealMatrix columns = EMatrixUtils.getColumRange(testMatrix, 1, 2);
+        assertEquals(MatrixUtils.createRealMatrix(new double[][]{new double[]{2, 3}, new double[]{20, 30}}), columns);
+        columns.setEntry(1, 1, 31);
+        assertEquals(31.0, data[5]);
+        testMatrix.rowView(0).setEntry(0, 2, 4);
+        assertEquals(4.0, testMatrix.columnView(2).getEntry(0, 0));
+        assertEquals(10.0, EMatrixUtils.getRowRange(testMatrix, 1, 1).getEntry(0, 0));
+        testMatrix.transposeView().setEntry(0, 1, 11);
+        assertEquals(11.0, data[3]);
+
+        // Check that copies do not share data:
+        testMatrix.getSubMatrix(0, 1, 0, 0).setEntry(0, 0, 0);
+        testMatrix.copy().setEntry(0, 0, 0);
+        assertEquals(1.0, data[0]);
+
+        // Check walks in row and column order on a sub-matrix view:
+        FlatRealMatrix view = testMatrix.subMatrixView(0, 1, 1, 2);
+        assertEquals(0.0, view.walkInColumnOrder(new DefaultRealMatrixChangingVisitor() {
+            @Override
+            public double visit(int row, int column, double value) {
+                return value * 2;
+            }
+        }));
+        assertEquals(1.0, data[0]);
+        assertEquals(4.0, data[1]);
+        assertEquals(62.0, data[5]);
+        assertEquals(44.0, EMatrixUtils.colSums(view)[0]);
+
+        // Check the bounds of layouts:
+        try {
+            new FlatRealMatrix(data, 1, 2, 3, 3, 1);
+            fail("Out of bounds layouts must be rejected.");
+        }
+        catch (IllegalArgumentException exception) {
+            // Expected.
+        }
+    }
+
+    public void testMappedRealMatrix () throws IOException {
+        // Create a sample matrix:
+        RealMatrix testMatrix = MatrixUtils.createRealMatrix(new double[][]{new double[]{1, 2, 3}, new double[]{10, 20, 30}});
+
+        // Check the off-heap matrix:
+        MappedRealMatrix offHeap = new MappedRealMatrix(2, 3);
+        offHeap.setRow(0, testMatrix.getRow(0));
+        offHeap.setRow(1, testMatrix.getRow(1));
+        assertEquals(testMatrix, offHeap);
+        assertEquals(33.0, EMatrixUtils.colSums(offHeap)[2]);
+
+        // Write and map the matrix:
+        File file = File.createTempFile("matrix", ".bin");
+        file.deleteOnExit();
+        IOUtils.writeBinaryMatrix(testMatrix, file.getPath());
+        assertEquals(16 + 6 * 8, file.length());
+        MappedRealMatrix mapped = IOUtils.mapMatrix(file.getPath());
+        assertEquals(testMatrix, mapped);
+        assertEquals(11.0, EMatrixUtils.colMeans(mapped)[1]);
+
+        // Check writes through a writable mapping:
+        IOUtils.mapMatrix(file.getPath(), true).setEntry(1, 2, 300);
+        assertEquals(300.0, mapped.getEntry(1, 2));
+    }
+
+    public void testShuffleRows ()
+    {
+        // Create a sample matrix and the expected permutation:
+        double[][] data = new double[100][3];
+        for (int row = 0; row < data.length; row++) {
+            data[row] = new double[]{row, 2 * row, 3 * row};
+        }
+        RealMatrix testMatrix = MatrixUtils.createRealMatrix(data);
+        int[] index = MathArrays.sequence(data.length, 0, 1);
+        MathArrays.shuffle(index, new MersenneTwister(42));
+
+        // Check the copying shuffle:
+        RealMatrix shuffled = EMatrixUtils.shuffleRows(testMatrix, new MersenneTwister(42));
+        for (int row = 0; row < data.length; row++) {
+            assertEquals(2.0 * index[row], shuffled.getEntry(row, 1));
+        }
+        assertEquals(shuffled, EMatrixUtils.parallelShuffleRows(testMatrix, new MersenneTwister(42)));
+
+        // Check the view, which must not touch the data:
+        RowIndexedRealMatrix view = EMatrixUtils.shuffledRowsView(testMatrix, new MersenneTwister(42));
+        assertEquals(shuffled, view);
+        assertEquals(1.0, testMatrix.getEntry(1, 0));
+        view.setEntry(0, 0, -1);
+        assertEquals(-1.0, testMatrix.getEntry(index[0], 0));
+        view.setEntry(0, 0, index[0]);
+
+        // Check in-place shuffles of reference-swapped and cycle-permuted matrices:
+        assertEquals(shuffled, EMatrixUtils.shuffleRowsInPlace(testMatrix.copy(), new MersenneTwister(42)));
+        FlatRealMatrix flat = new FlatRealMatrix(data);
+        assertSame(EMatrixUtils.shuffleRowsInPlace(flat, new MersenneTwister(42)), flat);
+        assertEquals(shuffled, flat);
+
+        // Check the shuffle with the thread-local generator:
+        assertEquals(EMatrixUtils.colSums(testMatrix)[2], EMatrixUtils.colSums(EMatrixUtils.shuffleRows(testMatrix))[2]);
+    }
+
+    public void testNonSquareSums ()
+    {
+        // Create a non-square matrix large enough to be reduced in parallel:
+        double[][] data = new double[1000][100];
+        for (int row = 0; row < data.length; row++) {
+            for (int col = 0; col < data[row].length; col++) {
+                data[row][col] = row + col / 100.0;
+            }
+        }
+
+        // Check sums of all storage types:
+        for (RealMatrix matrix : new RealMatrix[]{MatrixUtils.createRealMatrix(data), new BlockRealMatrix(data), new FlatRealMatrix(data)}) {
+            double[] rowSums = EMatrixUtils.rowSums(matrix);
+            assertEquals(1000, rowSums.length);
+            assertEquals(99900.0 + 49.5, rowSums[999], 1E-9);
+            double[] colSums = EMatrixUtils.colSums(matrix);
+            assertEquals(100, colSums.length);
+            assertEquals(499500.0 + 990.0, colSums[99], 1E-6);
+            assertEquals(colSums[99], EMatrixUtils.parallelColSums(matrix)[99], 1E-6);
+            assertEquals(rowSums[999], EMatrixUtils.parallelRowSums(matrix)[999]);
+            assertEquals(0.495, EMatrixUtils.rowMeans(matrix)[0], 1E-12);
+        }
+
+        // Check that rows are summed from left to right regardless of the storage type:
+        MersenneTwister random = new MersenneTwister(3);
+        for (double[] row : data) {
+            for (int col = 0; col < row.length; col++) {
+                row[col] = random.nextGaussian() * Math.pow(10, random.nextInt(12));
+            }
+        }
+        double[] expected = new double[data.length];
+        for (int row = 0; row < data.length; row++) {
+            for (double value : data[row]) {
+                expected[row] += value;
+            }
+        }
+        FlatRealMatrix columnMajor = new FlatRealMatrix(new FlatRealMatrix(MatrixUtils.createRealMatrix(data).transpose().getData()).getDataRef(), 0, 1000, 100, 1, 1000);
+        for (RealMatrix matrix : new RealMatrix[]{MatrixUtils.createRealMatrix(data), new BlockRealMatrix(data), new FlatRealMatrix(data), columnMajor}) {
+            assertTrue(Arrays.equals(EMatrixUtils.rowSums(matrix), expected));
+        }
+    }
+
+    public void testColumnStats ()
+    {
+        // Create a sample matrix with a large offset to challenge the numerical stability:
+        MersenneTwister random = new MersenneTwister(7);
+        double[][] data = new double[2000][40];
+        for (double[] row : data) {
+            for (int col = 0; col < row.length; col++) {
+                row[col] = 1E9 + col + random.nextGaussian();
+            }
+        }
+        RealMatrix testMatrix = MatrixUtils.createRealMatrix(data);
+
+        // Check against descriptive statistics:
+        ColumnStats stats = ColumnStats.of(testMatrix);
+        ColumnStats parallelStats = ColumnStats.parallelOf(testMatrix);
+        assertEquals(2000, stats.getN());
+        for (int col = 0; col < 40; col++) {
+            DescriptiveStatistics expected = new DescriptiveStatistics(testMatrix.getColumn(col));
+            assertEquals(expected.getMean(), stats.getMeans()[col], 1E-5);
+            assertEquals(expected.getStandardDeviation(), stats.getStandardDeviations()[col], 1E-6);
+            assertEquals(expected.getMin(), stats.getMins()[col]);
+            assertEquals(expected.getMax(), stats.getMaxs()[col]);
+            assertEquals(expected.getVariance(), parallelStats.getVariances()[col], 1E-6);
+            assertEquals(expected.getStandardDeviation(), EMatrixUtils.parallelColumnStdDevs(testMatrix)[col], 1E-6);
+        }
+
+        // Check merging and degenerate cases:
+        ColumnStats merged = new ColumnStats(40);
+        merged.addRows(testMatrix, 0, 1);
+        assertTrue(Double.isNaN(merged.getVariances()[0]));
+        ColumnStats rest = new ColumnStats(40);
+        rest.addRows(testMatrix, 1, 2000);
+        merged.merge(rest);
+        assertEquals(stats.getMeans()[39], merged.getMeans()[39], 1E-5);
+        assertEquals(stats.getVariances()[39], merged.getVariances()[39], 1E-6);
+        assertTrue(Double.isNaN(new ColumnStats(1).getStandardDeviations()[0]));
+    }
+
+    public void testRowAccumulator ()
+    {
+        // Create a sample matrix:
+        MersenneTwister random = new MersenneTwister(11);
+        double[][] data = new double[5000][8];
+        for (double[] row : data) {
+            for (int col = 0; col < row.length; col++) {
+                row[col] = col * random.nextDouble();
+            }
+        }
+        RealMatrix testMatrix = MatrixUtils.createRealMatrix(data);
+
+        // Accumulate rows one at a time and in shards:
+        RowAccumulator accumulator = new RowAccumulator(8);
+        for (double[] row : data) {
+            accumulator.add(row);
+        }
+        RowAccumulator shard1 = new RowAccumulator(8);
+        shard1.add(Arrays.copyOfRange(data, 0, 1234));
+        RowAccumulator shard2 = new RowAccumulator(8);
+        shard2.add(Arrays.copyOfRange(data, 1234, 5000));
+        shard1.merge(shard2);
+
+        // Accumulate a parallel stream of rows:
+        RowAccumulator collected = Arrays.stream(data).parallel().collect(RowAccumulator.collector(8));
+
+        // Check:
+        for (RowAccumulator result : new RowAccumulator[]{accumulator, shard1, collected}) {
+            assertEquals(5000, result.getN());
+            for (int col = 0; col < 8; col++) {
+                assertEquals(EMatrixUtils.colSums(testMatrix)[col], result.getSums()[col], 1E-9);
+                assertEquals(EMatrixUtils.colMeans(testMatrix)[col], result.getMeans()[col], 1E-12);
+                assertEquals(EMatrixUtils.columnStdDevs(testMatrix)[col], result.getStandardDeviations()[col], 1E-12);
+                assertEquals(accumulator.getMins()[col], result.getMins()[col]);
+                assertEquals(accumulator.getMaxs()[col], result.getMaxs()[col]);
+            }
+        }
+    }
+
+    public void testBroadcasts ()
+    {
+        // Create a non-square sample matrix:
+        RealMatrix testMatrix = MatrixUtils.createRealMatrix(new double[][]{new double[]{1, 2, 3}, new double[]{10, 20, 30}});
+
+        // Check column and row broadcasts:
+        assertEquals(MatrixUtils.createRealMatrix(new double[][]{new double[]{0, 1, 2}, new double[]{0, 10, 20}}), EMatrixUtils.colSubtract(testMatrix, new double[]{1, 10}));
+        assertEquals(MatrixUtils.createRealMatrix(new double[][]{new double[]{2, 3, 4}, new double[]{20, 30, 40}}), EMatrixUtils.columnAdd(testMatrix, new double[]{1, 10}));
+        assertEquals(MatrixUtils.createRealMatrix(new double[][]{new double[]{0, 0, 0}, new double[]{9, 18, 27}}), EMatrixUtils.rowSubtract(testMatrix, new double[]{1, 2, 3}));
+        assertEquals(33.0, EMatrixUtils.rowAdd(testMatrix, new double[]{1, 2, 3}).getEntry(1, 2));
+        assertEquals(-30.0, EMatrixUtils.rbrMultiply(testMatrix, MatrixUtils.createRealVector(new double[]{1, 0, -1})).getRow(1)[2]);
+
+        // Check fused broadcasts:
+        RealMatrix standardized = EMatrixUtils.standardize(testMatrix, new double[]{1, 2, 3}, new double[]{9, 18, 27});
+        assertEquals(MatrixUtils.createRealMatrix(new double[][]{new double[]{0, 0, 0}, new double[]{1, 1, 1}}), standardized);
+        assertEquals(62.0, EMatrixUtils.affineByColumn(testMatrix, new double[]{2, 2, 2}, new double[]{0, 1, 2}).getEntry(1, 2));
+
+        // Check in-place and destination variants on other storage types:
+        RealMatrix flat = new FlatRealMatrix(testMatrix.getData());
+        assertSame(EMatrixUtils.rowSubtract(flat, new double[]{1, 2, 3}, flat), flat);
+        assertEquals(27.0, flat.getEntry(1, 2));
+        RealMatrix destination = new BlockRealMatrix(2, 3);
+        EMatrixUtils.rbrMultiply(testMatrix, new double[]{2, 2, 2}, destination);
+        assertEquals(40.0, destination.getEntry(1, 1));
+
+        // Check parallel fused broadcasts:
+        double[][] data = new double[1000][100];
+        for (int row = 0; row < data.length; row++) {
+            Arrays.fill(data[row], row);
+        }
+        RealMatrix large = MatrixUtils.createRealMatrix(data);
+        ColumnStats stats = ColumnStats.of(large);
+        RealMatrix expected = EMatrixUtils.standardize(large, stats.getMeans(), stats.getStandardDeviations());
+        EMatrixUtils.parallelStandardize(large, stats.getMeans(), stats.getStandardDeviations(), large);
+        assertEquals(expected, large);
+        assertEquals(1.0, ColumnStats.of(large).getStandardDeviations()[99], 1E-12);
+        EMatrixUtils.parallelAffineByColumn(large, stats.getStandardDeviations(), stats.getMeans(), large);
+        assertEquals(999.0, large.getEntry(999, 0), 1E-9);
+
+        // Check dimensions:
+        try {
+            EMatrixUtils.colSubtract(testMatrix, new double[]{1, 2, 3});
+            fail("Vectors of the wrong length must be rejected.");
+        }
+        catch (IllegalArgumentException exception) {
+            // Expected.
+        }
+    }
+
+    public void testRowBuffer ()
+    {
+        // Create sample matrices:
+        RealMatrix m1 = MatrixUtils.createRealMatrix(new double[][]{new double[]{1, 2}, new double[]{3, 4}});
+        RealMatrix m2 = new BlockRealMatrix(new double[][]{new double[]{5, 6}});
+
+        // Check rbind:
+        RealMatrix bound = EMatrixUtils.rbind(m1, m2);
+        assertEquals(3, bound.getRowDimension());
+        assertEquals(6.0, bound.getEntry(2, 1));
+
+        // Append rows, batches and matrices beyond the initial capacity:
+        RowBuffer buffer = new RowBuffer(2, 1);
+        for (int i = 0; i < 100; i++) {
+            buffer.add(m1).add(m2).add(new double[]{7, 8}).add(new double[][]{new double[]{9, 10}});
+        }
+        buffer.add(new FlatRealMatrix(bound.getData()));
+        assertEquals(503, buffer.getRowDimension());
+        assertTrue(buffer.getCapacity() >= 503);
+
+        // Check the view:
+        FlatRealMatrix view = buffer.toMatrix();
+        assertEquals(503, view.getRowDimension());
+        assertEquals(9.0, view.getEntry(4, 0));
+        assertEquals(6.0, view.getEntry(502, 1));
+        assertEquals(100 * 25.0 + 9.0, EMatrixUtils.colSums(view)[0]);
+        assertEquals(bound, EMatrixUtils.getRowRange(view, 500, 502));
+        assertEquals(503, buffer.trimToSize().getCapacity());
+        assertEquals(8.0, buffer.toArray()[3][1]);
+
+        // Check dimensions:
+        try {
+            buffer.add(new double[]{1, 2, 3});
+            fail("Rows of the wrong length must be rejected.");
+        }
+        catch (IllegalArgumentException exception) {
+            // Expected.
+        }
     }
 
+    public void testMultiply ()
+    {
+        // Create sample matrices spanning several tiles:
+        MersenneTwister random = new MersenneTwister(13);
+        double[][] data1 = new double[130][300];
+        double[][] data2 = new double[300][270];
+        for (double[] row : data1) {
+            for (int col = 0; col < row.length; col++) {
+                row[col] = random.nextGaussian();
+            }
+        }
+        for (double[] row : data2) {
+            for (int col = 0; col < row.length; col++) {
+                row[col] = random.nextGaussian();
+            }
+        }
+        RealMatrix m1 = MatrixUtils.createRealMatrix(data1);
+        RealMatrix m2 = MatrixUtils.createRealMatrix(data2);
+        RealMatrix expected = m1.multiply(m2);
+
+        // Check products of all storage types and transposes:
+        RealMatrix product = EMatrixUtils.multiply(m1, m2);
+        assertEquals(0.0, product.subtract(expected).getNorm(), 1E-10);
+        assertEquals(product, EMatrixUtils.parallelMultiply(m1, m2));
+        assertEquals(0.0, EMatrixUtils.multiply(new BlockRealMatrix(data1), new FlatRealMatrix(data2)).subtract(expected).getNorm(), 1E-10);
+        assertEquals(0.0, EMatrixUtils.transposeMultiply(m1.transpose(), m2).subtract(expected).getNorm(), 1E-10);
+        assertEquals(0.0, EMatrixUtils.parallelMultiplyTransposed(m1, m2.transpose()).subtract(expected).getNorm(), 1E-10);
+        assertEquals(0.0, EMatrixUtils.multiply(new FlatRealMatrix(data1), new FlatRealMatrix(m2.transpose().getData()).transposeView()).subtract(expected).getNorm(), 1E-10);
+
+        // Check matrix-vector products:
+        double[] vector1 = m2.getColumn(0);
+        double[] vector2 = m2.getColumn(1);
+        assertEquals(0.0, MatrixUtils.createRealVector(EMatrixUtils.operate(m1, vector1)).subtract(m1.operate(MatrixUtils.createRealVector(vector1))).getNorm(), 1E-10);
+        assertEquals(EMatrixUtils.operate(m1, vector1)[7], EMatrixUtils.parallelOperate(m1, vector1)[7]);
+        assertEquals(0.0, MatrixUtils.createRealVector(EMatrixUtils.preMultiply(vector2, m2)).subtract(m2.preMultiply(MatrixUtils.createRealVector(vector2))).getNorm(), 1E-10);
+        assertEquals(EMatrixUtils.preMultiply(vector2, m2)[7], EMatrixUtils.parallelPreMultiply(vector2, m2)[7]);
+
+        // Check dimensions:
+        try {
+            EMatrixUtils.multiply(m1, m1);
+            fail("Incompatible dimensions must be rejected.");
+        }
+        catch (IllegalArgumentException exception) {
+            // Expected.
+        }
+    }
+
+    public void testCovariance ()
+    {
+        // Create a sample matrix spanning several tiles with offset columns:
+        MersenneTwister random = new MersenneTwister(17);
+        double[][] data = new double[500][300];
+        for (double[] row : data) {
+            for (int col = 0; col < row.length; col++) {
+                row[col] = 1E4 + col + random.nextGaussian() + (col > 0 ? 0.5 * row[col - 1] : 0.0);
+            }
+        }
+        RealMatrix matrix = MatrixUtils.createRealMatrix(data);
+        RealMatrix expected = new Covariance(matrix).getCovarianceMatrix();
+
+        // Check covariances:
+        RealMatrix covariance = EMatrixUtils.covariance(matrix);
+        assertEquals(0.0, covariance.subtract(expected).getNorm(), 1E-9);
+        assertEquals(0.0, EMatrixUtils.parallelCovariance(matrix).subtract(expected).getNorm(), 1E-9);
+        assertEquals(0.0, EMatrixUtils.streamingCovariance(matrix, 64).subtract(expected).getNorm(), 1E-9);
+        assertEquals(0.0, EMatrixUtils.streamingCovariance(new FlatRealMatrix(data), 1000).subtract(expected).getNorm(), 1E-9);
+        assertEquals(covariance.transpose(), covariance);
+
+        // Check correlations:
+        RealMatrix correlation = EMatrixUtils.correlation(matrix);
+        assertEquals(0.0, correlation.subtract(new PearsonsCorrelation(matrix).getCorrelationMatrix()).getNorm(), 1E-9);
+        assertEquals(0.0, EMatrixUtils.parallelCorrelation(matrix).subtract(correlation).getNorm(), 1E-12);
+        assertEquals(1.0, correlation.getEntry(7, 7));
+
+        // Check constant columns, of which variances are exactly zero and correlations are NaN:
+        for (double constant : new double[]{0.1, 0.7, 1.3}) {
+            double[][] small = new double[7][2];
+            for (int row = 0; row < small.length; row++) {
+                small[row][0] = row * row;
+                small[row][1] = constant;
+            }
+            RealMatrix smallMatrix = MatrixUtils.createRealMatrix(small);
+            assertEquals(0.0, EMatrixUtils.covariance(smallMatrix).getEntry(1, 1));
+            assertEquals(0.0, EMatrixUtils.covariance(smallMatrix).getEntry(0, 1));
+            assertEquals(0.0, EMatrixUtils.streamingCovariance(smallMatrix, 3).getEntry(1, 1));
+            RealMatrix smallCorrelation = EMatrixUtils.correlation(smallMatrix);
+            assertEquals(1.0, smallCorrelation.getEntry(0, 0));
+            assertTrue(Double.isNaN(smallCorrelation.getEntry(1, 1)));
+            assertTrue(Double.isNaN(smallCorrelation.getEntry(0, 1)));
+            assertTrue(Double.isNaN(new PearsonsCorrelation(smallMatrix).getCorrelationMatrix().getEntry(0, 1)));
+        }
+
+        // Check dimensions:
+        try {
+            EMatrixUtils.covariance(matrix.getRowMatrix(0));
+            fail("Single rows must be rejected.");
+        }
+        catch (IllegalArgumentException exception) {
+            // Expected.
+        }
+    }
+
+    public void testSparse ()
+    {
+        // Create a sparse sample matrix and its dense copy:
+        MersenneTwister random = new MersenneTwister(19);
+        OpenMapRealMatrix matrix = new OpenMapRealMatrix(300, 200);
+        for (int i = 0; i < 900; i++) {
+            matrix.setEntry(random.nextInt(300), random.nextInt(200), random.nextGaussian());
+        }
+        RealMatrix dense = MatrixUtils.createRealMatrix(matrix.getData());
+        CsrRealMatrix csr = CsrRealMatrix.of(matrix);
+        assertEquals(0.0, csr.subtract(dense).getNorm());
+        assertEquals(csr.getEntryCount(), CsrRealMatrix.of(dense).getEntryCount());
+
+        // Check reductions:
+        assertTrue(Arrays.equals(EMatrixUtils.colSums(matrix), EMatrixUtils.colSums(dense)));
+        assertTrue(Arrays.equals(EMatrixUtils.colSums(csr), EMatrixUtils.colSums(dense)));
+        assertTrue(Arrays.equals(EMatrixUtils.parallelColSums(matrix), EMatrixUtils.colSums(dense)));
+        assertTrue(Arrays.equals(EMatrixUtils.rowSums(matrix), EMatrixUtils.rowSums(dense)));
+        assertTrue(Arrays.equals(EMatrixUtils.parallelRowSums(csr), EMatrixUtils.rowSums(dense)));
+        assertTrue(Arrays.equals(EMatrixUtils.rowSums(dense), EMatrixUtils.parallelRowSums(matrix)));
+
+        // Check broadcasts:
+        double[] vector = new double[200];
+        for (int col = 0; col < vector.length; col++) {
+            vector[col] = col - 100;
+        }
+        RealMatrix expected = EMatrixUtils.rbrMultiply(dense, MatrixUtils.createRealVector(vector));
+        RealMatrix product = EMatrixUtils.rbrMultiply(csr, MatrixUtils.createRealVector(vector));
+        assertTrue(product instanceof CsrRealMatrix);
+        assertEquals(0.0, product.subtract(expected).getNorm());
+        RealMatrix openMapProduct = EMatrixUtils.rbrMultiply(matrix, MatrixUtils.createRealVector(vector));
+        assertTrue(openMapProduct instanceof CsrRealMatrix);
+        assertEquals(0.0, openMapProduct.subtract(expected).getNorm());
+        assertEquals(0.0, csr.subtract(dense).getNorm());
+        assertEquals(0.0, EMatrixUtils.rbrMultiply(csr, vector, csr).subtract(expected).getNorm());
+        assertEquals(0.0, EMatrixUtils.rbrMultiply(matrix, vector, matrix).subtract(expected).getNorm());
+
+        // Check that non-finite elements multiply zeros as for dense matrices:
+        double[] special = vector.clone();
+        special[3] = Double.NaN;
+        special[5] = Double.POSITIVE_INFINITY;
+        RealMatrix expectedSpecial = EMatrixUtils.rbrMultiply(expected, MatrixUtils.createRealVector(special));
+        RealMatrix productSpecial = EMatrixUtils.rbrMultiply(csr, MatrixUtils.createRealVector(special));
+        RealMatrix inPlaceSpecial = EMatrixUtils.rbrMultiply(csr.copy(), special, csr.copy());
+        CsrRealMatrix sameSpecial = csr.copy();
+        EMatrixUtils.rbrMultiply(sameSpecial, special, sameSpecial);
+        RealMatrix openMapSpecial = EMatrixUtils.rbrMultiply(matrix, MatrixUtils.createRealVector(special));
+        RealMatrix sameOpenMapSpecial = matrix.copy();
+        EMatrixUtils.rbrMultiply(sameOpenMapSpecial, special, sameOpenMapSpecial);
+        for (int row = 0; row < 300; row++) {
+            assertTrue(Double.isNaN(productSpecial.getEntry(row, 3)) && !Double.isFinite(productSpecial.getEntry(row, 5)));
+            for (int col = 0; col < 200; col++) {
+                // Note that sparse matrices do not keep the sign of zeros:
+                final double value = expectedSpecial.getEntry(row, col);
+                for (RealMatrix actual : new RealMatrix[]{productSpecial, inPlaceSpecial, sameSpecial, openMapSpecial, sameOpenMapSpecial}) {
+                    assertTrue(actual.getEntry(row, col) == value || Double.isNaN(value) && Double.isNaN(actual.getEntry(row, col)));
+                }
+            }
+        }
+
+        // Check shuffles and row-binding (of the multiplied matrices):
+        RealMatrix shuffled = EMatrixUtils.shuffleRows(csr, new MersenneTwister(23));
+        assertTrue(shuffled instanceof CsrRealMatrix);
+        assertEquals(0.0, shuffled.subtract(EMatrixUtils.shuffleRows(expected, new MersenneTwister(23))).getNorm());
+        RealMatrix openMapShuffled = EMatrixUtils.shuffleRows(matrix, new MersenneTwister(23));
+        assertTrue(openMapShuffled instanceof CsrRealMatrix);
+        assertEquals(0.0, shuffled.subtract(openMapShuffled).getNorm());
+        assertEquals(shuffled, EMatrixUtils.parallelShuffleRows(matrix, new MersenneTwister(23)));
+        assertEquals(shuffled, EMatrixUtils.parallelShuffleRows(csr, new MersenneTwister(23)));
+        RealMatrix bound = EMatrixUtils.rbind(csr, csr);
+        assertTrue(bound instanceof CsrRealMatrix);
+        assertEquals(0.0, bound.subtract(EMatrixUtils.rbind(expected, expected)).getNorm());
+        RealMatrix openMapBound = EMatrixUtils.rbind(matrix, csr);
+        assertTrue(openMapBound instanceof CsrRealMatrix);
+        assertEquals(0.0, openMapBound.subtract(bound).getNorm());
+        assertEquals(600, bound.getRowDimension());
+
+        // Check updates:
+        csr.setEntry(0, 0, 5.0);
+        csr.addToEntry(299, 199, 1.0);
+        assertEquals(5.0, csr.getEntry(0, 0));
+        assertEquals(dense.getEntry(299, 199) * vector[199] + 1.0, csr.getEntry(299, 199));
+    }
+
+    public void testResampling ()
+    {
+        // Create a sample matrix:
+        MersenneTwister random = new MersenneTwister(29);
+        double[][] data = new double[100][5];
+        int[] strata = new int[100];
+        for (int row = 0; row < data.length; row++) {
+            for (int col = 0; col < data[row].length; col++) {
+                data[row][col] = random.nextGaussian();
+            }
+            strata[row] = row % 3 == 0 ? 7 : -2;
+        }
+        RealMatrix matrix = MatrixUtils.createRealMatrix(data);
+
+        // Check bootstrap samples:
+        RowIndexedRealMatrix sample = Resampling.bootstrap(matrix, new MersenneTwister(31));
+        assertEquals(100, sample.getRowDimension());
+        assertSame(sample.getMatrix(), matrix);
+        assertTrue(Arrays.equals(EMatrixUtils.colSums(sample), EMatrixUtils.colSums(sample.copy())));
+        assertTrue(Arrays.equals(EMatrixUtils.rowSums(sample), EMatrixUtils.rowSums(sample.copy())));
+
+        // Check the parallel bootstrap against sequential replicates:
+        double[][] statistics = Resampling.bootstrap(matrix, 50, EMatrixUtils::colMeans, 37L);
+        assertEquals(50, statistics.length);
+        assertTrue(Arrays.equals(statistics[42], EMatrixUtils.colMeans(Resampling.bootstrap(matrix, ParallelSampling.randomGenerator(37L, 42)))));
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            assertTrue(Arrays.deepEquals(statistics, Resampling.bootstrap(matrix, 50, EMatrixUtils::colMeans, 37L, pool)));
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        // Check k-fold splits:
+        Resampling.Split[] splits = Resampling.kFold(matrix, 3, new MersenneTwister(41));
+        boolean[] tested = new boolean[100];
+        for (Resampling.Split split : splits) {
+            assertEquals(100, split.getTraining().getRowDimension() + split.getTest().getRowDimension());
+            for (int row : split.getTest().getIndexRef()) {
+                assertFalse(tested[row]);
+                tested[row] = true;
+            }
+            for (int row : split.getTraining().getIndexRef()) {
+                assertFalse(Arrays.stream(split.getTest().getIndexRef()).anyMatch(x -> x == row));
+            }
+        }
+
+        // Check subsamples:
+        RowIndexedRealMatrix subsample = Resampling.subsample(matrix, 10, new MersenneTwister(43));
+        assertEquals(10, Arrays.stream(subsample.getIndexRef()).distinct().count());
+        RowIndexedRealMatrix stratified = Resampling.stratifiedSubsample(matrix, strata, 0.3, new MersenneTwister(47));
+        assertEquals(20 + 10, stratified.getRowDimension());
+        for (int row = 0; row < stratified.getRowDimension(); row++) {
+            assertEquals(row < 20 ? -2 : 7, strata[stratified.getIndexRef()[row]]);
+        }
+        assertEquals(30, Arrays.stream(stratified.getIndexRef()).distinct().count());
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd;
+
+import com.vsthost.rnd.commons.math.ext.linear.DMatrixUtils;
+import com.vsthost.rnd.commons.math.ext.linear.ParallelSampling;
+import com.vsthost.rnd.commons.math.ext.linear.ZmbdSampler;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.commons.math3.random.MersenneTwister;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Unit tests for ZmbdSampler.
+ */
+public class ZmbdSamplerTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName name of the test case.
+     */
+    public ZmbdSamplerTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Creates a test suit.
+     *
+     * @return the suite of tests being tested.
+     */
+    public static Test suite() {
+        return new TestSuite(ZmbdSamplerTest.class);
+    }
+
+    /**
+     * Testing that the sampler and {@link DMatrixUtils#zmbd} reproduce the outputs of the original
+     * (pre-sampler) implementation bit-by-bit for the same random generator state.
+     */
+    public void testSameAsZmbd() {
+        // Outputs of the original implementation for MersenneTwister(42) and target mean 0.5:
+        final double[] lower1 = new double[]{-4.0, -1.0, -1.0, -4.0, -2.0};
+        final double[] upper1 = new double[]{+1.0, +5.0, +1.0, +1.0, -2.0};
+        final double[][] expected1 = new double[][]{
+            {1.0, -0.0, 1.0, -0.0, -2.0},
+            {-0.0, -0.0, -0.0, 1.0, -2.0},
+            {-0.0, 1.0, 1.0, -0.0, -2.0},
+            {-0.0, 1.0, -0.0, 1.0, -2.0},
+            {-0.0, 2.0, -0.0, -0.0, -2.0},
+        };
+        this.assertGolden(lower1, upper1, 0.5, 42, expected1);
+
+        // Outputs of the original implementation for MersenneTwister(7) and target mean 0.0:
+        final double[] lower2 = new double[]{-1.0, -2.0, -3.0, -0.5};
+        final double[] upper2 = new double[]{+1.0, +2.0, +3.0, +0.5};
+        final double[][] expected2 = new double[][]{
+            {-0.9564458049376361, 0.1810277784107741, 0.9564458049376361, -0.1810277784107741},
+            {-0.0384958723764246, -0.0044818572249072375, 0.0044818572249072375, 0.0384958723764246},
+            {0.0, -1.936358541257233, 1.436358541257233, 0.5},
+            {-0.23811774274878772, -0.30373903111873934, 0.23811774274878772, 0.30373903111873934},
+            {-0.19403156956114387, 0.6892691200729324, -0.6892691200729324, 0.19403156956114387},
+        };
+        this.assertGolden(lower2, upper2, 0.0, 7, expected2);
+    }
+
+    /**
+     * Asserts that both a sampler and {@link DMatrixUtils#zmbd} draw the expected samples bit-by-bit.
+     *
+     * @param lower Lower distances.
+     * @param upper Upper distances.
+     * @param targetMean The target mean.
+     * @param seed The seed of the random generators.
+     * @param expected The expected samples.
+     */
+    private void assertGolden(double[] lower, double[] upper, double targetMean, int seed, double[][] expected) {
+        final ZmbdSampler sampler = new ZmbdSampler(lower, upper, targetMean);
+        final MersenneTwister randomGenerator1 = new MersenneTwister(seed);
+        final MersenneTwister randomGenerator2 = new MersenneTwister(seed);
+        for (double[] row : expected) {
+            this.assertTrue(Arrays.equals(row, sampler.sample(randomGenerator1)));
+            this.assertTrue(Arrays.equals(row, DMatrixUtils.zmbd(lower, upper, targetMean, randomGenerator2)));
+        }
+    }
+
+    /**
+     * Testing bulk sampling into flat and matrix destinations.
+     */
+    public void testBulk() {
+        final double[] lower = new double[]{-1.0, -2.0, -3.0};
+        final double[] upper = new double[]{+1.0, +2.0, +3.0};
+        final ZmbdSampler sampler = new ZmbdSampler(lower, upper);
+
+        // Sample into a flat array with an offset:
+        final double[] flat = new double[2 + 10 * 3];
+        sampler.sample(new MersenneTwister(7), flat, 2, 10);
+
+        // Sample into a matrix:
+        final double[][] matrix = sampler.sample(new MersenneTwister(7), 10);
+
+        // Check:
+        for (int row = 0; row < matrix.length; row++) {
+            this.assertTrue(Arrays.equals(matrix[row], Arrays.copyOfRange(flat, 2 + row * 3, 2 + row * 3 + 3)));
+            this.assertEquals(0.0, DMatrixUtils.sum(matrix[row]), 1E-8);
+            for (int col = 0; col < 3; col++) {
+                this.assertTrue(lower[col] <= matrix[row][col] && matrix[row][col] <= upper[col]);
+            }
+        }
+
+        // Expecting exception for insufficient destination:
+        try {
+            sampler.sample(new MersenneTwister(7), new double[8], 0, 3);
+            fail("Insufficient destination must fail.");
+        } catch (IllegalArgumentException exception) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Testing that parallel sampling is reproducible regardless of the number of threads.
+     */
+    public void testParallel() {
+        final double[] lower = new double[]{-1.0, -2.0, -3.0, -0.5};
+        final double[] upper = new double[]{+1.0, +2.0, +3.0, +0.5};
+        final ZmbdSampler sampler = new ZmbdSampler(lower, upper);
+        final int count = 3 * ParallelSampling.STREAM_LENGTH + 17;
+
+        // Sample with a single thread and with many threads:
+        final double[][] single = new double[count][lower.length];
+        final double[] many = new double[count * lower.length];
+        final ForkJoinPool pool1 = new ForkJoinPool(1);
+        final ForkJoinPool pool4 = new ForkJoinPool(4);
+        ParallelSampling.sample(sampler, 42L, single, pool1);
+        ParallelSampling.sample(sampler, 42L, many, 0, count, pool4);
+        pool1.shutdown();
+        pool4.shutdown();
+
+        // Check that results are identical:
+        for (int row = 0; row < count; row++) {
+            this.assertTrue(Arrays.equals(single[row], Arrays.copyOfRange(many, row * lower.length, (row + 1) * lower.length)));
+        }
+
+        // Check that a stream can be reproduced sequentially:
+        final double[][] stream = sampler.sample(ParallelSampling.randomGenerator(42L, 2), ParallelSampling.STREAM_LENGTH);
+        for (int row = 0; row < stream.length; row++) {
+            this.assertTrue(Arrays.equals(stream[row], single[2 * ParallelSampling.STREAM_LENGTH + row]));
+        }
+
+        // Check that a different seed gives different results:
+        this.assertFalse(Arrays.equals(single[0], ParallelSampling.zmbd(lower, upper, 0.0, 1, 43L)[0]));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.commons.math3.linear.BlockRealMatrix;
+import org.apache.commons.math3.linear.OpenMapRealMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Unit tests for the conversion of matrices by {@link CsrRealMatrix#of}.
+ */
+public class CsrRealMatrixTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName name of the test case.
+     */
+    public CsrRealMatrixTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Creates a test suit.
+     *
+     * @return the suite of tests being tested.
+     */
+    public static Test suite() {
+        return new TestSuite(CsrRealMatrixTest.class);
+    }
+
+    /**
+     * Testing the conversion of matrices by {@link CsrRealMatrix#of}.
+     */
+    public void testOf() {
+        // Check the conversion, including an entry set to zero (ie. removed from the map):
+        final OpenMapRealMatrix matrix = new OpenMapRealMatrix(4, 3);
+        matrix.setEntry(3, 2, 1.5);
+        matrix.setEntry(0, 1, -2.0);
+        matrix.setEntry(3, 0, 4.0);
+        matrix.setEntry(1, 1, 7.0);
+        matrix.setEntry(1, 1, 0.0);
+        final CsrRealMatrix csr = CsrRealMatrix.of(matrix);
+        assertEquals(3, csr.getEntryCount());
+        assertTrue(Arrays.equals(new int[]{0, 1, 1, 1, 3}, csr.getRowPointersRef()));
+        assertTrue(Arrays.equals(new int[]{1, 0, 2}, csr.getColumnIndicesRef()));
+        assertEquals(0.0, csr.subtract(matrix).getNorm());
+
+        // Check that dense matrices walked block by block are converted the same, growing the arrays:
+        final BlockRealMatrix block = new BlockRealMatrix(70, 90);
+        for (int i = 0; i < 200; i++) {
+            block.setEntry(i % 70, (i * 13) % 90, i + 1.0);
+        }
+        final CsrRealMatrix fromBlock = CsrRealMatrix.of(block);
+        assertEquals(200, fromBlock.getEntryCount());
+        assertEquals(0.0, fromBlock.subtract(block).getNorm());
+        assertEquals(0.0, CsrRealMatrix.of(fromBlock).subtract(block).getNorm());
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.commons.math3.linear.DefaultRealMatrixChangingVisitor;
+import org.apache.commons.math3.linear.DefaultRealMatrixPreservingVisitor;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link MappedRealMatrix} split into tiny segments.
+ *
+ * <p>
+ *
+ * This lives in the package of {@link MappedRealMatrix} to use the package-private segment sizes, so
+ * that rows cross segment boundaries as they do in matrices of more than {@value MappedRealMatrix#SEGMENT_SIZE}
+ * entries.
+ */
+public class MappedRealMatrixTest extends TestCase {
+    /**
+     * Defines the number of entries per segment, which is not a multiple of the number of columns.
+     */
+    private static final int SEGMENT_SIZE = 8;
+
+    /**
+     * Create the test case.
+     *
+     * @param testName name of the test case.
+     */
+    public MappedRealMatrixTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Creates a test suit.
+     *
+     * @return the suite of tests being tested.
+     */
+    public static Test suite() {
+        return new TestSuite(MappedRealMatrixTest.class);
+    }
+
+    /**
+     * Returns a sample matrix of 9 rows and 5 columns, ie. 45 entries in 6 segments.
+     *
+     * @return The sample matrix.
+     */
+    private static RealMatrix sample() {
+        final double[][] data = new double[9][5];
+        for (int row = 0; row < data.length; row++) {
+            for (int col = 0; col < data[row].length; col++) {
+                data[row][col] = (row + 1) * 0.1 + col * 1E3 + (row * col % 3 == 0 ? 1E-9 : -1E9);
+            }
+        }
+        return MatrixUtils.createRealMatrix(data);
+    }
+
+    /**
+     * Testing reads, writes, walks and sums across segment boundaries.
+     */
+    public void testSegments() {
+        // Fill the matrix entry by entry and row by row:
+        final RealMatrix expected = MappedRealMatrixTest.sample();
+        final MappedRealMatrix matrix = new MappedRealMatrix(9, 5, SEGMENT_SIZE);
+        for (int row = 0; row < 9; row++) {
+            if (row % 2 == 0) {
+                matrix.setRow(row, expected.getRow(row));
+            }
+            else {
+                for (int col = 0; col < 5; col++) {
+                    matrix.setEntry(row, col, expected.getEntry(row, col));
+                }
+            }
+        }
+
+        // Check entries and rows:
+        for (int row = 0; row < 9; row++) {
+            assertTrue(Arrays.equals(expected.getRow(row), matrix.getRow(row)));
+            for (int col = 0; col < 5; col++) {
+                assertEquals(expected.getEntry(row, col), matrix.getEntry(row, col));
+            }
+        }
+        assertEquals(expected, matrix.copy());
+        assertTrue(matrix.createMatrix(9, 5) instanceof MappedRealMatrix);
+
+        // Check the walk order:
+        final int[] visited = new int[1];
+        matrix.walkInOptimizedOrder(new DefaultRealMatrixPreservingVisitor() {
+            @Override
+            public void visit(int row, int column, double value) {
+                assertEquals(visited[0] / 5, row);
+                assertEquals(visited[0] % 5, column);
+                assertEquals(expected.getEntry(row, column), value);
+                visited[0]++;
+            }
+        });
+        assertEquals(45, visited[0]);
+
+        // Check sums, which must be the same as of arrays:
+        assertTrue(Arrays.equals(EMatrixUtils.colSums(expected), EMatrixUtils.colSums(matrix)));
+        assertTrue(Arrays.equals(EMatrixUtils.rowSums(expected), EMatrixUtils.rowSums(matrix)));
+        for (int from = 0; from < 9; from++) {
+            final double[] totals = new double[5];
+            matrix.addColumnSums(from, 9, totals);
+            assertTrue(Arrays.equals(EMatrixUtils.colSums(expected.getSubMatrix(from, 8, 0, 4)), totals));
+        }
+
+        // Check changing walks:
+        matrix.walkInRowOrder(new DefaultRealMatrixChangingVisitor() {
+            @Override
+            public double visit(int row, int column, double value) {
+                return value * 2;
+            }
+        });
+        assertEquals(expected.scalarMultiply(2), matrix);
+    }
+
+    /**
+     * Testing writing and mapping files across segment boundaries.
+     *
+     * @throws IOException As thrown by the file channel.
+     */
+    public void testMapping() throws IOException {
+        // Write a matrix of tiny segments:
+        final RealMatrix expected = MappedRealMatrixTest.sample();
+        final MappedRealMatrix source = new MappedRealMatrix(9, 5, SEGMENT_SIZE);
+        source.setSubMatrix(expected.getData(), 0, 0);
+        final File file = File.createTempFile("matrix", ".bin");
+        file.deleteOnExit();
+        IOUtils.writeBinaryMatrix(source, file.getPath());
+        assertEquals(MappedRealMatrix.HEADER_SIZE + 45 * 8, file.length());
+
+        // Map with tiny and default segments:
+        final MappedRealMatrix mapped = MappedRealMatrix.map(file.toPath(), false, SEGMENT_SIZE);
+        assertEquals(expected, mapped);
+        assertEquals(expected, IOUtils.mapMatrix(file.getPath()));
+        assertTrue(Arrays.equals(EMatrixUtils.colSums(expected), EMatrixUtils.colSums(mapped)));
+        try {
+            mapped.setEntry(1, 4, 1.0);
+            fail("Read-only mappings must reject writes.");
+        }
+        catch (ReadOnlyBufferException exception) {
+            // Expected.
+        }
+
+        // Write across a boundary through a writable mapping and map again:
+        final MappedRealMatrix writable = MappedRealMatrix.map(file.toPath(), true, SEGMENT_SIZE);
+        writable.setRow(3, new double[]{-1, -2, -3, -4, -5});
+        writable.setEntry(1, 2, 42.0);
+        expected.setRow(3, new double[]{-1, -2, -3, -4, -5});
+        expected.setEntry(1, 2, 42.0);
+        assertEquals(expected, MappedRealMatrix.map(file.toPath(), false, 4));
+        assertEquals(expected, IOUtils.mapMatrix(file.getPath()));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2015 Vehbi Sinan Tunalioglu <vst@vsthost.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.vsthost.rnd.commons.math.ext.linear;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.commons.math3.random.MersenneTwister;
+
+/**
+ * Unit tests for the SIMD vector kernels against the scalar ones.
+ *
+ * <p>
+ *
+ * This lives in the package of the kernels as they are package-private. SIMD kernels are only
+ * available when tests run against the Java 17 classes with the {@code jdk.incubator.vector} module
+ * (see the {@code multi-release} profile), in which case the system property {@value #EXPECTED}
+ * is set and their absence is a failure.
+ */
+public class VectorKernelsTest extends TestCase {
+    /**
+     * Defines the system property which indicates that SIMD kernels must be available.
+     */
+    private static final String EXPECTED = VectorKernelsProvider.PROPERTY + ".expected";
+
+    /**
+     * Defines the lengths of ranges to be tested, around multiples of lane counts.
+     */
+    private static final int[] LENGTHS = new int[]{0, 1, 2, 3, 4, 5, 7, 8, 9, 15, 16, 17, 31, 32, 33, 63, 64, 65, 1001};
+
+    /**
+     * Create the test case.
+     *
+     * @param testName name of the test case.
+     */
+    public VectorKernelsTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Creates a test suit.
+     *
+     * @return the suite of tests being tested.
+     */
+    public static Test suite() {
+        return new TestSuite(VectorKernelsTest.class);
+    }
+
+    /**
+     * Testing that SIMD kernels are in use when expected.
+     */
+    public void testProvider() {
+        if (Boolean.getBoolean(EXPECTED)) {
+            assertEquals("SimdVectorKernels", VectorKernelsProvider.INSTANCE.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Testing all SIMD kernels against the scalar kernels over odd lengths and offsets, with NaNs,
+     * infinities and signed zeros.
+     */
+    public void testSameAsScalar() {
+        // Get the kernels:
+        final VectorKernels simd = VectorKernelsTest.simd();
+        if (simd == null) {
+            return;
+        }
+        final VectorKernels scalar = new ScalarVectorKernels();
+
+        // Iterate over cases:
+        final MersenneTwister random = new MersenneTwister(11);
+        for (int trial = 0; trial < 20; trial++) {
+            for (int length : LENGTHS) {
+                for (int offset = 0; offset < 4; offset++) {
+                    // Create inputs, special values only in every other trial:
+                    final boolean special = trial % 2 == 1;
+                    final double[] vector1 = VectorKernelsTest.sample(random, offset + length + 3, special);
+                    final double[] vector2 = VectorKernelsTest.sample(random, offset + length + 3, special);
+                    final int[] indices = new int[offset + length];
+                    for (int i = 0; i < indices.length; i++) {
+                        indices[i] = random.nextInt(vector1.length);
+                    }
+                    final String label = "length " + length + ", offset " + offset + ", trial " + trial;
+
+                    // Check reductions:
+                    VectorKernelsTest.assertReduction(label, scalar.sum(vector1, offset, length), simd.sum(vector1, offset, length), scalar.sumOfAbsolutes(vector1, offset, length));
+                    VectorKernelsTest.assertReduction(label, scalar.sumOfAbsolutes(vector1, offset, length), simd.sumOfAbsolutes(vector1, offset, length), scalar.sumOfAbsolutes(vector1, offset, length));
+
+                    // Check element-wise kernels with a different destination offset:
+                    final double[] expected = new double[offset + length + 2];
+                    final double[] actual = new double[offset + length + 2];
+                    scalar.pairwiseMin(vector1, offset, vector2, 3 - offset, expected, 2, length);
+                    simd.pairwiseMin(vector1, offset, vector2, 3 - offset, actual, 2, length);
+                    VectorKernelsTest.assertIdentical("pairwiseMin, " + label, expected, actual);
+                    scalar.pairwiseMax(vector1, offset, vector2, 3 - offset, expected, 2, length);
+                    simd.pairwiseMax(vector1, offset, vector2, 3 - offset, actual, 2, length);
+                    VectorKernelsTest.assertIdentical("pairwiseMax, " + label, expected, actual);
+                    for (double limit : new double[]{0.0, -0.0, 0.5, -1.5}) {
+                        scalar.ensureLimit(vector1, offset, limit, true, expected, 1, length);
+                        simd.ensureLimit(vector1, offset, limit, true, actual, 1, length);
+                        VectorKernelsTest.assertIdentical("ensureLimit (min), " + label, expected, actual);
+                        scalar.ensureLimit(vector1, offset, limit, false, expected, 1, length);
+                        simd.ensureLimit(vector1, offset, limit, false, actual, 1, length);
+                        VectorKernelsTest.assertIdentical("ensureLimit (max), " + label, expected, actual);
+                    }
+                    scalar.applyIndices(vector1, indices, offset, expected, 2, length);
+                    simd.applyIndices(vector1, indices, offset, actual, 2, length);
+                    VectorKernelsTest.assertIdentical("applyIndices, " + label, expected, actual);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the SIMD kernels, or {@code null} if they are not available and not expected.
+     *
+     * @return The SIMD kernels or {@code null}.
+     */
+    private static VectorKernels simd() {
+        try {
+            return Class.forName(VectorKernels.class.getPackage().getName() + ".SimdVectorKernels")
+                .asSubclass(VectorKernels.class)
+                .getDeclaredConstructor()
+                .newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError exception) {
+            if (Boolean.getBoolean(EXPECTED)) {
+                throw new AssertionError("SIMD kernels are expected but not available.", exception);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Creates a random vector, optionally with NaNs, infinities and signed zeros.
+     *
+     * @param random The random number generator.
+     * @param length The length of the vector.
+     * @param special Indicates if special values are to be injected.
+     * @return A new random vector.
+     */
+    private static double[] sample(MersenneTwister random, int length, boolean special) {
+        final double[] specials = new double[]{Double.NaN, -0.0, 0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        final double[] retval = new double[length];
+        for (int i = 0; i < length; i++) {
+            retval[i] = special && random.nextInt(8) == 0 ? specials[random.nextInt(specials.length)] : random.nextGaussian() * 100;
+        }
+        return retval;
+    }
+
+    /**
+     * Asserts that the reductions are the same up to rounding, or identical if not finite.
+     *
+     * @param label The label of the case.
+     * @param expected The scalar result.
+     * @param actual The SIMD result.
+     * @param magnitude The sum of absolute values bounding the rounding error.
+     */
+    private static void assertReduction(String label, double expected, double actual, double magnitude) {
+        if (Double.isNaN(expected) || Double.isInfinite(expected)) {
+            assertEquals(label, 0, Double.compare(expected, actual));
+        }
+        else {
+            assertEquals(label, expected, actual, 1E-12 * magnitude);
+        }
+    }
+
+    /**
+     * Asserts that the arrays are identical, distinguishing signed zeros and matching NaNs.
+     *
+     * @param label The label of the case.
+     * @param expected The scalar result.
+     * @param actual The SIMD result.
+     */
+    private static void assertIdentical(String label, double[] expected, double[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(label + ", index " + i, 0, Double.compare(expected[i], actual[i]));
+        }
+    }
+}